@@ -0,0 +1,57 @@
+package truffula.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import truffula.ColorPrinter;
+import truffula.ConsoleColor;
+
+/**
+ * Measures ColorPrinter.print for a typical tree line, with and without a color code
+ * in the message, writing to a discarding PrintStream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColorPrinterBenchmark {
+
+  private static final String LINE = "      images" + System.lineSeparator();
+
+  @Param({"0", "65536"})
+  public int bufferSize;
+
+  private ColorPrinter printer;
+  private String coloredLine;
+
+  @Setup
+  public void setUp() {
+    printer = new ColorPrinter(new PrintStream(OutputStream.nullOutputStream()), ConsoleColor.WHITE, bufferSize);
+    coloredLine = ConsoleColor.PURPLE + LINE + ConsoleColor.RESET;
+  }
+
+  @Benchmark
+  public void printWithColor() {
+    printer.print(coloredLine);
+  }
+
+  @Benchmark
+  public void printWithoutColor() {
+    printer.print(LINE + ConsoleColor.RESET, true);
+  }
+}
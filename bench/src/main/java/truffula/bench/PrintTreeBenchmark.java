@@ -0,0 +1,103 @@
+package truffula.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import truffula.DirectoryEntry;
+import truffula.DirectoryScanner;
+import truffula.TreeVisitor;
+import truffula.TreeWalker;
+import truffula.TruffulaOptions;
+import truffula.TruffulaPrinter;
+
+/**
+ * Measures TruffulaPrinter.printTree on generated trees, with the output discarded
+ * so that only traversal, sorting and formatting are timed. walkOnly times the
+ * TreeWalker alone, with a visitor that does no formatting. printTreeStreaming uses
+ * the -s path, which encodes lines straight into a byte buffer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrintTreeBenchmark {
+
+  @Param({"wide", "deep", "mixed"})
+  public String shape;
+
+  @Param({"1", "4"})
+  public int parallelism;
+
+  @Param({"false", "true"})
+  public boolean useColor;
+
+  private File root;
+  private PrintStream out;
+
+  @Setup
+  public void setUp() throws IOException {
+    root = SyntheticTree.create(shape);
+    out = new PrintStream(OutputStream.nullOutputStream());
+  }
+
+  @TearDown
+  public void tearDown() {
+    SyntheticTree.delete(root);
+  }
+
+  @Benchmark
+  public void printTree() {
+    TruffulaOptions options = new TruffulaOptions(root, false, useColor);
+    options.setParallelism(parallelism);
+    new TruffulaPrinter(options, out).printTree();
+  }
+
+  @Benchmark
+  public void printTreeStreaming() {
+    TruffulaOptions options = new TruffulaOptions(root, false, useColor);
+    options.setParallelism(parallelism);
+    options.setStreaming(true);
+    new TruffulaPrinter(options, out).printTree();
+  }
+
+  @Benchmark
+  public void walkOnly(Blackhole blackhole) {
+    TruffulaOptions options = new TruffulaOptions(root, false, useColor);
+    options.setParallelism(parallelism);
+    new TreeWalker(options, new DirectoryScanner(false)).walk(root, new TreeVisitor() {
+      @Override
+      public void enterDirectory(DirectoryEntry dir, int depth) {
+        blackhole.consume(dir);
+      }
+
+      @Override
+      public void file(DirectoryEntry file, int depth) {
+        blackhole.consume(file);
+      }
+
+      @Override
+      public void exitDirectory(DirectoryEntry dir, int depth) {
+        blackhole.consume(depth);
+      }
+    });
+  }
+}
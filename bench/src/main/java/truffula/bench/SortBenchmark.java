@@ -0,0 +1,52 @@
+package truffula.bench;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import truffula.AlphabeticalFileSorter;
+
+/**
+ * Measures AlphabeticalFileSorter.sort on large arrays of files with random mixed case names.
+ * Each call sorts a fresh copy of the same unsorted array; the copy is part of the measured time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SortBenchmark {
+
+  @Param({"1000", "100000"})
+  public int size;
+
+  private File[] files;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(42);
+    File parent = new File("parent");
+    files = new File[size];
+    for (int i = 0; i < size; i++) {
+      files[i] = new File(parent, SyntheticTree.randomName(random));
+    }
+  }
+
+  @Benchmark
+  public File[] sort() {
+    return AlphabeticalFileSorter.sort(files.clone());
+  }
+}
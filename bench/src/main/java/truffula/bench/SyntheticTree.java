@@ -0,0 +1,105 @@
+package truffula.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Generates directory trees of a known shape for the benchmarks.
+ * 
+ * Shapes:
+ * - wide  : one directory holding many files.
+ * - deep  : a long chain of nested directories with a few files at each level.
+ * - mixed : a balanced tree of directories and files with mixed case names.
+ * 
+ * Names are generated from a fixed seed so every run walks the same tree.
+ */
+public class SyntheticTree {
+
+  /**
+   * Creates a tree of the given shape in a new temporary directory.
+   *
+   * @param shape one of "wide", "deep" or "mixed"
+   * @return the root of the created tree
+   * @throws IOException if the tree cannot be created
+   */
+  public static File create(String shape) throws IOException {
+    File root = File.createTempFile("truffula-bench-" + shape + "-", "");
+    if (!root.delete() || !root.mkdir()) {
+      throw new IOException("Could not create directory: " + root);
+    }
+
+    Random random = new Random(42);
+    switch (shape) {
+      case "wide":
+        createFiles(root, 20_000, random);
+        break;
+      case "deep":
+        File dir = root;
+        for (int level = 0; level < 200; level++) {
+          createFiles(dir, 5, random);
+          dir = mkdir(new File(dir, "level" + level));
+        }
+        break;
+      case "mixed":
+        createMixed(root, 4, random);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown tree shape: " + shape);
+    }
+    return root;
+  }
+
+  /**
+   * Deletes a tree created by {@link #create(String)}.
+   *
+   * @param file the root of the tree
+   */
+  public static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  /**
+   * Returns a random mixed case file name.
+   *
+   * @param random the source of randomness
+   * @return the generated name
+   */
+  public static String randomName(Random random) {
+    char[] name = new char[6 + random.nextInt(10)];
+    for (int i = 0; i < name.length; i++) {
+      char c = (char) ('a' + random.nextInt(26));
+      name[i] = random.nextInt(4) == 0 ? Character.toUpperCase(c) : c;
+    }
+    return new String(name);
+  }
+
+  private static void createMixed(File dir, int levels, Random random) throws IOException {
+    createFiles(dir, 20, random);
+    if (levels == 0) {
+      return;
+    }
+    for (int i = 0; i < 6; i++) {
+      createMixed(mkdir(new File(dir, randomName(random) + "_" + i)), levels - 1, random);
+    }
+  }
+
+  private static void createFiles(File dir, int count, Random random) throws IOException {
+    for (int i = 0; i < count; i++) {
+      new File(dir, randomName(random) + "_" + i + ".txt").createNewFile();
+    }
+  }
+
+  private static File mkdir(File dir) throws IOException {
+    if (!dir.mkdir()) {
+      throw new IOException("Could not create directory: " + dir);
+    }
+    return dir;
+  }
+}
@@ -1,22 +1,158 @@
 import java.io.File;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
 
 /**
  * Utility class for sorting an array of files alphabetically by name, 
  * ignoring case differences.
+ * 
+ * Names that are equal when ignoring case are ordered by their exact
+ * characters, so "Cat.png" comes before "cat.png".
+ * 
+ * Each name is case-folded once into a sort key before sorting, instead of
+ * calling getName() and folding both names on every comparison.
  */
 public class AlphabeticalFileSorter {
 
   /**
    * Sorts an array of files alphabetically by name, ignoring case.
+   * Ties are broken by comparing the names with case (Cat.png before cat.png).
    *
    * @param files the array of files to be sorted
    * @return the sorted array of files
    */
   public static File[] sort(File[] files) {
-    // This uses lambdas, which we haven't yet covered
-    // Look at it with curiosity, but you don't need to edit anything here
-    Arrays.sort(files, (f1, f2) -> f1.getName().compareToIgnoreCase(f2.getName()));
-    return files;
+    return sortByName(files, File::getName);
+  }
+
+  /**
+   * Sorts an array of directory entries alphabetically by name, in the same order
+   * as {@link #sort(File[])}.
+   *
+   * @param entries the array of entries to be sorted
+   * @return the sorted array of entries
+   */
+  public static DirectoryEntry[] sort(DirectoryEntry[] entries) {
+    return sortByName(entries, DirectoryEntry::getName);
+  }
+
+  /**
+   * Sorts an array of names in the same order as {@link #sort(File[])}.
+   *
+   * @param names the array of names to be sorted
+   * @return the sorted array of names
+   */
+  public static String[] sort(String[] names) {
+    return sortByName(names, name -> name);
+  }
+
+  /**
+   * Returns the entries that come first in the order of {@link #sort(DirectoryEntry[])},
+   * sorted, without sorting the rest. The entries are passed through a BoundedHeap of
+   * the given size, which takes O(n log count) time instead of O(n log n).
+   *
+   * @param entries the entries to choose from, in any order; the array is left unchanged
+   * @param count the number of entries to return, at least 1
+   * @return a new array of the first min(count, entries.length) entries, sorted
+   */
+  public static DirectoryEntry[] first(DirectoryEntry[] entries, int count) {
+    // The heap keeps the largest elements, so the order is reversed to keep the first ones
+    BoundedHeap<SortKey<DirectoryEntry>> heap = new BoundedHeap<>(count, Comparator.reverseOrder());
+    for (DirectoryEntry entry : entries) {
+      heap.offer(new SortKey<>(entry, entry.getName()));
+    }
+    List<SortKey<DirectoryEntry>> kept = heap.toList();
+    DirectoryEntry[] first = new DirectoryEntry[kept.size()];
+    for (int i = 0; i < first.length; i++) {
+      first[i] = kept.get(i).item;
+    }
+    return first;
+  }
+
+  /**
+   * Sorts items in place by the names the given function extracts, reading each name once.
+   */
+  private static <T> T[] sortByName(T[] items, Function<T, String> nameOf) {
+    @SuppressWarnings("unchecked")
+    SortKey<T>[] keys = (SortKey<T>[]) new SortKey<?>[items.length];
+    for (int i = 0; i < items.length; i++) {
+      keys[i] = new SortKey<>(items[i], nameOf.apply(items[i]));
+    }
+
+    Arrays.sort(keys);
+
+    for (int i = 0; i < keys.length; i++) {
+      items[i] = keys[i].item;
+    }
+    return items;
+  }
+
+  /**
+   * Compares two names in the same order that {@link #sort(File[])} uses.
+   *
+   * @param name1 the first name
+   * @param name2 the second name
+   * @return a negative number, zero, or a positive number if name1 sorts before, the same as, or after name2
+   */
+  public static int compare(String name1, String name2) {
+    int result = name1.compareToIgnoreCase(name2);
+    return result != 0 ? result : name1.compareTo(name2);
+  }
+
+  /**
+   * Folds a name to the case-insensitive form used for sorting. Two names compare equal
+   * with compareToIgnoreCase exactly when their folded forms are equal.
+   *
+   * @param name the name to fold
+   * @return the folded name, which is the name itself if it needs no folding
+   */
+  public static String foldCase(String name) {
+    int length = name.length();
+    int i = 0;
+    while (i < length && fold(name.charAt(i)) == name.charAt(i)) {
+      i++;
+    }
+    if (i == length) {
+      return name;
+    }
+
+    char[] folded = name.toCharArray();
+    for (; i < length; i++) {
+      folded[i] = fold(folded[i]);
+    }
+    return new String(folded);
+  }
+
+  /**
+   * Folds a single character the same way String.compareToIgnoreCase does.
+   */
+  private static char fold(char c) {
+    if (c < 128) {
+      return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+    }
+    return Character.toLowerCase(Character.toUpperCase(c));
+  }
+
+  /**
+   * An item together with its precomputed sort key.
+   */
+  private static final class SortKey<T> implements Comparable<SortKey<T>> {
+    private final T item;
+    private final String name;
+    private final String folded;
+
+    SortKey(T item, String name) {
+      this.item = item;
+      this.name = name;
+      this.folded = foldCase(name);
+    }
+
+    @Override
+    public int compareTo(SortKey<T> other) {
+      int result = folded.compareTo(other.folded);
+      return result != 0 ? result : name.compareTo(other.name);
+    }
   }
 }
@@ -0,0 +1,94 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AlphabeticalFileSorterTest {
+
+  private static String[] names(File[] files) {
+    String[] names = new String[files.length];
+    for (int i = 0; i < files.length; i++) {
+      names[i] = files[i].getName();
+    }
+    return names;
+  }
+
+  private static File[] files(String... names) {
+    File[] files = new File[names.length];
+    for (int i = 0; i < names.length; i++) {
+      files[i] = new File("parent", names[i]);
+    }
+    return files;
+  }
+
+  @Test
+  void testSortIgnoresCase() {
+    File[] files = files("zebra.txt", "Documents", "banana.txt", "Apple.txt");
+
+    File[] sorted = AlphabeticalFileSorter.sort(files);
+
+    assertSame(files, sorted);
+    assertArrayEquals(new String[] {"Apple.txt", "banana.txt", "Documents", "zebra.txt"}, names(sorted));
+  }
+
+  @Test
+  void testSortBreaksTiesByCase() {
+    // Wave 7: Cat.png comes before cat.png regardless of the listing order
+    File[] files = files("Dog.png", "cat.png", "Cat.png");
+
+    AlphabeticalFileSorter.sort(files);
+
+    assertArrayEquals(new String[] {"Cat.png", "cat.png", "Dog.png"}, names(files));
+  }
+
+  @Test
+  void testSortMatchesCompareToIgnoreCase() {
+    // Names with non-ASCII characters and symbols sort the same way compareToIgnoreCase orders them
+    String[] names = {"Éclair", "eclair", "_under", "ÉCLAIR", "straße", "STRASSE", "@sign", "Zeta", "ábc", "Abd"};
+    File[] files = AlphabeticalFileSorter.sort(files(names));
+
+    for (int i = 1; i < files.length; i++) {
+      String previous = files[i - 1].getName();
+      String current = files[i].getName();
+      assertTrue(previous.compareToIgnoreCase(current) <= 0, previous + " should sort before " + current);
+    }
+  }
+
+  @Test
+  void testCompareUsesSameOrder() {
+    assertTrue(AlphabeticalFileSorter.compare("Cat.png", "cat.png") < 0);
+    assertTrue(AlphabeticalFileSorter.compare("apple", "Banana") < 0);
+    assertEquals(0, AlphabeticalFileSorter.compare("same", "same"));
+  }
+
+  @Test
+  void testFoldCase() {
+    String lower = "already-lower.txt";
+    assertSame(lower, AlphabeticalFileSorter.foldCase(lower));
+    assertEquals("readme.md", AlphabeticalFileSorter.foldCase("README.md"));
+    assertEquals(AlphabeticalFileSorter.foldCase("ÉCLAIR"), AlphabeticalFileSorter.foldCase("éclair"));
+  }
+
+  @Test
+  void testFirstMatchesPrefixOfSort() {
+    String[] names = {"zebra.txt", "cat.png", "Documents", "banana.txt", "Cat.png", "apple.txt", "Dog.png", "b"};
+    DirectoryEntry[] entries = new DirectoryEntry[names.length];
+    for (int i = 0; i < names.length; i++) {
+      entries[i] = new DirectoryEntry(names[i], false, false);
+    }
+    DirectoryEntry[] sorted = AlphabeticalFileSorter.sort(entries.clone());
+
+    for (int count = 1; count <= names.length + 1; count++) {
+      DirectoryEntry[] first = AlphabeticalFileSorter.first(entries, count);
+      assertEquals(Math.min(count, names.length), first.length);
+      for (int i = 0; i < first.length; i++) {
+        assertSame(sorted[i], first[i]);
+      }
+    }
+    assertEquals("zebra.txt", entries[0].getName(), "the input is left unchanged");
+  }
+}
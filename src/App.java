@@ -13,14 +13,50 @@ public class App {
    * 
    * Usage Example:
    * 
-   * Arguments Format: [-h] [-nc] path
+   * Arguments Format: [-h] [-nc] [-L depth] [-max count] [-I pattern]... [-P pattern]...
+   *     [-gi] [-cache file] [-index file] [-replay] [-diff base] [-du] [-top count]
+   *     [-fmt format] [-stats] [-spill count] [-links policy] [-s] [-f] [-b size]
+   *     [-p workers] [-pf dirs] [-w millis] path
    * 
    * Flags:
    * - -h   : Show hidden files (defaults to false).
    * - -nc  : Do not use color (color is enabled by default).
+   * - -L   : Print at most this many levels below the root (defaults to no limit).
+   * - -max : Print at most this many entries per directory, first in sort order, then
+   *          "... and K more" (defaults to no limit).
+   * - -I   : Leave out files and directories whose name matches the pattern. May be repeated.
+   * - -P   : Only print files whose name matches the pattern. May be repeated.
+   * - -gi  : Leave out files and directories ignored by .gitignore files, and .git
+   *          directories (defaults to false).
+   * - -cache: Snapshot file to replay unchanged directories from, and to save the listings to.
+   * - -index: Save the printed tree to this file as a tree index.
+   * - -replay: The path is a tree index saved with -index, printed without reading the
+   *          directories (defaults to false).
+   * - -diff: Print only what was added, removed or changed from this directory to the path.
+   * - -du  : Show the number of files and total size below each directory (defaults to false).
+   * - -top : After the tree, list this many of the largest directories (implies -du;
+   *          defaults to 0, none).
+   * - -fmt : Output format, "text" (the default) or "ndjson" for one JSON record per entry.
+   * - -stats: After the tree, print counts and timings of directory listing, stat calls,
+   *          sorting and output (defaults to false).
+   * - -spill: Sort directories with more than this many entries on disk, in runs of this
+   *          many names, in single-threaded walks without -du (defaults to 0, never).
+   * - -links: Symbolic links to directories, "follow" (the default; each linked directory
+   *          once, cycles cut) or "nofollow".
+   * - -s   : Stream output through a reusable buffer instead of building a String per line
+   *          (defaults to false).
+   * - -f   : Flush output after every line, for interactive use (defaults to false).
+   * - -b   : Number of characters of output to gather before writing (defaults to 65536,
+   *          0 disables batching).
+   * - -p   : Number of worker threads used to walk the tree (defaults to 1, single-threaded).
+   * - -pf  : Number of directories to list ahead of printing on virtual threads (defaults
+   *          to 0, off).
+   * - -w   : Keep running and print the tree again when it changes, polling every this many
+   *          milliseconds (defaults to 0, print once).
    * 
    * Path:
-   * - The absolute or relative path to the directory whose contents will be printed.
+   * - The absolute or relative path to the directory whose contents will be printed, or
+   *   to a tree index file with -replay.
    * 
    * Behavior:
    * - If color is disabled, all text will be printed in white.
@@ -47,6 +83,14 @@ public class App {
     // pass it to a new TruffulaPrinter that uses System.out
     // Then, call printTree on the TruffulaPrinter
     TruffulaOptions options = new TruffulaOptions(args);
+    if (options.getDiffBase() != null) {
+      new TreeDiffer(options, System.out).printDiff();
+      return;
+    }
+    if (options.getWatchInterval() > 0) {
+      new TreeWatcher(options, System.out).run();
+      return;
+    }
     TruffulaPrinter printColor = new TruffulaPrinter(options);
 
     printColor.printTree();
@@ -0,0 +1,78 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the largest elements offered to it, up to a fixed number.
+ *
+ * The elements are held in a min-heap of at most the capacity, so offering n
+ * elements costs O(n log capacity) time and O(capacity) memory, instead of keeping
+ * and sorting all n of them.
+ *
+ * A BoundedHeap is not thread-safe.
+ *
+ * @param <T> the type of the elements
+ */
+public class BoundedHeap<T> {
+  private final int capacity;
+  private final Comparator<? super T> order;
+  private final PriorityQueue<T> heap;
+  private long offered = 0;
+
+  /**
+   * Constructs a BoundedHeap that keeps the largest elements by the given order.
+   *
+   * @param capacity the number of elements to keep, at least 1
+   * @param order the order in which later elements are larger
+   * @throws IllegalArgumentException if capacity is less than 1
+   */
+  public BoundedHeap(int capacity, Comparator<? super T> order) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+    }
+    this.capacity = capacity;
+    this.order = order;
+    this.heap = new PriorityQueue<>(Math.min(capacity, 1024) + 1, order);
+  }
+
+  /**
+   * Offers an element, which is kept if it is among the largest seen so far.
+   *
+   * @param element the element
+   * @return true if the element was kept
+   */
+  public boolean offer(T element) {
+    offered++;
+    if (heap.size() < capacity) {
+      heap.add(element);
+      return true;
+    }
+    if (order.compare(element, heap.peek()) <= 0) {
+      return false;
+    }
+    heap.poll();
+    heap.add(element);
+    return true;
+  }
+
+  /**
+   * Returns the number of elements offered so far, kept or not.
+   *
+   * @return the number of offered elements
+   */
+  public long getOffered() {
+    return offered;
+  }
+
+  /**
+   * Returns the kept elements, largest first.
+   *
+   * @return a new list of the kept elements
+   */
+  public List<T> toList() {
+    List<T> elements = new ArrayList<>(heap);
+    elements.sort(order.reversed());
+    return elements;
+  }
+}
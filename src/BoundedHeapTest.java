@@ -0,0 +1,44 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BoundedHeapTest {
+
+  @Test
+  void testKeepsLargestElements() {
+    BoundedHeap<Integer> heap = new BoundedHeap<>(3, Comparator.naturalOrder());
+    for (int value : new int[] {5, 1, 9, 3, 7, 2, 8}) {
+      heap.offer(value);
+    }
+
+    assertEquals(List.of(9, 8, 7), heap.toList());
+    assertEquals(7, heap.getOffered());
+  }
+
+  @Test
+  void testOfferReportsWhetherKept() {
+    BoundedHeap<String> heap = new BoundedHeap<>(2, Comparator.comparing(String::length));
+
+    assertTrue(heap.offer("aaa"));
+    assertTrue(heap.offer("b"));
+    assertTrue(heap.offer("cc"));
+    assertFalse(heap.offer("d"));
+    assertEquals(List.of("aaa", "cc"), heap.toList());
+  }
+
+  @Test
+  void testFewerElementsThanCapacity() {
+    BoundedHeap<Integer> heap = new BoundedHeap<>(10, Comparator.naturalOrder());
+    heap.offer(2);
+    heap.offer(4);
+
+    assertEquals(List.of(4, 2), heap.toList());
+    assertThrows(IllegalArgumentException.class, () -> new BoundedHeap<Integer>(0, Comparator.naturalOrder()));
+  }
+}
@@ -1,4 +1,7 @@
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
 
 /**
  * A utility class for printing colored text to a PrintStream using ANSI escape codes.
@@ -16,8 +19,25 @@ import java.io.PrintStream;
  * printer.println("This is red text");
  * 
  * The printed text will appear in the terminal with the specified colors if the terminal supports ANSI codes.
+ * 
+ * A ColorPrinter can also batch its output: when constructed with a buffer size, printed text is
+ * gathered in memory and written to the PrintStream in one call once the buffer fills up, or when
+ * {@link #flush()} is called. Auto-flush writes everything out after each print instead, for
+ * interactive use.
+ * 
+ * Lines can also be streamed as bytes: the caller passes a color and indentation prefix that
+ * was encoded once with {@link #encode(String)}, and the text is encoded straight into a reusable
+ * byte buffer, which is written to the underlying stream without going through the PrintStream's
+ * character encoder. The encoding must match the PrintStream's, which is the default encoding
+ * unless one is given.
  */
 public class ColorPrinter {
+  /**
+   * Number of buffered characters after which streamed lines are written to the PrintStream
+   * when no buffer size is given.
+   */
+  private static final int STREAM_CHUNK_SIZE = 64 * 1024;
+
   /**
    * The current color used for printing.
    */
@@ -28,6 +48,44 @@ public class ColorPrinter {
    */
   private final PrintStream printStream;
 
+  /**
+   * Number of buffered characters after which printed text is written to the PrintStream,
+   * or 0 if only streamed lines are buffered.
+   */
+  private final int bufferSize;
+
+  /**
+   * Whether buffered text is written out and flushed after every print.
+   */
+  private boolean autoFlush;
+
+  /**
+   * Reusable buffer that printed text is gathered in. Created on first use.
+   */
+  private StringBuilder buffer;
+
+  /**
+   * Reusable buffer that streamed bytes are gathered in, and the number of bytes in it.
+   * Created on first use. Only one of the two buffers holds output at any time.
+   */
+  private byte[] bytes;
+  private int byteCount;
+
+  /**
+   * The name of the character encoding that streamed bytes are encoded with.
+   */
+  private String encoding = System.getProperty("file.encoding", "UTF-8");
+
+  /**
+   * Whether the encoding is UTF-8, which is encoded without a lookup.
+   */
+  private boolean utf8 = isUtf8(encoding);
+
+  /**
+   * The encoded RESET code and line separator that end every streamed line.
+   */
+  private byte[] lineEnd;
+
   /**
    * Returns the current color set for the printer.
    * 
@@ -47,6 +105,57 @@ public class ColorPrinter {
     this.currentColor = color;
   }
 
+  /**
+   * Indicates whether buffered text is written out and flushed after every print.
+   * 
+   * @return true if auto-flush is enabled; false otherwise
+   */
+  public boolean isAutoFlush() {
+    return autoFlush;
+  }
+
+  /**
+   * Sets whether buffered text is written out and flushed after every print. This is useful
+   * for interactive use, where lines should appear as soon as they are printed.
+   * 
+   * @param autoFlush true to flush after every print; false to flush only when the buffer fills
+   */
+  public void setAutoFlush(boolean autoFlush) {
+    this.autoFlush = autoFlush;
+  }
+
+  /**
+   * Returns the name of the character encoding that streamed bytes are encoded with.
+   * 
+   * @return the encoding name
+   */
+  public String getEncoding() {
+    return encoding;
+  }
+
+  /**
+   * Sets the character encoding that streamed bytes are encoded with. It must match the encoding
+   * of the PrintStream, and be set before any prefix is encoded. Encodings that begin every
+   * encoded string with a byte order mark, such as UTF-16, are not suited to streaming.
+   * 
+   * @param encoding the encoding name, such as "UTF-8"
+   * @throws IllegalArgumentException if the encoding is not supported
+   */
+  public void setEncoding(String encoding) {
+    checkEncoding(encoding);
+    this.encoding = encoding;
+    this.utf8 = isUtf8(encoding);
+    this.lineEnd = null;
+  }
+
+  private static void checkEncoding(String encoding) {
+    try {
+      "".getBytes(encoding);
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalArgumentException("Unsupported encoding: " + encoding);
+    }
+  }
+
   /**
    * Prints the given message followed by a newline in the current color.
    * The color is reset to default after printing.
@@ -90,6 +199,17 @@ public class ColorPrinter {
     // Objects currentColor, and printStream
     // currentColor can be equal to null, and reset is provide by the user
     // printStream is the output tool
+    if (bufferSize > 0) {
+      StringBuilder buffer = buffer();
+      buffer.append(currentColor).append(message);
+      if (reset) {
+        buffer.append(ConsoleColor.RESET.getCode());
+      }
+      afterBufferedPrint();
+      return;
+    }
+
+    writeBuffer();
     printStream.print(currentColor + message);
 
     if(reset){
@@ -99,6 +219,207 @@ public class ColorPrinter {
     // printStream.print(message); //<- Calling the print method that doesn't have the boolean
   }
 
+  /**
+   * Prints a line that carries its own color codes, as prefix + text + suffix + RESET followed
+   * by a newline. Unlike println, the current color is not added and the color is reset only
+   * once, so a prefix such as a color code followed by indentation can be prepared ahead.
+   * 
+   * @param prefix the color code and indentation printed before the text
+   * @param text   the text to print
+   * @param suffix text printed directly after the text, such as "/"
+   */
+  public void printLine(String prefix, String text, String suffix) {
+    if (bufferSize > 0) {
+      appendLine(buffer(), prefix, text, suffix);
+      afterBufferedPrint();
+      return;
+    }
+    writeBuffer();
+    printStream.print(prefix + text + suffix + ConsoleColor.RESET.getCode() + System.lineSeparator());
+  }
+
+  /**
+   * Streams a line that carries its own color codes as bytes. The output is the same as
+   * {@link #printLine(String, String, String)} with the prefix decoded, but the text is encoded
+   * directly into the reusable byte buffer. Buffered bytes are written out once the buffer fills
+   * up and by {@link #flush()}.
+   * 
+   * @param prefix the color code and indentation printed before the text, from {@link #encode(String)}
+   * @param text   the text to print
+   * @param suffix text printed directly after the text, such as "/"
+   */
+  public void streamLine(byte[] prefix, String text, String suffix) {
+    writeChars();
+    if (lineEnd == null) {
+      lineEnd = encode(ConsoleColor.RESET.getCode() + System.lineSeparator());
+    }
+    if (bytes == null) {
+      bytes = new byte[flushThreshold() + 1024];
+    }
+    appendBytes(prefix);
+    appendText(text);
+    appendText(suffix);
+    appendBytes(lineEnd);
+
+    if (autoFlush) {
+      flush();
+    } else if (byteCount >= flushThreshold()) {
+      writeBytes();
+    }
+  }
+
+  /**
+   * Encodes text with this printer's encoding, such as a prefix that is streamed with every line.
+   * 
+   * @param text the text to encode
+   * @return the encoded bytes
+   */
+  public byte[] encode(String text) {
+    try {
+      return text.getBytes(encoding);
+    } catch (UnsupportedEncodingException e) {
+      // The encoding was checked when it was set
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void appendBytes(byte[] data) {
+    ensureBytes(data.length);
+    System.arraycopy(data, 0, bytes, byteCount, data.length);
+    byteCount += data.length;
+  }
+
+  /**
+   * Encodes text into the byte buffer. UTF-8 is encoded in place, as String.getBytes would,
+   * including '?' for unpaired surrogates. Other encodings go through String.getBytes.
+   */
+  private void appendText(String text) {
+    if (!utf8) {
+      appendBytes(encode(text));
+      return;
+    }
+    int length = text.length();
+    ensureBytes(3 * length);
+    byte[] b = bytes;
+    int n = byteCount;
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        b[n++] = (byte) c;
+      } else if (c < 0x800) {
+        b[n++] = (byte) (0xC0 | (c >> 6));
+        b[n++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, text.charAt(++i));
+        b[n++] = (byte) (0xF0 | (codePoint >> 18));
+        b[n++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        b[n++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        b[n++] = (byte) (0x80 | (codePoint & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        b[n++] = '?';
+      } else {
+        b[n++] = (byte) (0xE0 | (c >> 12));
+        b[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        b[n++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+    byteCount = n;
+  }
+
+  /**
+   * Grows the byte buffer so that it has room for at least the given number of bytes more.
+   */
+  private void ensureBytes(int needed) {
+    if (byteCount + needed > bytes.length) {
+      bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, byteCount + needed));
+    }
+  }
+
+  private static boolean isUtf8(String encoding) {
+    return encoding.equalsIgnoreCase("UTF-8") || encoding.equalsIgnoreCase("UTF8");
+  }
+
+  private static void appendLine(StringBuilder buffer, String prefix, String text, String suffix) {
+    buffer.append(prefix).append(text).append(suffix)
+        .append(ConsoleColor.RESET.getCode())
+        .append(System.lineSeparator());
+  }
+
+  /**
+   * Writes any text that is still buffered and flushes the PrintStream.
+   */
+  public void flush() {
+    writeBuffer();
+    printStream.flush();
+  }
+
+  /**
+   * Returns the reusable buffer, creating it on first use.
+   */
+  private StringBuilder buffer() {
+    writeBytes();
+    if (buffer == null) {
+      buffer = new StringBuilder(flushThreshold() + 1024);
+    }
+    return buffer;
+  }
+
+  /**
+   * Returns the number of buffered characters after which the buffer is written out.
+   */
+  private int flushThreshold() {
+    return bufferSize > 0 ? bufferSize : STREAM_CHUNK_SIZE;
+  }
+
+  /**
+   * Writes the buffer out if it is full, or flushes after every print when auto-flush is enabled.
+   */
+  private void afterBufferedPrint() {
+    if (autoFlush) {
+      flush();
+    } else if (buffer.length() >= flushThreshold()) {
+      writeBuffer();
+    }
+  }
+
+  /**
+   * Writes the buffered text to the PrintStream in a single call and empties the buffer.
+   */
+  private void writeBuffer() {
+    writeChars();
+    writeBytes();
+  }
+
+  private void writeChars() {
+    if (buffer != null && buffer.length() > 0) {
+      printStream.append(buffer);
+      buffer.setLength(0);
+    }
+  }
+
+  private void writeBytes() {
+    if (byteCount > 0) {
+      printStream.write(bytes, 0, byteCount);
+      byteCount = 0;
+    }
+  }
+
+  /**
+   * Prints output that has already been rendered, such as the output of another ColorPrinter.
+   * No color codes are added and the current color is left unchanged.
+   * 
+   * @param rendered the rendered output to print
+   */
+  public void printRaw(String rendered) {
+    if (bufferSize > 0) {
+      buffer().append(rendered);
+      afterBufferedPrint();
+      return;
+    }
+    writeBuffer();
+    printStream.print(rendered);
+  }
+
   /**
    * Constructs a ColorPrinter with the specified PrintStream.
    * The default color is set to ConsoleColor.WHITE.
@@ -116,7 +437,50 @@ public class ColorPrinter {
    * @param color       the initial ConsoleColor to use for printing
    */
   public ColorPrinter(PrintStream printStream, ConsoleColor color) {
+    this(printStream, color, 0);
+  }
+
+  /**
+   * Constructs a ColorPrinter with the specified PrintStream, initial color and buffer size.
+   * Printed text is gathered until the buffer holds at least bufferSize characters and is then
+   * written to the PrintStream in one call. Call {@link #flush()} when done printing.
+   * 
+   * @param printStream the PrintStream to which output will be written
+   * @param color       the initial ConsoleColor to use for printing
+   * @param bufferSize  the number of characters to gather before writing, or 0 to write every print directly
+   * @throws IllegalArgumentException if bufferSize is negative
+   */
+  public ColorPrinter(PrintStream printStream, ConsoleColor color, int bufferSize) {
+    this(printStream, color, bufferSize, null);
+  }
+
+  /**
+   * Constructs a ColorPrinter that writes to an OutputStream in the given character encoding,
+   * both for printed text and for streamed bytes.
+   * 
+   * @param outputStream the OutputStream to which output will be written
+   * @param color        the initial ConsoleColor to use for printing
+   * @param bufferSize   the number of characters to gather before writing, or 0 to write every print directly
+   * @param encoding     the name of the character encoding, such as "UTF-8"
+   * @throws UnsupportedEncodingException if the encoding is not supported
+   * @throws IllegalArgumentException if bufferSize is negative
+   */
+  public ColorPrinter(OutputStream outputStream, ConsoleColor color, int bufferSize, String encoding)
+      throws UnsupportedEncodingException {
+    this(new PrintStream(outputStream, false, encoding), color, bufferSize, encoding);
+  }
+
+  private ColorPrinter(PrintStream printStream, ConsoleColor color, int bufferSize, String encoding) {
+    if (bufferSize < 0) {
+      throw new IllegalArgumentException("Buffer size must not be negative: " + bufferSize);
+    }
     this.printStream = printStream;
     this.currentColor = color;
+    this.bufferSize = bufferSize;
+    if (encoding != null) {
+      checkEncoding(encoding);
+      this.encoding = encoding;
+      this.utf8 = isUtf8(encoding);
+    }
   }
 }
@@ -3,7 +3,9 @@ import org.junit.jupiter.api.Test;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class ColorPrinterTest {
 
@@ -134,4 +136,133 @@ void testPrintlnWithWhiteColorAndNoReset() {
   assertEquals(expectedOutput, outputStream.toString());
 }
 
-}
\ No newline at end of file
+@Test
+void testPrintWritesStreamedLinesFirst() {
+  // Test: a regular print keeps its place after lines that are still buffered
+  ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+  ColorPrinter printer = new ColorPrinter(new PrintStream(outputStream));
+
+  printer.streamLine(printer.encode(ConsoleColor.WHITE.getCode()), "first", "");
+  printer.print("second");
+
+  String expectedOutput = ConsoleColor.WHITE + "first" + ConsoleColor.RESET + System.lineSeparator()
+      + ConsoleColor.WHITE + "second" + ConsoleColor.RESET;
+  assertEquals(expectedOutput, outputStream.toString());
+}
+
+@Test
+void testBufferedPrintWaitsForFlush() {
+  // Test: batched output is only written once flushed
+  ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+  ColorPrinter printer = new ColorPrinter(new PrintStream(outputStream), ConsoleColor.GREEN, 1024);
+
+  printer.println("Truffula tufts");
+  printer.print("Bar-ba-loots", false);
+  assertEquals("", outputStream.toString());
+
+  printer.flush();
+  String expectedOutput = ConsoleColor.GREEN + "Truffula tufts" + System.lineSeparator() + ConsoleColor.RESET
+      + ConsoleColor.GREEN + "Bar-ba-loots";
+  assertEquals(expectedOutput, outputStream.toString());
+}
+
+@Test
+void testBufferedPrintWritesWhenFull() {
+  // Test: the buffer is written out once it holds bufferSize characters
+  ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+  ColorPrinter printer = new ColorPrinter(new PrintStream(outputStream), ConsoleColor.RED, 16);
+
+  printer.print("abc", false);
+  assertEquals("", outputStream.toString());
+
+  printer.print("defghijk");
+  String expectedOutput = ConsoleColor.RED + "abc" + ConsoleColor.RED + "defghijk" + ConsoleColor.RESET;
+  assertEquals(expectedOutput, outputStream.toString());
+}
+
+@Test
+void testBufferedPrintWithAutoFlush() {
+  // Test: auto-flush writes every print out immediately
+  ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+  ColorPrinter printer = new ColorPrinter(new PrintStream(outputStream), ConsoleColor.CYAN, 1024);
+  printer.setAutoFlush(true);
+
+  printer.println("Swomee-Swans");
+
+  assertEquals(ConsoleColor.CYAN + "Swomee-Swans" + System.lineSeparator() + ConsoleColor.RESET, outputStream.toString());
+}
+
+@Test
+void testPrintLineAddsOneReset() {
+  // Test: a line with its own prefix gets no current color and a single reset, streamed or not
+  String expectedOutput = ConsoleColor.PURPLE + "   docs/" + ConsoleColor.RESET + System.lineSeparator();
+
+  ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+  ColorPrinter printer = new ColorPrinter(new PrintStream(outputStream));
+  printer.printLine(ConsoleColor.PURPLE.getCode() + "   ", "docs", "/");
+  assertEquals(expectedOutput, outputStream.toString());
+
+  ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+  ColorPrinter streamPrinter = new ColorPrinter(new PrintStream(streamed), ConsoleColor.WHITE, 1024);
+  streamPrinter.streamLine(streamPrinter.encode(ConsoleColor.PURPLE.getCode() + "   "), "docs", "/");
+  streamPrinter.flush();
+  assertEquals(expectedOutput, streamed.toString());
+}
+
+@Test
+void testStreamLineEncodesNamesLikePrintLine() throws Exception {
+  // Test: names outside ASCII, including unpaired surrogates, come out as the PrintStream would encode them
+  String[] names = {"plain.txt", "caf\u00e9", "\u65e5\u672c\u8a9e", "smile\ud83d\ude00", "broken\ud83d", "\ude00tail"};
+  for (String encoding : new String[] {"UTF-8", "ISO-8859-1", "US-ASCII"}) {
+    ByteArrayOutputStream expectedStream = new ByteArrayOutputStream();
+    ColorPrinter expectedPrinter = new ColorPrinter(expectedStream, ConsoleColor.WHITE, 0, encoding);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    ColorPrinter printer = new ColorPrinter(outputStream, ConsoleColor.WHITE, 0, encoding);
+    byte[] prefix = printer.encode(ConsoleColor.CYAN.getCode() + "      ");
+
+    for (String name : names) {
+      expectedPrinter.printLine(ConsoleColor.CYAN.getCode() + "      ", name, "/");
+      printer.streamLine(prefix, name, "/");
+    }
+    expectedPrinter.flush();
+    printer.flush();
+
+    assertArrayEquals(expectedStream.toByteArray(), outputStream.toByteArray(), encoding);
+  }
+}
+
+@Test
+void testStreamedBytesKeepTheirPlace() {
+  // Test: text printed between streamed lines comes out in the order it was printed
+  ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+  ColorPrinter printer = new ColorPrinter(new PrintStream(outputStream), ConsoleColor.WHITE, 1024);
+
+  printer.streamLine(printer.encode(""), "first", "");
+  printer.print("second", false);
+  printer.streamLine(printer.encode(""), "third", "");
+  printer.flush();
+
+  String nl = System.lineSeparator();
+  String expectedOutput = "first" + ConsoleColor.RESET + nl + ConsoleColor.WHITE + "second" + "third" + ConsoleColor.RESET + nl;
+  assertEquals(expectedOutput, outputStream.toString());
+}
+
+@Test
+void testStreamedBytesGrowPastBuffer() {
+  // Test: a line longer than the buffer is written whole
+  ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+  ColorPrinter printer = new ColorPrinter(new PrintStream(outputStream), ConsoleColor.WHITE, 8);
+  String longName = "x".repeat(5000);
+
+  printer.streamLine(printer.encode("   "), longName, "");
+
+  assertEquals("   " + longName + ConsoleColor.RESET + System.lineSeparator(), outputStream.toString());
+}
+
+@Test
+void testSetEncodingRejectsUnknownEncoding() {
+  ColorPrinter printer = new ColorPrinter(new PrintStream(new ByteArrayOutputStream()));
+  assertThrows(IllegalArgumentException.class, () -> printer.setEncoding("no-such-encoding"));
+}
+
+}
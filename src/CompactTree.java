@@ -0,0 +1,312 @@
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+
+/**
+ * A directory tree held in memory as a handful of primitive arrays, rather than as
+ * one object per entry.
+ *
+ * A node is an index into parallel arrays, with the root at 0 and the other nodes in
+ * the order they were walked:
+ * - parent       : the index of the parent node, NONE for the root
+ * - first child  : the index of the first child node, NONE if there is none
+ * - next sibling : the index of the next child of the same parent, NONE for the last
+ * - flags        : FLAG_DIRECTORY and FLAG_HIDDEN
+ * - name end     : the end of the node's name in the name arena, where the previous
+ *                  node's name ends and this one's starts
+ * - size, files  : the totals carried by the entry, only kept once an entry has them
+ *
+ * All names are stored in a single byte arena in UTF-8, and a name is only decoded
+ * when it is asked for. Without totals a node takes 17 bytes plus its name, where an
+ * object graph of Files, Strings and lists takes well over a hundred, so a tree of
+ * ten million entries fits in a few hundred megabytes.
+ *
+ * A Builder collects a tree from a walk. TreeWalker.walk(CompactTree, TreeVisitor)
+ * reports it again, without the file system.
+ *
+ * A CompactTree is immutable once built and may be shared between threads.
+ */
+public class CompactTree {
+  /**
+   * The index used for a node that does not exist, such as the parent of the root.
+   */
+  public static final int NONE = -1;
+
+  private static final byte FLAG_DIRECTORY = 1;
+  private static final byte FLAG_HIDDEN = 2;
+
+  private byte[] names;
+  private int[] nameEnds;
+  private int[] parents;
+  private int[] firstChildren;
+  private int[] nextSiblings;
+  private byte[] flags;
+  private long[] sizes;
+  private long[] fileCounts;
+  private int nodeCount;
+
+  private CompactTree(int capacity) {
+    names = new byte[capacity * 8];
+    nameEnds = new int[capacity];
+    parents = new int[capacity];
+    firstChildren = new int[capacity];
+    nextSiblings = new int[capacity];
+    flags = new byte[capacity];
+  }
+
+  /**
+   * Returns the number of nodes, including the root.
+   *
+   * @return the number of nodes
+   */
+  public int size() {
+    return nodeCount;
+  }
+
+  /**
+   * Returns the name of a node. The root is node 0.
+   *
+   * @param node the node
+   * @return the name of the file or directory
+   */
+  public String getName(int node) {
+    int start = nameStart(node);
+    try {
+      return new String(names, start, nameEnds[node] - start, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException("UTF-8 is not supported", e);
+    }
+  }
+
+  /**
+   * Indicates whether a node is a directory.
+   *
+   * @param node the node
+   * @return true if the node is a directory
+   */
+  public boolean isDirectory(int node) {
+    return (flags[check(node)] & FLAG_DIRECTORY) != 0;
+  }
+
+  /**
+   * Indicates whether a node is a hidden file or directory.
+   *
+   * @param node the node
+   * @return true if the node is hidden
+   */
+  public boolean isHidden(int node) {
+    return (flags[check(node)] & FLAG_HIDDEN) != 0;
+  }
+
+  /**
+   * Returns the parent of a node.
+   *
+   * @param node the node
+   * @return the parent node, or NONE for the root
+   */
+  public int getParent(int node) {
+    return parents[check(node)];
+  }
+
+  /**
+   * Returns the first child of a node.
+   *
+   * @param node the node
+   * @return the first child node, or NONE if the node has no children
+   */
+  public int getFirstChild(int node) {
+    return firstChildren[check(node)];
+  }
+
+  /**
+   * Returns the next child of the same parent.
+   *
+   * @param node the node
+   * @return the next sibling node, or NONE if the node is its parent's last child
+   */
+  public int getNextSibling(int node) {
+    return nextSiblings[check(node)];
+  }
+
+  /**
+   * Returns the size of a file, or the total size of the files below a directory, as
+   * the recorded entry carried it.
+   *
+   * @param node the node
+   * @return the size in bytes, or -1 if unknown
+   */
+  public long getSize(int node) {
+    check(node);
+    return sizes == null ? -1 : sizes[node];
+  }
+
+  /**
+   * Returns the number of files below a directory, as the recorded entry carried it.
+   *
+   * @param node the node
+   * @return the number of files, or -1 if unknown or the node is a file
+   */
+  public long getFileCount(int node) {
+    check(node);
+    return fileCounts == null ? -1 : fileCounts[node];
+  }
+
+  /**
+   * Returns a node as an entry without a file, carrying its totals if it has any.
+   *
+   * @param node the node
+   * @return the entry
+   */
+  public DirectoryEntry getEntry(int node) {
+    DirectoryEntry entry = new DirectoryEntry(getName(node), isDirectory(node), isHidden(node));
+    return sizes == null ? entry : entry.withTotals(fileCounts[node], sizes[node]);
+  }
+
+  private int nameStart(int node) {
+    return check(node) == 0 ? 0 : nameEnds[node - 1];
+  }
+
+  private int check(int node) {
+    if (node < 0 || node >= nodeCount) {
+      throw new IndexOutOfBoundsException("No such node: " + node);
+    }
+    return node;
+  }
+
+  /**
+   * Collects a tree as a TreeWalker reports it.
+   *
+   * Nodes are added in the order they are reported, and each one is linked to the
+   * last child added to its parent, so only the open directories are remembered.
+   * Entries left out by the per-directory cap are not recorded.
+   */
+  public static class Builder implements TreeVisitor {
+    private CompactTree tree = new CompactTree(64);
+    private int namesLength = 0;
+
+    /**
+     * The open directory at each depth.
+     */
+    private int[] open = new int[16];
+
+    /**
+     * The last child added to the open directory at each depth, or NONE.
+     */
+    private int[] lastChild = new int[16];
+
+    @Override
+    public void enterDirectory(DirectoryEntry dir, int depth) {
+      if (depth >= open.length) {
+        open = Arrays.copyOf(open, Math.max(depth + 1, 2 * open.length));
+        lastChild = Arrays.copyOf(lastChild, open.length);
+      }
+      open[depth] = add(dir, depth);
+      lastChild[depth] = NONE;
+    }
+
+    @Override
+    public void file(DirectoryEntry file, int depth) {
+      add(file, depth);
+    }
+
+    @Override
+    public void exitDirectory(DirectoryEntry dir, int depth) {
+      // The directory's last child is already linked
+    }
+
+    /**
+     * Appends a node and links it to its parent or previous sibling.
+     */
+    private int add(DirectoryEntry entry, int depth) {
+      CompactTree t = tree;
+      if (depth == 0 && t.nodeCount > 0) {
+        throw new IllegalStateException("A tree has already been recorded");
+      }
+      int node = t.nodeCount;
+      if (node == t.flags.length) {
+        int capacity = 2 * node;
+        t.nameEnds = Arrays.copyOf(t.nameEnds, capacity);
+        t.parents = Arrays.copyOf(t.parents, capacity);
+        t.firstChildren = Arrays.copyOf(t.firstChildren, capacity);
+        t.nextSiblings = Arrays.copyOf(t.nextSiblings, capacity);
+        t.flags = Arrays.copyOf(t.flags, capacity);
+        if (t.sizes != null) {
+          t.sizes = Arrays.copyOf(t.sizes, capacity);
+          t.fileCounts = Arrays.copyOf(t.fileCounts, capacity);
+        }
+      }
+
+      appendName(entry.getName());
+      t.nameEnds[node] = namesLength;
+      t.flags[node] = (byte) ((entry.isDirectory() ? FLAG_DIRECTORY : 0) | (entry.isHidden() ? FLAG_HIDDEN : 0));
+      t.firstChildren[node] = NONE;
+      t.nextSiblings[node] = NONE;
+      if (depth == 0) {
+        t.parents[node] = NONE;
+      } else {
+        int parent = open[depth - 1];
+        t.parents[node] = parent;
+        if (lastChild[depth - 1] == NONE) {
+          t.firstChildren[parent] = node;
+        } else {
+          t.nextSiblings[lastChild[depth - 1]] = node;
+        }
+        lastChild[depth - 1] = node;
+      }
+
+      if (t.sizes == null && (entry.getSize() >= 0 || entry.getFileCount() >= 0)) {
+        // Totals are only kept once an entry carries them
+        t.sizes = new long[t.flags.length];
+        t.fileCounts = new long[t.flags.length];
+        Arrays.fill(t.sizes, -1);
+        Arrays.fill(t.fileCounts, -1);
+      }
+      if (t.sizes != null) {
+        t.sizes[node] = entry.getSize();
+        t.fileCounts[node] = entry.getFileCount();
+      }
+      t.nodeCount++;
+      return node;
+    }
+
+    private void appendName(String name) {
+      byte[] bytes;
+      try {
+        bytes = name.getBytes("UTF-8");
+      } catch (UnsupportedEncodingException e) {
+        throw new IllegalStateException("UTF-8 is not supported", e);
+      }
+      if (namesLength + bytes.length > tree.names.length) {
+        tree.names = Arrays.copyOf(tree.names, Math.max(2 * tree.names.length, namesLength + bytes.length));
+      }
+      System.arraycopy(bytes, 0, tree.names, namesLength, bytes.length);
+      namesLength += bytes.length;
+    }
+
+    /**
+     * Returns the collected tree, with its arrays trimmed to its size. The builder
+     * cannot be used afterwards.
+     *
+     * @return the tree
+     * @throws IllegalStateException if no tree has been recorded
+     */
+    public CompactTree build() {
+      CompactTree t = tree;
+      if (t == null || t.nodeCount == 0) {
+        throw new IllegalStateException("No tree has been recorded");
+      }
+      tree = null;
+      int count = t.nodeCount;
+      t.names = Arrays.copyOf(t.names, namesLength);
+      t.nameEnds = Arrays.copyOf(t.nameEnds, count);
+      t.parents = Arrays.copyOf(t.parents, count);
+      t.firstChildren = Arrays.copyOf(t.firstChildren, count);
+      t.nextSiblings = Arrays.copyOf(t.nextSiblings, count);
+      t.flags = Arrays.copyOf(t.flags, count);
+      if (t.sizes != null) {
+        t.sizes = Arrays.copyOf(t.sizes, count);
+        t.fileCounts = Arrays.copyOf(t.fileCounts, count);
+      }
+      return t;
+    }
+  }
+}
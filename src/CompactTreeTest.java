@@ -0,0 +1,162 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompactTreeTest {
+
+  private static DirectoryEntry entry(String name, boolean directory, boolean hidden) {
+    return new DirectoryEntry(name, directory, hidden);
+  }
+
+  @Test
+  void testBuilderLinksNodesInWalkOrder() {
+    // root/
+    //    a/
+    //       .x.txt
+    //    b.txt
+    //    Ünïcode/
+    DirectoryEntry root = entry("root", true, false);
+    DirectoryEntry a = entry("a", true, false);
+    DirectoryEntry u = entry("Ünïcode", true, false);
+    CompactTree.Builder builder = new CompactTree.Builder();
+    builder.enterDirectory(root, 0);
+    builder.enterDirectory(a, 1);
+    builder.file(entry(".x.txt", false, true), 2);
+    builder.exitDirectory(a, 1);
+    builder.file(entry("b.txt", false, false), 1);
+    builder.enterDirectory(u, 1);
+    builder.exitDirectory(u, 1);
+    builder.exitDirectory(root, 0);
+    CompactTree tree = builder.build();
+
+    assertEquals(5, tree.size());
+    assertEquals("root", tree.getName(0));
+    assertEquals(CompactTree.NONE, tree.getParent(0));
+    assertEquals(CompactTree.NONE, tree.getNextSibling(0));
+
+    int first = tree.getFirstChild(0);
+    assertEquals("a", tree.getName(first));
+    assertTrue(tree.isDirectory(first));
+    int hidden = tree.getFirstChild(first);
+    assertEquals(".x.txt", tree.getName(hidden));
+    assertTrue(tree.isHidden(hidden));
+    assertEquals(first, tree.getParent(hidden));
+    assertEquals(CompactTree.NONE, tree.getNextSibling(hidden));
+
+    int second = tree.getNextSibling(first);
+    assertEquals("b.txt", tree.getName(second));
+    assertFalse(tree.isDirectory(second));
+    int third = tree.getNextSibling(second);
+    assertEquals("Ünïcode", tree.getName(third));
+    assertEquals(CompactTree.NONE, tree.getFirstChild(third));
+    assertEquals(CompactTree.NONE, tree.getNextSibling(third));
+
+    assertEquals(-1, tree.getSize(second));
+    assertThrows(IndexOutOfBoundsException.class, () -> tree.getName(5));
+    assertThrows(IllegalStateException.class, () -> new CompactTree.Builder().build());
+  }
+
+  @Test
+  void testGrowsPastInitialCapacity() {
+    CompactTree.Builder builder = new CompactTree.Builder();
+    DirectoryEntry root = entry("root", true, false);
+    builder.enterDirectory(root, 0);
+    for (int i = 0; i < 1000; i++) {
+      builder.file(entry("file-" + i + ".txt", false, false), 1);
+    }
+    builder.exitDirectory(root, 0);
+    CompactTree tree = builder.build();
+
+    assertEquals(1001, tree.size());
+    int node = tree.getFirstChild(0);
+    for (int i = 0; i < 1000; i++) {
+      assertEquals("file-" + i + ".txt", tree.getName(node));
+      node = tree.getNextSibling(node);
+    }
+    assertEquals(CompactTree.NONE, node);
+  }
+
+  @Test
+  void testWalkMatchesFileSystemWalk(@TempDir File tempDir) throws IOException {
+    // root/
+    //    b.txt      (2 bytes)
+    //    .hidden    (1 byte)
+    //    Sub/
+    //       deep/
+    //          c.txt (3 bytes)
+    File root = new File(tempDir, "root");
+    assertTrue(new File(root, "Sub/deep").mkdirs());
+    try (FileWriter writer = new FileWriter(new File(root, "b.txt"))) {
+      writer.write("ab");
+    }
+    try (FileWriter writer = new FileWriter(new File(root, "Sub/deep/c.txt"))) {
+      writer.write("abc");
+    }
+    TruffulaPrinterTest.createHiddenFile(root, ".hidden");
+
+    for (boolean aggregate : new boolean[] {false, true}) {
+      TruffulaOptions all = new TruffulaOptions(root, true, false);
+      all.setAggregate(aggregate);
+      CompactTree.Builder builder = new CompactTree.Builder();
+      new TreeWalker(all, new DirectoryScanner(true)).walk(root, builder);
+      CompactTree tree = builder.build();
+      assertEquals(6, tree.size());
+
+      for (int maxDepth : new int[] {0, 1}) {
+        TruffulaOptions options = new TruffulaOptions(root, false, false);
+        options.setAggregate(aggregate);
+        options.setMaxDepth(maxDepth);
+        List<String> fromDisk = new ArrayList<>();
+        new TreeWalker(options, new DirectoryScanner(false)).walk(root, new Log(fromDisk));
+        List<String> fromMemory = new ArrayList<>();
+        new TreeWalker(options, null).walk(tree, new Log(fromMemory));
+        if (aggregate) {
+          // Totals were recorded with the hidden file, so only the entries are compared
+          fromDisk.replaceAll(line -> line.replaceAll("\\[.*]", ""));
+          fromMemory.replaceAll(line -> line.replaceAll("\\[.*]", ""));
+        }
+        assertEquals(fromDisk, fromMemory);
+      }
+    }
+  }
+
+  /**
+   * Records every entry as "name@depth", with the totals it carries.
+   */
+  private static class Log implements TreeVisitor {
+    private final List<String> lines;
+
+    Log(List<String> lines) {
+      this.lines = lines;
+    }
+
+    @Override
+    public void enterDirectory(DirectoryEntry dir, int depth) {
+      lines.add(dir.getName() + "/@" + depth + "[" + dir.getFileCount() + "," + dir.getSize() + "]");
+    }
+
+    @Override
+    public void file(DirectoryEntry file, int depth) {
+      lines.add(file.getName() + "@" + depth + "[" + file.getSize() + "]");
+    }
+
+    @Override
+    public void exitDirectory(DirectoryEntry dir, int depth) {
+    }
+
+    @Override
+    public void omitted(DirectoryEntry dir, int count, int depth) {
+      lines.add("..." + count + "@" + depth);
+    }
+  }
+}
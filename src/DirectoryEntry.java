@@ -0,0 +1,259 @@
+import java.io.File;
+
+/**
+ * A single child of a directory, as read by a DirectoryScanner.
+ * 
+ * The name, type and hidden status are read from the file system once when the
+ * directory is scanned, so they can be used any number of times afterwards
+ * without another call to the file system.
+ * 
+ * An entry also remembers the .gitignore rules that applied in the directory it
+ * was found in, so that a scan of the entry can continue from them.
+ * 
+ * When sizes are added up, a walk hands out entries that also carry the size of a
+ * file, or the number of files and total size below a directory. Entries that do
+ * not come from the file system, such as those replayed from a TreeIndex, have
+ * no file.
+ * 
+ * A directory listed by a DirectoryScanner also remembers the canonical path of the
+ * directory it was found in, so that it can be checked for being a symbolic link when a
+ * walk is about to list it. Once checked, a link carries the canonical path of its
+ * target, and whether the target contains the link, so that following it would loop.
+ */
+public class DirectoryEntry {
+  private final File file;
+  private final String name;
+  private final boolean directory;
+  private final boolean hidden;
+  private final GitIgnore ignoreRules;
+  private final long fileCount;
+  private final long size;
+  private final String container;
+  private final boolean resolved;
+  private final String linkTarget;
+  private final boolean recursiveLink;
+
+  /**
+   * Constructs a DirectoryEntry that has no file, such as one replayed from a TreeIndex.
+   *
+   * @param name      the name of the file
+   * @param directory whether the file is a directory
+   * @param hidden    whether the file is hidden
+   */
+  public DirectoryEntry(String name, boolean directory, boolean hidden) {
+    this(null, name, directory, hidden, GitIgnore.NONE);
+  }
+
+  /**
+   * Constructs a DirectoryEntry with already known metadata and no .gitignore rules.
+   *
+   * @param file      the file this entry describes
+   * @param name      the name of the file
+   * @param directory whether the file is a directory
+   * @param hidden    whether the file is hidden
+   */
+  public DirectoryEntry(File file, String name, boolean directory, boolean hidden) {
+    this(file, name, directory, hidden, GitIgnore.NONE);
+  }
+
+  /**
+   * Constructs a DirectoryEntry with already known metadata.
+   *
+   * @param file        the file this entry describes
+   * @param name        the name of the file
+   * @param directory   whether the file is a directory
+   * @param hidden      whether the file is hidden
+   * @param ignoreRules the .gitignore rules of the directory containing the file
+   */
+  public DirectoryEntry(File file, String name, boolean directory, boolean hidden, GitIgnore ignoreRules) {
+    this(file, name, directory, hidden, ignoreRules, null);
+  }
+
+  /**
+   * Constructs a DirectoryEntry with already known metadata, found in a directory whose
+   * canonical path is known.
+   *
+   * @param file        the file this entry describes
+   * @param name        the name of the file
+   * @param directory   whether the file is a directory
+   * @param hidden      whether the file is hidden
+   * @param ignoreRules the .gitignore rules of the directory containing the file
+   * @param container   the canonical path of the directory containing the file, or null if unknown
+   */
+  public DirectoryEntry(File file, String name, boolean directory, boolean hidden, GitIgnore ignoreRules,
+      String container) {
+    this(file, name, directory, hidden, ignoreRules, -1, -1, container, false, null, false);
+  }
+
+  private DirectoryEntry(File file, String name, boolean directory, boolean hidden, GitIgnore ignoreRules,
+      long fileCount, long size, String container, boolean resolved, String linkTarget, boolean recursiveLink) {
+    this.file = file;
+    this.name = name;
+    this.directory = directory;
+    this.hidden = hidden;
+    this.ignoreRules = ignoreRules;
+    this.fileCount = fileCount;
+    this.size = size;
+    this.container = container;
+    this.resolved = resolved;
+    this.linkTarget = linkTarget;
+    this.recursiveLink = recursiveLink;
+  }
+
+  /**
+   * Returns a copy of this entry that carries sizes.
+   *
+   * @param fileCount the number of files below a directory, or -1 for a file
+   * @param size      the size of a file, or the total size of the files below a directory
+   * @return the new entry
+   */
+  public DirectoryEntry withTotals(long fileCount, long size) {
+    return new DirectoryEntry(file, name, directory, hidden, ignoreRules, fileCount, size, container, resolved,
+        linkTarget, recursiveLink);
+  }
+
+  /**
+   * Returns a copy of this entry with other .gitignore rules.
+   *
+   * @param ignoreRules the .gitignore rules of the directory containing the file
+   * @return the new entry
+   */
+  public DirectoryEntry withIgnoreRules(GitIgnore ignoreRules) {
+    return new DirectoryEntry(file, name, directory, hidden, ignoreRules, fileCount, size, container, resolved,
+        linkTarget, recursiveLink);
+  }
+
+  /**
+   * Returns a copy of this entry that is known to be a symbolic link, or known not to be one.
+   *
+   * @param linkTarget    the canonical path of the link's target, or null if the entry is not a link
+   * @param recursiveLink whether the target is the directory containing the link, or one above it
+   * @return the new entry
+   */
+  public DirectoryEntry withLink(String linkTarget, boolean recursiveLink) {
+    return new DirectoryEntry(file, name, directory, hidden, ignoreRules, fileCount, size, container, true,
+        linkTarget, recursiveLink);
+  }
+
+  /**
+   * Returns the file this entry describes.
+   *
+   * @return the file, or null if the entry does not come from the file system
+   */
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Returns the name of the file, without its parent path.
+   *
+   * @return the name of the file
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Indicates whether the file is a directory.
+   *
+   * @return true if the file is a directory; false otherwise
+   */
+  public boolean isDirectory() {
+    return directory;
+  }
+
+  /**
+   * Indicates whether the file is hidden.
+   *
+   * @return true if the file is hidden; false otherwise
+   */
+  public boolean isHidden() {
+    return hidden;
+  }
+
+  /**
+   * Returns the .gitignore rules of the directory containing the file.
+   *
+   * @return the .gitignore rules, which are empty when .gitignore files are not used
+   */
+  public GitIgnore getIgnoreRules() {
+    return ignoreRules;
+  }
+
+  /**
+   * Returns the number of files below a directory, when sizes are added up.
+   *
+   * @return the number of files, or -1 if unknown or the entry is a file
+   */
+  public long getFileCount() {
+    return fileCount;
+  }
+
+  /**
+   * Returns the size of a file, or the total size of the files below a directory,
+   * when sizes are added up.
+   *
+   * @return the size in bytes, or -1 if unknown
+   */
+  public long getSize() {
+    return size;
+  }
+
+  /**
+   * Returns the canonical path of the directory this entry was found in.
+   *
+   * @return the canonical path, or null if unknown
+   */
+  public String getContainer() {
+    return container;
+  }
+
+  /**
+   * Indicates whether the entry has been checked for being a symbolic link.
+   *
+   * @return true if {@link #getLinkTarget()} is known; false otherwise
+   */
+  public boolean isResolved() {
+    return resolved;
+  }
+
+  /**
+   * Returns the canonical path of a checked entry: the target of a link, or the path of
+   * the entry below its directory otherwise.
+   *
+   * @return the canonical path, or null if the entry has not been checked or its directory is unknown
+   */
+  public String getCanonicalPath() {
+    if (!resolved) {
+      return null;
+    }
+    if (linkTarget != null) {
+      return linkTarget;
+    }
+    return container == null ? null : new File(container, name).getPath();
+  }
+
+  /**
+   * Returns the target of a symbolic link.
+   *
+   * @return the canonical path of the target, or null if the entry is not a link or has not been checked
+   */
+  public String getLinkTarget() {
+    return linkTarget;
+  }
+
+  /**
+   * Indicates whether the entry is a symbolic link to the directory containing it, or
+   * to one above it, which loops when followed.
+   *
+   * @return true if the entry is a recursive link; false otherwise
+   */
+  public boolean isRecursiveLink() {
+    return recursiveLink;
+  }
+
+  @Override
+  public String toString() {
+    return "DirectoryEntry [name=" + name + ", directory=" + directory + ", hidden=" + hidden + "]";
+  }
+}
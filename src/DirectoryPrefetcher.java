@@ -0,0 +1,180 @@
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Lists directories ahead of a sequential walk so that their listings are ready
+ * by the time the walk reaches them.
+ * 
+ * Each prefetched directory is checked for being a symbolic link and scanned on its own
+ * virtual thread. A link is only scanned if the walk's LinkTracker would list it at that
+ * point. At most lookahead prefetches are started and not yet collected at any time,
+ * which bounds the number of listings held in memory. The walk collects each prefetch,
+ * with scan() for a directory it lists or skip() for one it does not, so every slot is
+ * freed. Directories that were not prefetched are checked and scanned on the calling
+ * thread when asked for, so the walk's order and output never depend on what was
+ * prefetched.
+ * 
+ * A DirectoryPrefetcher is used by one walking thread and is not thread-safe.
+ */
+public class DirectoryPrefetcher implements AutoCloseable {
+  private final DirectoryScanner scanner;
+  private final LinkTracker links;
+  private final int lookahead;
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+  /**
+   * Scans that have been started but not yet collected, by directory.
+   */
+  private final Map<File, Future<Prefetch>> pending = new HashMap<>();
+
+  /**
+   * Constructs a DirectoryPrefetcher.
+   *
+   * @param scanner   the scanner used to list directories
+   * @param links     the links followed by the walk, which decide whether a link is scanned
+   * @param lookahead the maximum number of directories listed ahead of the walk
+   * @throws IllegalArgumentException if lookahead is less than 1
+   */
+  public DirectoryPrefetcher(DirectoryScanner scanner, LinkTracker links, int lookahead) {
+    if (lookahead < 1) {
+      throw new IllegalArgumentException("Lookahead must be at least 1: " + lookahead);
+    }
+    this.scanner = scanner;
+    this.links = links;
+    this.lookahead = lookahead;
+  }
+
+  /**
+   * Starts listing the subdirectories among the given entries, in order, for as long
+   * as the lookahead window has room.
+   *
+   * @param entries the entries of a directory the walk is about to print
+   */
+  public void prefetch(DirectoryEntry[] entries) {
+    for (DirectoryEntry entry : entries) {
+      if (pending.size() >= lookahead) {
+        return;
+      }
+      File dir = entry.getFile();
+      if (entry.isDirectory() && !pending.containsKey(dir)) {
+        pending.put(dir, executor.submit(() -> {
+          DirectoryEntry checked = scanner.resolveLink(entry);
+          // A link the walk will not list is only checked
+          return links.wouldList(checked) ? new Prefetch(checked, true, scanner.scan(checked))
+              : new Prefetch(checked, false, null);
+        }));
+      }
+    }
+  }
+
+  /**
+   * Checks whether a directory is a symbolic link, taking the answer from its prefetch
+   * if one was started, or looking it up on the calling thread otherwise.
+   *
+   * @param dir a directory returned by a scan
+   * @return the checked directory, as from DirectoryScanner.resolveLink()
+   */
+  public DirectoryEntry resolveLink(DirectoryEntry dir) {
+    Future<Prefetch> future = pending.get(dir.getFile());
+    Prefetch prefetch = future != null ? get(future, dir) : null;
+    return prefetch != null ? prefetch.dir : scanner.resolveLink(dir);
+  }
+
+  /**
+   * Returns the listing of a directory, waiting for its prefetch to finish if one was
+   * started, or scanning it on the calling thread otherwise.
+   *
+   * @param dir the directory to list
+   * @return the sorted children, or null if dir is not a directory or cannot be read
+   */
+  public DirectoryEntry[] scan(DirectoryEntry dir) {
+    Future<Prefetch> future = pending.remove(dir.getFile());
+    Prefetch prefetch = future != null ? get(future, dir) : null;
+    if (prefetch == null || !prefetch.scanned) {
+      return scanner.scan(dir);
+    }
+    return prefetch.entries;
+  }
+
+  /**
+   * Drops the prefetch of a directory the walk does not list, freeing its slot.
+   *
+   * @param dir the directory that is not listed
+   */
+  public void skip(DirectoryEntry dir) {
+    Future<Prefetch> future = pending.remove(dir.getFile());
+    if (future != null) {
+      future.cancel(true);
+    }
+  }
+
+  /**
+   * Returns the number of prefetches started and not yet collected.
+   *
+   * @return the number of pending prefetches
+   */
+  public int getPendingCount() {
+    return pending.size();
+  }
+
+  /**
+   * Waits for a prefetch to finish.
+   *
+   * @return the prefetch, or null if the calling thread was interrupted
+   */
+  private Prefetch get(Future<Prefetch> future, DirectoryEntry dir) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      pending.remove(dir.getFile());
+      future.cancel(true);
+      return null;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException("Could not list " + dir.getFile(), cause);
+    }
+  }
+
+  /**
+   * Cancels any prefetches that were never collected and stops the virtual threads.
+   */
+  @Override
+  public void close() {
+    for (Future<Prefetch> future : pending.values()) {
+      future.cancel(true);
+    }
+    pending.clear();
+    executor.shutdownNow();
+  }
+
+  /**
+   * A prefetched directory, checked for being a link, and its listing.
+   */
+  private static final class Prefetch {
+    private final DirectoryEntry dir;
+    private final boolean scanned;
+
+    /**
+     * The sorted children, or null if the directory was not scanned or cannot be read.
+     */
+    private final DirectoryEntry[] entries;
+
+    Prefetch(DirectoryEntry dir, boolean scanned, DirectoryEntry[] entries) {
+      this.dir = dir;
+      this.scanned = scanned;
+      this.entries = entries;
+    }
+  }
+}
@@ -0,0 +1,80 @@
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class DirectoryPrefetcherTest {
+
+  @Test
+  void testScanReturnsPrefetchedListing(@TempDir File tempDir) throws IOException {
+    File first = new File(tempDir, "first");
+    File second = new File(tempDir, "second");
+    first.mkdir();
+    second.mkdir();
+    new File(first, "a.txt").createNewFile();
+    new File(second, "b.txt").createNewFile();
+    new File(tempDir, "file.txt").createNewFile();
+
+    DirectoryScanner scanner = new DirectoryScanner(false);
+    try (DirectoryPrefetcher prefetcher = new DirectoryPrefetcher(scanner, new LinkTracker(SymlinkPolicy.FOLLOW, tempDir), 1)) {
+      DirectoryEntry[] entries = prefetcher.scan(new DirectoryEntry(tempDir, tempDir.getName(), true, false));
+      assertEquals(3, entries.length);
+
+      // Only "first" fits in the window, "second" is scanned when it is asked for
+      prefetcher.prefetch(entries);
+      assertEquals("a.txt", prefetcher.scan(entries[1])[0].getName());
+      assertEquals("b.txt", prefetcher.scan(entries[2])[0].getName());
+      assertNull(prefetcher.scan(entries[0]));
+    }
+  }
+
+  @Test
+  void testLinksNotFollowedAreCheckedButNotScanned(@TempDir File tempDir) throws IOException {
+    // link -> target
+    // target/
+    //    a.txt
+    File target = new File(tempDir, "target");
+    target.mkdir();
+    new File(target, "a.txt").createNewFile();
+    try {
+      Files.createSymbolicLink(tempDir.toPath().resolve("link"), Paths.get("target"));
+    } catch (UnsupportedOperationException | IOException e) {
+      Assumptions.assumeTrue(false, "Symbolic links are not supported: " + e);
+    }
+
+    WalkStats stats = new WalkStats();
+    DirectoryScanner scanner = new DirectoryScanner(false, new NameFilter(List.of(), List.of()), false, null, stats);
+    LinkTracker links = new LinkTracker(SymlinkPolicy.NOFOLLOW, tempDir);
+    try (DirectoryPrefetcher prefetcher = new DirectoryPrefetcher(scanner, links, 2)) {
+      DirectoryEntry[] entries = scanner.scan(tempDir);
+      prefetcher.prefetch(entries);
+      assertEquals(2, prefetcher.getPendingCount());
+
+      DirectoryEntry link = prefetcher.resolveLink(entries[0]);
+      assertEquals(target.getCanonicalPath(), link.getLinkTarget());
+      assertFalse(links.isListed(link));
+      prefetcher.skip(link);
+      DirectoryEntry plain = prefetcher.resolveLink(entries[1]);
+      assertEquals("a.txt", prefetcher.scan(plain)[0].getName());
+
+      // The link was never listed, and both slots are free again
+      assertEquals(2, stats.getListings());
+      assertEquals(0, prefetcher.getPendingCount());
+    }
+  }
+
+  @Test
+  void testLookaheadMustBePositive() {
+    assertThrows(IllegalArgumentException.class, () -> new DirectoryPrefetcher(new DirectoryScanner(false), new LinkTracker(SymlinkPolicy.FOLLOW, null), 0));
+  }
+}
@@ -0,0 +1,531 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Reads the children of a directory together with the metadata needed to print them.
+ * 
+ * Every child is asked whether it is hidden and whether it is a directory exactly once
+ * per scan, and the answers are carried along in a DirectoryEntry. Hidden children are
+ * dropped before their type is read, so they cost no stat call when they are not shown.
+ * On UNIX-like systems File.isHidden() only looks at the name, so each visible child
+ * costs a single stat call for its type.
+ * 
+ * Children excluded by the NameFilter are dropped on their name alone, before their
+ * type is read, so an excluded directory is never stat-ed or listed.
+ * 
+ * When .gitignore files are respected, a directory's .gitignore is read only if the
+ * directory's listing contains one, and the resulting GitIgnore rules are attached to
+ * its children so that scanning a child directory continues from them.
+ * 
+ * When a TreeSnapshot is given, listings come from the snapshot, which replays
+ * unchanged directories without any stat calls for their children.
+ * 
+ * A directory too wide to hold in memory can be scanned with scanSorted() or
+ * listSorted(), which sort its names on disk and read each child only as it is reached.
+ * 
+ * A child directory is checked for being a symbolic link with resolveLink(), by comparing
+ * its canonical path with that of the directory it is in, and a link carries its target.
+ * Walks only check the directories they are about to list, so each listed directory costs
+ * one canonical path lookup, and a directory that is only printed costs none. Every
+ * child remembers the canonical path of its directory, so only the root of a walk is
+ * looked up when it is scanned. Listings replayed from a snapshot come already checked.
+ * 
+ * When WalkStats are given, every listing and sort is timed, and the stat calls and
+ * canonical path lookups made for the listed children are counted. Without them, no
+ * clock is read. Listings read through a snapshot are counted the same way, and a
+ * replayed listing counts one stat call, for its directory, and no sort.
+ */
+public class DirectoryScanner {
+  private final boolean showHidden;
+  private final NameFilter filter;
+  private final boolean useGitIgnore;
+  private final TreeSnapshot snapshot;
+  private final WalkStats stats;
+
+  /**
+   * Constructs a DirectoryScanner that does not filter by name.
+   *
+   * @param showHidden whether hidden children should be included in scans
+   */
+  public DirectoryScanner(boolean showHidden) {
+    this(showHidden, new NameFilter(List.of(), List.of()), false, null);
+  }
+
+  /**
+   * Constructs a DirectoryScanner.
+   *
+   * @param showHidden   whether hidden children should be included in scans
+   * @param filter       the include and exclude patterns children must pass
+   * @param useGitIgnore whether children ignored by .gitignore files, and .git directories, are left out
+   * @param snapshot     the snapshot to read and record listings through, or null to always list directories
+   */
+  public DirectoryScanner(boolean showHidden, NameFilter filter, boolean useGitIgnore, TreeSnapshot snapshot) {
+    this(showHidden, filter, useGitIgnore, snapshot, null);
+  }
+
+  /**
+   * Constructs a DirectoryScanner that records its work.
+   *
+   * @param showHidden   whether hidden children should be included in scans
+   * @param filter       the include and exclude patterns children must pass
+   * @param useGitIgnore whether children ignored by .gitignore files, and .git directories, are left out
+   * @param snapshot     the snapshot to read and record listings through, or null to always list directories
+   * @param stats        the stats to record listings, sorts and stat calls in, or null for none
+   */
+  public DirectoryScanner(boolean showHidden, NameFilter filter, boolean useGitIgnore, TreeSnapshot snapshot,
+      WalkStats stats) {
+    this.showHidden = showHidden;
+    this.filter = filter;
+    this.useGitIgnore = useGitIgnore;
+    this.snapshot = snapshot;
+    this.stats = stats;
+  }
+
+  /**
+   * Returns the stats this scanner records its work in.
+   *
+   * @return the stats, or null if none are recorded
+   */
+  public WalkStats getStats() {
+    return stats;
+  }
+
+  /**
+   * Lists the children of a directory, sorted with AlphabeticalFileSorter. The
+   * directory is treated as the root of a walk, with no inherited .gitignore rules.
+   *
+   * @param dir the directory to scan
+   * @return the sorted children, or null if dir is not a directory or cannot be read
+   */
+  public DirectoryEntry[] scan(File dir) {
+    return scan(dir, null, GitIgnore.NONE, true);
+  }
+
+  /**
+   * Lists the children of a directory entry that was returned by an earlier scan,
+   * continuing from the .gitignore rules of the scan that found it.
+   *
+   * @param dir the directory to scan
+   * @return the sorted children, or null if dir is not a directory or cannot be read
+   */
+  public DirectoryEntry[] scan(DirectoryEntry dir) {
+    return scan(dir, true);
+  }
+
+  /**
+   * Lists the children of a directory entry like {@link #scan(DirectoryEntry)}, but
+   * leaves them in the order the file system returns them, for callers that sort only
+   * part of the listing with {@link #sortFirst(DirectoryEntry[], int)}. Listings from a
+   * snapshot are returned sorted.
+   *
+   * @param dir the directory to scan
+   * @return the children, or null if dir is not a directory or cannot be read
+   */
+  public DirectoryEntry[] scanUnsorted(DirectoryEntry dir) {
+    return scan(dir, false);
+  }
+
+  /**
+   * Sorts a listing with AlphabeticalFileSorter, keeping only the children that come first.
+   * A listing longer than the limit is not sorted in full: the first children are
+   * selected through a BoundedHeap.
+   *
+   * @param entries the children, in any order
+   * @param limit   the number of children to keep
+   * @return the first min(limit, entries.length) children, sorted
+   */
+  public DirectoryEntry[] sortFirst(DirectoryEntry[] entries, int limit) {
+    long start = stats != null ? System.nanoTime() : 0;
+    DirectoryEntry[] sorted = entries.length > limit
+        ? AlphabeticalFileSorter.first(entries, limit)
+        : AlphabeticalFileSorter.sort(entries);
+    if (stats != null) {
+      stats.recordSort(System.nanoTime() - start);
+    }
+    return sorted;
+  }
+
+  /**
+   * Checks whether a directory returned by an earlier scan is a symbolic link, by
+   * looking up its canonical path. Walks call this only for the directories they are
+   * about to list.
+   *
+   * @param dir a directory returned by a scan
+   * @return a copy of dir that is known to be a link or not, or dir itself if it has
+   *         already been checked or was not found by a scan
+   */
+  public DirectoryEntry resolveLink(DirectoryEntry dir) {
+    String container = dir.getContainer();
+    if (dir.isResolved() || !dir.isDirectory() || dir.getFile() == null || container == null) {
+      return dir;
+    }
+    if (stats != null) {
+      stats.recordPathLookups(1);
+    }
+    String target = linkTarget(dir.getFile(), container);
+    return dir.withLink(target, target != null && isRecursive(container, target));
+  }
+
+  private DirectoryEntry[] scan(DirectoryEntry dir, boolean sorted) {
+    GitIgnore inherited = useGitIgnore ? dir.getIgnoreRules().descend(dir.getName()) : GitIgnore.NONE;
+    return scan(dir.getFile(), dir, inherited, sorted);
+  }
+
+  /**
+   * Lists a directory, given as a file and, if it was found by a scan, as an entry.
+   */
+  private DirectoryEntry[] scan(File dir, DirectoryEntry entry, GitIgnore inherited, boolean sorted) {
+    long start = stats != null ? System.nanoTime() : 0;
+    if (snapshot != null) {
+      DirectoryEntry[] listing = snapshot.list(dir, canonicalPath(dir, entry), stats);
+      if (stats != null) {
+        stats.recordListing(System.nanoTime() - start, listing == null);
+      }
+      return filter(listing, inherited);
+    }
+
+    File[] files = dir.listFiles();
+    if (stats != null) {
+      stats.recordListing(System.nanoTime() - start, files == null);
+    }
+    return scan(dir, entry, files, inherited, sorted);
+  }
+
+  private DirectoryEntry[] scan(File dir, DirectoryEntry entry, File[] files, GitIgnore inherited, boolean sorted) {
+    if (files == null) {
+      return null;
+    }
+
+    GitIgnore rules = useGitIgnore ? readRules(files, inherited) : GitIgnore.NONE;
+    String container = files.length > 0 ? canonicalPath(dir, entry) : null;
+
+    DirectoryEntry[] entries = new DirectoryEntry[files.length];
+    int count = 0;
+    for (File file : files) {
+      DirectoryEntry child = toEntry(file, rules, container);
+      if (child != null) {
+        entries[count++] = child;
+      }
+    }
+    if (count < entries.length) {
+      entries = Arrays.copyOf(entries, count);
+    }
+    return sorted ? sortFirst(entries, entries.length) : entries;
+  }
+
+  /**
+   * Lists the children of a directory entry in sorted order like {@link #scan(DirectoryEntry)},
+   * and passes each one to an action, without holding the whole listing in memory when it
+   * is longer than runSize. See {@link #listSorted(DirectoryEntry, int)}.
+   *
+   * @param dir     the directory to scan
+   * @param runSize the number of names that are sorted in memory
+   * @param action  the action to pass each child to, in sorted order
+   * @return false if dir is not a directory or cannot be read
+   * @throws UncheckedIOException if the sorted runs cannot be written or read
+   */
+  public boolean scanSorted(DirectoryEntry dir, int runSize, Consumer<DirectoryEntry> action) {
+    try (SortedListing listing = listSorted(dir, runSize)) {
+      if (listing == null) {
+        return false;
+      }
+      while (listing.hasNext()) {
+        action.accept(listing.next());
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Opens the children of a directory entry for reading one at a time in sorted order,
+   * without holding the whole listing in memory when it is longer than runSize.
+   *
+   * Only the names are listed. A longer listing is sorted with an ExternalNameSorter,
+   * which spills sorted runs of runSize names to temporary files, and each child is read
+   * from the file system and filtered as the runs are merged. Other directories may be
+   * scanned while the listing is open, including with this method.
+   *
+   * Listings from a snapshot are already in memory and are read from {@link #scan(DirectoryEntry)}.
+   *
+   * @param dir     the directory to scan
+   * @param runSize the number of names that are sorted in memory
+   * @return the open listing, which must be closed, or null if dir is not a directory or cannot be read
+   * @throws UncheckedIOException if the sorted runs cannot be written
+   */
+  public SortedListing listSorted(DirectoryEntry dir, int runSize) {
+    if (snapshot != null) {
+      DirectoryEntry[] entries = scan(dir);
+      return entries == null ? null : new SortedListing(entries);
+    }
+
+    File directory = dir.getFile();
+    GitIgnore inherited = useGitIgnore ? dir.getIgnoreRules().descend(dir.getName()) : GitIgnore.NONE;
+    long start = stats != null ? System.nanoTime() : 0;
+    String[] names = directory.list();
+    if (stats != null) {
+      stats.recordListing(System.nanoTime() - start, names == null);
+    }
+    if (names == null) {
+      return null;
+    }
+    if (names.length <= runSize) {
+      File[] files = new File[names.length];
+      for (int i = 0; i < names.length; i++) {
+        files[i] = new File(directory, names[i]);
+      }
+      return new SortedListing(scan(directory, dir, files, inherited, true));
+    }
+
+    GitIgnore rules = useGitIgnore ? readRules(directory, names, inherited) : GitIgnore.NONE;
+    String container = canonicalPath(directory, dir);
+    ExternalNameSorter sorter = new ExternalNameSorter(runSize);
+    try {
+      long sortStart = stats != null ? System.nanoTime() : 0;
+      for (int i = 0; i < names.length; i++) {
+        sorter.add(names[i]);
+        // Names that have been spilled are left to the garbage collector
+        names[i] = null;
+      }
+      names = null;
+      Iterator<String> sorted = sorter.sorted();
+      if (stats != null) {
+        stats.recordSort(System.nanoTime() - sortStart);
+      }
+      return new SortedListing(sorter, sorted, name -> toEntry(new File(directory, name), rules, container));
+    } catch (IOException e) {
+      sorter.close();
+      throw new UncheckedIOException("Could not sort the listing of " + directory + " on disk", e);
+    }
+  }
+
+  /**
+   * The children of a directory read one at a time in sorted order, either from a
+   * listing in memory or as the names sorted on disk are merged. Closing it deletes
+   * the names sorted on disk.
+   */
+  public static class SortedListing implements Iterator<DirectoryEntry>, Closeable {
+    private final DirectoryEntry[] entries;
+    private int next = 0;
+
+    private final ExternalNameSorter sorter;
+    private final Iterator<String> names;
+    private final Function<String, DirectoryEntry> reader;
+
+    /**
+     * The next child read from the sorted names, or null if it has not been read yet.
+     */
+    private DirectoryEntry pending;
+
+    /**
+     * Constructs a SortedListing of children that are already sorted in memory.
+     *
+     * @param entries the sorted children
+     */
+    public SortedListing(DirectoryEntry[] entries) {
+      this.entries = entries;
+      this.sorter = null;
+      this.names = null;
+      this.reader = null;
+    }
+
+    private SortedListing(ExternalNameSorter sorter, Iterator<String> names, Function<String, DirectoryEntry> reader) {
+      this.entries = null;
+      this.sorter = sorter;
+      this.names = names;
+      this.reader = reader;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (entries != null) {
+        return next < entries.length;
+      }
+      // Children left out by the filters are skipped
+      while (pending == null && names.hasNext()) {
+        pending = reader.apply(names.next());
+      }
+      return pending != null;
+    }
+
+    @Override
+    public DirectoryEntry next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      if (entries != null) {
+        return entries[next++];
+      }
+      DirectoryEntry entry = pending;
+      pending = null;
+      return entry;
+    }
+
+    @Override
+    public void close() {
+      if (sorter != null) {
+        sorter.close();
+      }
+    }
+  }
+
+  /**
+   * Reads a listed child's type and hidden status and applies the filters to it.
+   *
+   * @return the entry, or null if the child is left out
+   */
+  private DirectoryEntry toEntry(File file, GitIgnore rules, String container) {
+    boolean hidden = file.isHidden();
+    if (hidden && !showHidden) {
+      return null;
+    }
+    String name = file.getName();
+    if (filter.isExcluded(name) || (useGitIgnore && name.equals(".git"))) {
+      return null;
+    }
+    boolean directory = file.isDirectory();
+    if (stats != null) {
+      stats.recordStatCalls(1);
+    }
+    if (!directory && !filter.isIncludedFile(name)) {
+      return null;
+    }
+    if (!rules.isEmpty() && rules.isIgnored(name, directory)) {
+      return null;
+    }
+    return new DirectoryEntry(file, name, directory, hidden, rules, container);
+  }
+
+  /**
+   * Filters a sorted listing whose metadata is already known. The order is kept.
+   */
+  private DirectoryEntry[] filter(DirectoryEntry[] listing, GitIgnore inherited) {
+    if (listing == null) {
+      return null;
+    }
+
+    GitIgnore rules = inherited;
+    if (useGitIgnore) {
+      for (DirectoryEntry entry : listing) {
+        if (entry.getName().equals(GitIgnore.FILE_NAME)) {
+          rules = readRules(entry.getFile(), inherited);
+        }
+      }
+    }
+
+    DirectoryEntry[] entries = new DirectoryEntry[listing.length];
+    int count = 0;
+    for (DirectoryEntry entry : listing) {
+      String name = entry.getName();
+      if ((entry.isHidden() && !showHidden) || filter.isExcluded(name) || (useGitIgnore && name.equals(".git"))) {
+        continue;
+      }
+      if (!entry.isDirectory() && !filter.isIncludedFile(name)) {
+        continue;
+      }
+      if (!rules.isEmpty() && rules.isIgnored(name, entry.isDirectory())) {
+        continue;
+      }
+      entries[count++] = entry.getIgnoreRules() == rules ? entry : entry.withIgnoreRules(rules);
+    }
+    return count < entries.length ? Arrays.copyOf(entries, count) : entries;
+  }
+
+  /**
+   * Returns the canonical path of a directory being scanned. A directory that was checked
+   * for being a link before it was listed already knows it, so only the root of a walk
+   * is looked up.
+   */
+  private String canonicalPath(File dir, DirectoryEntry entry) {
+    String path = entry != null ? entry.getCanonicalPath() : null;
+    if (path != null) {
+      return path;
+    }
+    if (stats != null) {
+      stats.recordPathLookups(1);
+    }
+    try {
+      return dir.getCanonicalPath();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the target of a child directory that is a symbolic link. A child is a link
+   * when its canonical path is not the canonical path of its directory followed by its
+   * name.
+   *
+   * @param dir          the child directory
+   * @param canonicalDir the canonical path of the directory it was listed in
+   * @return the canonical path of the target, or null if dir is not a link or cannot be resolved
+   */
+  static String linkTarget(File dir, String canonicalDir) {
+    String target;
+    try {
+      target = dir.getCanonicalPath();
+    } catch (IOException e) {
+      return null;
+    }
+    return target.equals(new File(canonicalDir, dir.getName()).getPath()) ? null : target;
+  }
+
+  /**
+   * Indicates whether a link's target is the directory the link is in, or one above it.
+   *
+   * @param canonicalDir the canonical path of the directory the link is in, or null if unknown
+   * @param target       the canonical path of the link's target
+   * @return true if following the link would loop
+   */
+  static boolean isRecursive(String canonicalDir, String target) {
+    if (canonicalDir == null) {
+      return false;
+    }
+    String container = canonicalDir.endsWith(File.separator) ? canonicalDir : canonicalDir + File.separator;
+    String prefix = target.endsWith(File.separator) ? target : target + File.separator;
+    return container.startsWith(prefix);
+  }
+
+  /**
+   * Adds the rules of the directory's .gitignore, if its listing has one, to the inherited rules.
+   */
+  private static GitIgnore readRules(File[] files, GitIgnore inherited) {
+    for (File file : files) {
+      if (file.getName().equals(GitIgnore.FILE_NAME)) {
+        return readRules(file, inherited);
+      }
+    }
+    return inherited;
+  }
+
+  /**
+   * Adds the rules of the directory's .gitignore, if its names include one, to the inherited rules.
+   */
+  private static GitIgnore readRules(File dir, String[] names, GitIgnore inherited) {
+    for (String name : names) {
+      if (name.equals(GitIgnore.FILE_NAME)) {
+        return readRules(new File(dir, name), inherited);
+      }
+    }
+    return inherited;
+  }
+
+  /**
+   * Adds the rules of a .gitignore file to the inherited rules. An unreadable .gitignore
+   * is treated as empty.
+   */
+  private static GitIgnore readRules(File gitIgnoreFile, GitIgnore inherited) {
+    try {
+      return inherited.withRules(gitIgnoreFile);
+    } catch (IOException e) {
+      return inherited;
+    }
+  }
+}
@@ -0,0 +1,55 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DirectoryScannerTest {
+
+  @Test
+  void testScanSortsAndReadsTypes(@TempDir File tempDir) throws IOException {
+    new File(tempDir, "zebra.txt").createNewFile();
+    new File(tempDir, "Documents").mkdir();
+    new File(tempDir, "apple.txt").createNewFile();
+
+    DirectoryEntry[] entries = new DirectoryScanner(false).scan(tempDir);
+
+    assertEquals(3, entries.length);
+    assertEquals("apple.txt", entries[0].getName());
+    assertFalse(entries[0].isDirectory());
+    assertEquals("Documents", entries[1].getName());
+    assertTrue(entries[1].isDirectory());
+    assertEquals(new File(tempDir, "Documents"), entries[1].getFile());
+    assertEquals("zebra.txt", entries[2].getName());
+  }
+
+  @Test
+  void testScanSkipsHiddenFiles(@TempDir File tempDir) throws IOException {
+    new File(tempDir, "visible.txt").createNewFile();
+    TruffulaPrinterTest.createHiddenFile(tempDir, ".hidden.txt");
+
+    DirectoryEntry[] hiddenSkipped = new DirectoryScanner(false).scan(tempDir);
+    assertEquals(1, hiddenSkipped.length);
+    assertEquals("visible.txt", hiddenSkipped[0].getName());
+
+    DirectoryEntry[] hiddenShown = new DirectoryScanner(true).scan(tempDir);
+    assertEquals(2, hiddenShown.length);
+    assertEquals(".hidden.txt", hiddenShown[0].getName());
+    assertTrue(hiddenShown[0].isHidden());
+    assertFalse(hiddenShown[1].isHidden());
+  }
+
+  @Test
+  void testScanOfFileReturnsNull(@TempDir File tempDir) throws IOException {
+    File file = new File(tempDir, "file.txt");
+    file.createNewFile();
+
+    assertNull(new DirectoryScanner(true).scan(file));
+    assertNull(new DirectoryScanner(true).scan(new File(tempDir, "missing")));
+  }
+}
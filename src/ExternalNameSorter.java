@@ -0,0 +1,296 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts any number of names in AlphabeticalFileSorter order while holding at most a
+ * fixed number of them in memory, for directories too wide to sort on the heap.
+ * 
+ * Names are gathered in a buffer of runSize names. Each time it fills up, the buffer
+ * is sorted and written to a temporary file as a sorted run. Once every name has been
+ * added, sorted() merges the runs, together with the names still in the buffer, by
+ * reading one name at a time from each run.
+ * 
+ * At most MAX_FAN_IN runs are read at once. When there are more, sorted() first merges
+ * them MAX_FAN_IN at a time into longer runs, until few enough are left. So no more than
+ * MAX_FAN_IN files are open at a time, and memory use is bounded by the run size plus
+ * MAX_FAN_IN names and read buffers, no matter how many names are sorted.
+ * 
+ * Run file format: the names in sorted order, each as a string in modified UTF-8.
+ * 
+ * The temporary files are deleted by close(). An ExternalNameSorter is not thread-safe.
+ * 
+ * Example Usage:
+ * 
+ * try (ExternalNameSorter sorter = new ExternalNameSorter(100_000)) {
+ *   for (String name : names) {
+ *     sorter.add(name);
+ *   }
+ *   Iterator<String> sorted = sorter.sorted();
+ *   ...
+ * }
+ */
+public class ExternalNameSorter implements Closeable {
+  private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+  /**
+   * The most runs that are read at the same time.
+   */
+  static final int MAX_FAN_IN = 64;
+
+  private final int runSize;
+  private final File tempDirectory;
+  private String[] buffer;
+  private int buffered = 0;
+  private final List<File> runs = new ArrayList<>();
+  private final List<DataInputStream> readers = new ArrayList<>();
+
+  /**
+   * Constructs an ExternalNameSorter that writes its runs to the default temporary directory.
+   *
+   * @param runSize the number of names sorted in memory at a time, at least 1
+   * @throws IllegalArgumentException if runSize is less than 1
+   */
+  public ExternalNameSorter(int runSize) {
+    this(runSize, null);
+  }
+
+  /**
+   * Constructs an ExternalNameSorter.
+   *
+   * @param runSize       the number of names sorted in memory at a time, at least 1
+   * @param tempDirectory the directory to write runs to, or null for the default temporary directory
+   * @throws IllegalArgumentException if runSize is less than 1
+   */
+  public ExternalNameSorter(int runSize, File tempDirectory) {
+    if (runSize < 1) {
+      throw new IllegalArgumentException("Run size must be at least 1: " + runSize);
+    }
+    this.runSize = runSize;
+    this.tempDirectory = tempDirectory;
+    this.buffer = new String[Math.min(runSize, 1024)];
+  }
+
+  /**
+   * Adds a name, writing a sorted run to disk if the buffer is full.
+   *
+   * @param name the name to add
+   * @throws IOException if a run cannot be written
+   */
+  public void add(String name) throws IOException {
+    if (buffered == buffer.length) {
+      if (buffered == runSize) {
+        spill();
+      } else {
+        buffer = Arrays.copyOf(buffer, Math.min(runSize, 2 * buffer.length));
+      }
+    }
+    buffer[buffered++] = name;
+  }
+
+  /**
+   * Returns the number of runs written to disk so far.
+   *
+   * @return the number of runs
+   */
+  public int getRunCount() {
+    return runs.size();
+  }
+
+  /**
+   * Returns every added name in sorted order. Names must not be added afterwards.
+   * If more than MAX_FAN_IN runs were written, they are first merged into fewer runs.
+   *
+   * @return an iterator over the sorted names, which throws UncheckedIOException if a run
+   *         cannot be read
+   * @throws IOException if a run cannot be opened, or runs cannot be merged
+   */
+  public Iterator<String> sorted() throws IOException {
+    String[] remaining = AlphabeticalFileSorter.sort(Arrays.copyOf(buffer, buffered));
+    buffer = null;
+    buffered = 0;
+
+    while (runs.size() > MAX_FAN_IN) {
+      List<File> batch = new ArrayList<>(runs.subList(0, MAX_FAN_IN));
+      runs.subList(0, MAX_FAN_IN).clear();
+      merge(batch);
+    }
+
+    PriorityQueue<Cursor> heads = new PriorityQueue<>();
+    Cursor memory = new Cursor(remaining);
+    if (memory.advance()) {
+      heads.add(memory);
+    }
+    for (File run : runs) {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), READ_BUFFER_SIZE));
+      readers.add(in);
+      Cursor cursor = new Cursor(in);
+      if (cursor.advance()) {
+        heads.add(cursor);
+      }
+    }
+
+    return new Iterator<String>() {
+      @Override
+      public boolean hasNext() {
+        return !heads.isEmpty();
+      }
+
+      @Override
+      public String next() {
+        Cursor cursor = heads.poll();
+        if (cursor == null) {
+          throw new NoSuchElementException();
+        }
+        String name = cursor.name;
+        try {
+          if (cursor.advance()) {
+            heads.add(cursor);
+          }
+        } catch (IOException e) {
+          throw new UncheckedIOException("Could not read a sorted run", e);
+        }
+        return name;
+      }
+    };
+  }
+
+  /**
+   * Closes and deletes the runs written to disk.
+   */
+  @Override
+  public void close() {
+    for (DataInputStream in : readers) {
+      try {
+        in.close();
+      } catch (IOException e) {
+        // The run is deleted either way
+      }
+    }
+    readers.clear();
+    for (File run : runs) {
+      run.delete();
+    }
+    runs.clear();
+  }
+
+  /**
+   * Merges runs into a new run file, which is added to the runs, and deletes them.
+   */
+  private void merge(List<File> batch) throws IOException {
+    File merged = File.createTempFile("truffula-run", ".tmp", tempDirectory);
+    runs.add(merged);
+    List<DataInputStream> inputs = new ArrayList<>();
+    try {
+      PriorityQueue<Cursor> heads = new PriorityQueue<>();
+      for (File run : batch) {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), READ_BUFFER_SIZE));
+        inputs.add(in);
+        Cursor cursor = new Cursor(in);
+        if (cursor.advance()) {
+          heads.add(cursor);
+        }
+      }
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(merged)))) {
+        while (!heads.isEmpty()) {
+          Cursor cursor = heads.poll();
+          out.writeUTF(cursor.name);
+          if (cursor.advance()) {
+            heads.add(cursor);
+          }
+        }
+      }
+    } finally {
+      for (DataInputStream in : inputs) {
+        try {
+          in.close();
+        } catch (IOException e) {
+          // The run is deleted either way
+        }
+      }
+      for (File run : batch) {
+        run.delete();
+      }
+    }
+  }
+
+  /**
+   * Sorts the buffered names and writes them to a new run file.
+   */
+  private void spill() throws IOException {
+    String[] run = AlphabeticalFileSorter.sort(buffer);
+    File file = File.createTempFile("truffula-run", ".tmp", tempDirectory);
+    runs.add(file);
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+      for (String name : run) {
+        out.writeUTF(name);
+      }
+    }
+    Arrays.fill(buffer, null);
+    buffered = 0;
+  }
+
+  /**
+   * The next name of one sorted run, read from disk or from memory.
+   */
+  private static final class Cursor implements Comparable<Cursor> {
+    private final DataInputStream in;
+    private final String[] names;
+    private int next = 0;
+    private String name;
+    private String folded;
+
+    Cursor(DataInputStream in) {
+      this.in = in;
+      this.names = null;
+    }
+
+    Cursor(String[] names) {
+      this.in = null;
+      this.names = names;
+    }
+
+    /**
+     * Moves to the next name of the run.
+     *
+     * @return false if the run has no more names
+     */
+    boolean advance() throws IOException {
+      if (names != null) {
+        if (next == names.length) {
+          return false;
+        }
+        name = names[next];
+        names[next++] = null;
+      } else {
+        try {
+          name = in.readUTF();
+        } catch (EOFException e) {
+          return false;
+        }
+      }
+      folded = AlphabeticalFileSorter.foldCase(name);
+      return true;
+    }
+
+    @Override
+    public int compareTo(Cursor other) {
+      int result = folded.compareTo(other.folded);
+      return result != 0 ? result : name.compareTo(other.name);
+    }
+  }
+}
@@ -0,0 +1,109 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExternalNameSorterTest {
+
+  private static String[] sortOnDisk(String[] names, int runSize, File tempDir) throws IOException {
+    try (ExternalNameSorter sorter = new ExternalNameSorter(runSize, tempDir)) {
+      for (String name : names) {
+        sorter.add(name);
+      }
+      List<String> sorted = new ArrayList<>();
+      Iterator<String> iterator = sorter.sorted();
+      while (iterator.hasNext()) {
+        sorted.add(iterator.next());
+      }
+      return sorted.toArray(new String[0]);
+    }
+  }
+
+  @Test
+  void testMergesRunsInSortOrder(@TempDir File tempDir) throws IOException {
+    Random random = new Random(42);
+    String[] names = new String[1000];
+    for (int i = 0; i < names.length; i++) {
+      StringBuilder name = new StringBuilder();
+      int length = 1 + random.nextInt(8);
+      for (int j = 0; j < length; j++) {
+        name.append("aBcDé_.Z9".charAt(random.nextInt(9)));
+      }
+      names[i] = name.toString() + i % 7;
+    }
+    String[] expected = AlphabeticalFileSorter.sort(names.clone());
+
+    for (int runSize : new int[] {1, 3, 64, 999, 1000, 5000}) {
+      assertArrayEquals(expected, sortOnDisk(names, runSize, tempDir), "run size " + runSize);
+    }
+  }
+
+  @Test
+  void testSpillsFullRunsAndDeletesThemOnClose(@TempDir File tempDir) throws IOException {
+    ExternalNameSorter sorter = new ExternalNameSorter(4, tempDir);
+    for (String name : new String[] {"e", "D", "c", "B", "a", "Cat", "cat", "dog", "Zebra"}) {
+      sorter.add(name);
+    }
+    // Two full runs are on disk, the last name is still in memory
+    assertEquals(2, sorter.getRunCount());
+    assertEquals(2, tempDir.list().length);
+
+    Iterator<String> sorted = sorter.sorted();
+    List<String> names = new ArrayList<>();
+    sorted.forEachRemaining(names::add);
+    assertEquals(List.of("a", "B", "c", "Cat", "cat", "D", "dog", "e", "Zebra"), names);
+
+    sorter.close();
+    assertEquals(0, tempDir.list().length);
+  }
+
+  @Test
+  void testEmptySorter(@TempDir File tempDir) throws IOException {
+    try (ExternalNameSorter sorter = new ExternalNameSorter(10, tempDir)) {
+      assertFalse(sorter.sorted().hasNext());
+    }
+  }
+
+  @Test
+  void testRejectsRunSizeBelowOne() {
+    assertThrows(IllegalArgumentException.class, () -> new ExternalNameSorter(0));
+  }
+
+  @Test
+  void testMergesMoreRunsThanTheFanIn(@TempDir File tempDir) throws IOException {
+    // 3000 runs of 1 name need several merge passes
+    Random random = new Random(7);
+    String[] names = new String[3000];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = "name-" + random.nextInt(100_000);
+    }
+
+    try (ExternalNameSorter sorter = new ExternalNameSorter(1, tempDir)) {
+      for (String name : names) {
+        sorter.add(name);
+      }
+      assertEquals(names.length - 1, sorter.getRunCount());
+      Iterator<String> iterator = sorter.sorted();
+      assertTrue(sorter.getRunCount() <= ExternalNameSorter.MAX_FAN_IN);
+      assertEquals(sorter.getRunCount(), tempDir.list().length);
+
+      List<String> sorted = new ArrayList<>();
+      while (iterator.hasNext()) {
+        sorted.add(iterator.next());
+      }
+      assertArrayEquals(AlphabeticalFileSorter.sort(names.clone()), sorted.toArray(new String[0]));
+    }
+    assertEquals(0, tempDir.list().length);
+  }
+}
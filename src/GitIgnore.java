@@ -0,0 +1,290 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The .gitignore rules in effect inside one directory of a walk.
+ * 
+ * A GitIgnore is a stack of rule sets, one for each .gitignore file found from the
+ * root of the walk down to the directory, with the deepest last. Each .gitignore is
+ * parsed and compiled once, when its directory is scanned, and the compiled rule set
+ * is shared by every directory below it. Moving into a subdirectory only extends the
+ * path of that subdirectory relative to each rule set, so nothing is re-read or
+ * re-compiled for deeper directories.
+ * 
+ * Matching follows git: the deepest .gitignore is checked first, the last matching
+ * rule in a file wins, "!" re-includes, a trailing "/" only matches directories, and
+ * a pattern containing a "/" other than at its end is relative to the directory of
+ * its .gitignore. Rules from .gitignore files above the root of the walk, from
+ * .git/info/exclude, and from the global excludes file are not read.
+ * 
+ * GitIgnore objects are immutable and can be shared between threads.
+ */
+public class GitIgnore {
+  /**
+   * The name of the files rules are read from.
+   */
+  public static final String FILE_NAME = ".gitignore";
+
+  /**
+   * No rules at all.
+   */
+  public static final GitIgnore NONE = new GitIgnore(new RuleSet[0], new String[0]);
+
+  private final RuleSet[] ruleSets;
+
+  /**
+   * The path of this directory relative to the directory of each rule set, either
+   * empty or ending in "/".
+   */
+  private final String[] prefixes;
+
+  private GitIgnore(RuleSet[] ruleSets, String[] prefixes) {
+    this.ruleSets = ruleSets;
+    this.prefixes = prefixes;
+  }
+
+  /**
+   * Returns the rules inherited by a subdirectory, before its own .gitignore is read.
+   *
+   * @param name the name of the subdirectory
+   * @return the inherited rules
+   */
+  public GitIgnore descend(String name) {
+    if (ruleSets.length == 0) {
+      return this;
+    }
+    String[] childPrefixes = new String[prefixes.length];
+    for (int i = 0; i < prefixes.length; i++) {
+      childPrefixes[i] = prefixes[i] + name + "/";
+    }
+    return new GitIgnore(ruleSets, childPrefixes);
+  }
+
+  /**
+   * Returns these rules extended with the rules of a .gitignore file in this directory.
+   *
+   * @param gitIgnoreFile the .gitignore file to read
+   * @return the combined rules, or these rules if the file has none
+   * @throws IOException if the file cannot be read
+   */
+  public GitIgnore withRules(File gitIgnoreFile) throws IOException {
+    RuleSet rules;
+    try (Reader reader = new FileReader(gitIgnoreFile)) {
+      rules = RuleSet.parse(reader);
+    }
+    return withRules(rules);
+  }
+
+  /**
+   * Returns these rules extended with the rules of a .gitignore file in this directory.
+   *
+   * @param reader the contents of the .gitignore file
+   * @return the combined rules, or these rules if the contents have none
+   * @throws IOException if the contents cannot be read
+   */
+  public GitIgnore withRules(Reader reader) throws IOException {
+    return withRules(RuleSet.parse(reader));
+  }
+
+  private GitIgnore withRules(RuleSet rules) {
+    if (rules.isEmpty()) {
+      return this;
+    }
+    RuleSet[] combinedRules = Arrays.copyOf(ruleSets, ruleSets.length + 1);
+    String[] combinedPrefixes = Arrays.copyOf(prefixes, prefixes.length + 1);
+    combinedRules[ruleSets.length] = rules;
+    combinedPrefixes[prefixes.length] = "";
+    return new GitIgnore(combinedRules, combinedPrefixes);
+  }
+
+  /**
+   * Indicates whether there are no rules.
+   *
+   * @return true if nothing is ignored; false otherwise
+   */
+  public boolean isEmpty() {
+    return ruleSets.length == 0;
+  }
+
+  /**
+   * Indicates whether a child of this directory is ignored.
+   *
+   * @param name      the name of the child
+   * @param directory whether the child is a directory
+   * @return true if the child is ignored; false otherwise
+   */
+  public boolean isIgnored(String name, boolean directory) {
+    for (int i = ruleSets.length - 1; i >= 0; i--) {
+      Rule rule = ruleSets[i].match(prefixes[i], name, directory);
+      if (rule != null) {
+        return !rule.negated;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Converts a .gitignore pattern, without its leading "!", leading "/" or trailing "/",
+   * to a regular expression.
+   *
+   * @param pattern the pattern
+   * @return the regular expression
+   */
+  static String toRegex(String pattern) {
+    StringBuilder regex = new StringBuilder();
+    int length = pattern.length();
+    for (int i = 0; i < length; i++) {
+      char c = pattern.charAt(i);
+      if (c == '*' && i + 1 < length && pattern.charAt(i + 1) == '*') {
+        boolean atStart = i == 0 || pattern.charAt(i - 1) == '/';
+        boolean atEnd = i + 2 == length;
+        if (atStart && !atEnd && pattern.charAt(i + 2) == '/') {
+          // "**/" matches any number of leading directories, including none
+          regex.append("(?:.*/)?");
+          i += 2;
+        } else {
+          regex.append(".*");
+          i += 1;
+        }
+      } else if (c == '*') {
+        regex.append("[^/]*");
+      } else if (c == '?') {
+        regex.append("[^/]");
+      } else if (c == '[' && pattern.indexOf(']', i + 2) > 0) {
+        int end = pattern.indexOf(']', i + 2);
+        regex.append('[');
+        int start = i + 1;
+        if (pattern.charAt(start) == '!' || pattern.charAt(start) == '^') {
+          regex.append('^');
+          start++;
+        }
+        for (int j = start; j < end; j++) {
+          char member = pattern.charAt(j);
+          if (member == '\\' || member == '[' || member == ']' || member == '&' || member == '^') {
+            regex.append('\\');
+          }
+          regex.append(member);
+        }
+        regex.append(']');
+        i = end;
+      } else if (c == '\\' && i + 1 < length) {
+        regex.append(Pattern.quote(String.valueOf(pattern.charAt(++i))));
+      } else if (Character.isLetterOrDigit(c) || c == '/' || c == '_' || c == '-') {
+        regex.append(c);
+      } else {
+        regex.append(Pattern.quote(String.valueOf(c)));
+      }
+    }
+    return regex.toString();
+  }
+
+  /**
+   * One compiled line of a .gitignore file.
+   */
+  private static final class Rule {
+    private final Pattern pattern;
+    private final boolean negated;
+    private final boolean directoryOnly;
+    private final boolean matchesPath;
+
+    Rule(Pattern pattern, boolean negated, boolean directoryOnly, boolean matchesPath) {
+      this.pattern = pattern;
+      this.negated = negated;
+      this.directoryOnly = directoryOnly;
+      this.matchesPath = matchesPath;
+    }
+  }
+
+  /**
+   * The compiled rules of one .gitignore file, in file order.
+   */
+  private static final class RuleSet {
+    private final Rule[] rules;
+    private final boolean hasPathRules;
+
+    RuleSet(Rule[] rules) {
+      this.rules = rules;
+      boolean pathRules = false;
+      for (Rule rule : rules) {
+        pathRules |= rule.matchesPath;
+      }
+      this.hasPathRules = pathRules;
+    }
+
+    boolean isEmpty() {
+      return rules.length == 0;
+    }
+
+    /**
+     * Returns the last rule that matches a child, or null if none does.
+     */
+    Rule match(String prefix, String name, boolean directory) {
+      String path = hasPathRules ? prefix + name : null;
+      for (int i = rules.length - 1; i >= 0; i--) {
+        Rule rule = rules[i];
+        if (rule.directoryOnly && !directory) {
+          continue;
+        }
+        if (rule.pattern.matcher(rule.matchesPath ? path : name).matches()) {
+          return rule;
+        }
+      }
+      return null;
+    }
+
+    static RuleSet parse(Reader reader) throws IOException {
+      List<Rule> rules = new ArrayList<>();
+      BufferedReader lines = new BufferedReader(reader);
+      String line;
+      while ((line = lines.readLine()) != null) {
+        Rule rule = parseLine(line);
+        if (rule != null) {
+          rules.add(rule);
+        }
+      }
+      return new RuleSet(rules.toArray(new Rule[0]));
+    }
+
+    private static Rule parseLine(String line) {
+      // Trailing spaces are ignored unless escaped with a backslash
+      int end = line.length();
+      while (end > 0 && line.charAt(end - 1) == ' ' && (end < 2 || line.charAt(end - 2) != '\\')) {
+        end--;
+      }
+      String pattern = line.substring(0, end);
+      if (pattern.isEmpty() || pattern.startsWith("#")) {
+        return null;
+      }
+
+      boolean negated = false;
+      if (pattern.startsWith("!")) {
+        negated = true;
+        pattern = pattern.substring(1);
+      } else if (pattern.startsWith("\\!") || pattern.startsWith("\\#")) {
+        pattern = pattern.substring(1);
+      }
+
+      boolean directoryOnly = false;
+      if (pattern.endsWith("/")) {
+        directoryOnly = true;
+        pattern = pattern.substring(0, pattern.length() - 1);
+      }
+
+      boolean matchesPath = pattern.indexOf('/') >= 0;
+      if (pattern.startsWith("/")) {
+        pattern = pattern.substring(1);
+      }
+      if (pattern.isEmpty()) {
+        return null;
+      }
+      return new Rule(Pattern.compile(toRegex(pattern), Pattern.DOTALL), negated, directoryOnly, matchesPath);
+    }
+  }
+}
@@ -0,0 +1,83 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GitIgnoreTest {
+
+  private static GitIgnore rules(String contents) throws IOException {
+    return GitIgnore.NONE.withRules(new StringReader(contents));
+  }
+
+  @Test
+  void testNamePatternsMatchAtAnyDepth() throws IOException {
+    GitIgnore rules = rules("# build output\n*.class\n\ntarget/\n");
+
+    assertTrue(rules.isIgnored("App.class", false));
+    assertTrue(rules.isIgnored("target", true));
+    assertFalse(rules.isIgnored("target", false));
+    assertFalse(rules.isIgnored("App.java", false));
+
+    GitIgnore nested = rules.descend("src").descend("main");
+    assertTrue(nested.isIgnored("Main.class", false));
+    assertTrue(nested.isIgnored("target", true));
+  }
+
+  @Test
+  void testAnchoredPatternsAreRelativeToTheirDirectory() throws IOException {
+    GitIgnore rules = rules("/build\ndocs/*.pdf\n");
+
+    assertTrue(rules.isIgnored("build", true));
+    assertFalse(rules.descend("src").isIgnored("build", true));
+
+    GitIgnore docs = rules.descend("docs");
+    assertTrue(docs.isIgnored("manual.pdf", false));
+    assertFalse(docs.descend("old").isIgnored("manual.pdf", false));
+  }
+
+  @Test
+  void testDoubleStarPatterns() throws IOException {
+    GitIgnore rules = rules("**/logs\nout/**\na/**/z.txt\n");
+
+    assertTrue(rules.isIgnored("logs", true));
+    assertTrue(rules.descend("x").descend("y").isIgnored("logs", false));
+    assertTrue(rules.descend("out").isIgnored("anything", false));
+    assertTrue(rules.descend("a").isIgnored("z.txt", false));
+    assertTrue(rules.descend("a").descend("b").descend("c").isIgnored("z.txt", false));
+    assertFalse(rules.descend("b").isIgnored("z.txt", false));
+  }
+
+  @Test
+  void testNegationAndLastMatchWins() throws IOException {
+    GitIgnore rules = rules("*.log\n!keep.log\n");
+
+    assertTrue(rules.isIgnored("debug.log", false));
+    assertFalse(rules.isIgnored("keep.log", false));
+  }
+
+  @Test
+  void testDeeperGitIgnoreOverridesParent() throws IOException {
+    GitIgnore parent = rules("*.txt\n");
+    GitIgnore child = parent.descend("notes").withRules(new StringReader("!todo.txt\n"));
+
+    assertTrue(child.isIgnored("other.txt", false));
+    assertFalse(child.isIgnored("todo.txt", false));
+    assertTrue(parent.isIgnored("todo.txt", false));
+  }
+
+  @Test
+  void testEscapesAndEmptyRules() throws IOException {
+    GitIgnore rules = rules("\\#notes\n\\!important\ntrailing\\ \n");
+
+    assertTrue(rules.isIgnored("#notes", false));
+    assertTrue(rules.isIgnored("!important", false));
+    assertTrue(rules.isIgnored("trailing ", false));
+
+    assertSame(GitIgnore.NONE, rules("# only a comment\n\n"));
+    assertSame(GitIgnore.NONE, GitIgnore.NONE.descend("src"));
+  }
+}
@@ -0,0 +1,148 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Decides, during one walk, which symbolic links to directories are listed, so that a
+ * walk through links always ends.
+ *
+ * Directories that are not links are always listed. A link is never listed with
+ * NOFOLLOW. With FOLLOW it is listed unless:
+ * - it leads to the directory it is in, or to one above it, which would loop, or
+ * - its target is the root, or has already been listed through another link.
+ * So each linked directory is listed at most once per walk, also when links lead
+ * into each other, and a tree of links costs no more than the directories behind it.
+ *
+ * The project does not use java.nio, so a directory is identified by its canonical
+ * path rather than by its device and inode. The visited targets are kept as 64-bit
+ * fingerprints of their canonical paths, in an open-addressing table of longs, which
+ * costs 16 bytes or less per target instead of a String and a hash set entry.
+ *
+ * Which of two links to the same directory is listed depends on which is asked about
+ * first, so walks ask in the order they report the links, also when they list
+ * directories on several threads. A LinkTracker is safe to use from several threads.
+ */
+public class LinkTracker {
+  private final SymlinkPolicy policy;
+
+  /**
+   * The fingerprints of the visited targets, with 0 for an empty slot.
+   */
+  private long[] visited = new long[64];
+  private int size = 0;
+
+  /**
+   * Constructs a LinkTracker for a walk from the given root.
+   *
+   * @param policy the symlink policy
+   * @param root   the root directory of the walk, which counts as visited, or null
+   */
+  public LinkTracker(SymlinkPolicy policy, File root) {
+    this.policy = policy;
+    if (root != null) {
+      try {
+        add(root.getCanonicalPath());
+      } catch (IOException e) {
+        // A root without a canonical path is only reached again through a link that
+        // contains it, which is recursive
+      }
+    }
+  }
+
+  /**
+   * Indicates whether a directory is listed, recording the target of a link that is.
+   *
+   * @param dir the directory
+   * @return true if the directory is not a link, or is a link that is followed
+   */
+  public synchronized boolean isListed(DirectoryEntry dir) {
+    String target = dir.getLinkTarget();
+    if (target == null) {
+      return true;
+    }
+    return policy == SymlinkPolicy.FOLLOW && !dir.isRecursiveLink() && add(target);
+  }
+
+  /**
+   * Indicates whether a directory would be listed if it were asked about now, without
+   * recording anything. A directory for which this is false is never listed later.
+   *
+   * @param dir the directory
+   * @return true if the directory is not a link, or is a link that would be followed
+   */
+  public synchronized boolean wouldList(DirectoryEntry dir) {
+    String target = dir.getLinkTarget();
+    if (target == null) {
+      return true;
+    }
+    return policy == SymlinkPolicy.FOLLOW && !dir.isRecursiveLink() && !contains(target);
+  }
+
+  /**
+   * Returns the number of visited targets, including the root.
+   *
+   * @return the number of visited targets
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Adds a target to the visited set.
+   *
+   * @return true if the target had not been visited
+   */
+  private boolean add(String target) {
+    long key = fingerprint(target);
+    int mask = visited.length - 1;
+    for (int slot = (int) (key ^ key >>> 32) & mask; ; slot = (slot + 1) & mask) {
+      if (visited[slot] == key) {
+        return false;
+      }
+      if (visited[slot] == 0) {
+        visited[slot] = key;
+        if (++size * 2 > visited.length) {
+          grow();
+        }
+        return true;
+      }
+    }
+  }
+
+  private boolean contains(String target) {
+    long key = fingerprint(target);
+    int mask = visited.length - 1;
+    for (int slot = (int) (key ^ key >>> 32) & mask; visited[slot] != 0; slot = (slot + 1) & mask) {
+      if (visited[slot] == key) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void grow() {
+    long[] old = visited;
+    visited = new long[old.length * 2];
+    int mask = visited.length - 1;
+    for (long key : old) {
+      if (key != 0) {
+        int slot = (int) (key ^ key >>> 32) & mask;
+        while (visited[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        visited[slot] = key;
+      }
+    }
+  }
+
+  /**
+   * Hashes a path with 64-bit FNV-1a, never returning the empty slot marker 0.
+   */
+  static long fingerprint(String path) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < path.length(); i++) {
+      hash ^= path.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    return hash == 0 ? 1 : hash;
+  }
+}
@@ -0,0 +1,49 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LinkTrackerTest {
+
+  private static DirectoryEntry link(String name, String target, boolean recursive) {
+    return new DirectoryEntry(name, true, false).withLink(target, recursive);
+  }
+
+  @Test
+  void testFollowsEachTargetOnce(@TempDir File tempDir) throws Exception {
+    LinkTracker tracker = new LinkTracker(SymlinkPolicy.FOLLOW, tempDir);
+    assertEquals(1, tracker.size());
+
+    assertTrue(tracker.isListed(new DirectoryEntry("plain", true, false)));
+    assertTrue(tracker.isListed(new DirectoryEntry("plain", true, false)));
+    // Asking without recording leaves the target unvisited
+    assertTrue(tracker.wouldList(link("a", "/data/shared", false)));
+    assertTrue(tracker.isListed(link("a", "/data/shared", false)));
+    assertFalse(tracker.wouldList(link("b", "/data/shared", false)));
+    assertFalse(tracker.isListed(link("b", "/data/shared", false)));
+    assertFalse(tracker.isListed(link("up", "/data", true)));
+    assertFalse(tracker.isListed(link("root", tempDir.getCanonicalPath(), false)));
+
+    // The table grows past its initial size without losing targets
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(tracker.isListed(link("l" + i, "/data/dir" + i, false)));
+    }
+    for (int i = 0; i < 1000; i++) {
+      assertFalse(tracker.isListed(link("l" + i, "/data/dir" + i, false)));
+    }
+    assertEquals(1002, tracker.size());
+  }
+
+  @Test
+  void testNoFollowListsOnlyDirectories() {
+    LinkTracker tracker = new LinkTracker(SymlinkPolicy.NOFOLLOW, null);
+    assertTrue(tracker.isListed(new DirectoryEntry("plain", true, false)));
+    assertFalse(tracker.isListed(link("a", "/data/shared", false)));
+    assertFalse(tracker.wouldList(link("a", "/data/shared", false)));
+    assertEquals(0, tracker.size());
+  }
+}
@@ -0,0 +1,194 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Decides which files and directories are printed, based on include and exclude patterns
+ * that are matched against names (not paths).
+ * 
+ * Patterns are globs by default:
+ * - *      : Any run of characters.
+ * - ?      : Any single character.
+ * - [abc]  : One of the listed characters; [!abc] for none of them, [a-z] for a range.
+ * - {a,b}  : Either alternative.
+ * A pattern that starts with "re:" is a regular expression instead, for example "re:.*\.tmp".
+ * 
+ * Behavior:
+ * - A file or directory whose name matches an exclude pattern is not printed, and an
+ *   excluded directory is never listed.
+ * - When include patterns are given, only files whose name matches one of them are
+ *   printed. Directories are always walked so matching files below them are found.
+ * 
+ * Patterns are compiled once: plain names such as "node_modules" go in a hash set and
+ * everything else is combined into a single regular expression.
+ */
+public class NameFilter {
+  /**
+   * Prefix that marks a pattern as a regular expression.
+   */
+  public static final String REGEX_PREFIX = "re:";
+
+  private final Matcher includes;
+  private final Matcher excludes;
+
+  /**
+   * Constructs a NameFilter from include and exclude patterns.
+   *
+   * @param includePatterns patterns for the files to print, or an empty list to print all files
+   * @param excludePatterns patterns for the files and directories to leave out
+   * @throws IllegalArgumentException if a pattern is not valid
+   */
+  public NameFilter(List<String> includePatterns, List<String> excludePatterns) {
+    this.includes = includePatterns.isEmpty() ? null : new Matcher(includePatterns);
+    this.excludes = excludePatterns.isEmpty() ? null : new Matcher(excludePatterns);
+  }
+
+  /**
+   * Indicates whether a file or directory with the given name is excluded. Excluded
+   * directories are neither printed nor listed.
+   *
+   * @param name the name of the file or directory
+   * @return true if the name matches an exclude pattern; false otherwise
+   */
+  public boolean isExcluded(String name) {
+    return excludes != null && excludes.matches(name);
+  }
+
+  /**
+   * Indicates whether a file (not a directory) with the given name should be printed,
+   * according to the include patterns.
+   *
+   * @param name the name of the file
+   * @return true if there are no include patterns or the name matches one; false otherwise
+   */
+  public boolean isIncludedFile(String name) {
+    return includes == null || includes.matches(name);
+  }
+
+  /**
+   * Checks that a pattern is valid.
+   *
+   * @param pattern the pattern to check
+   * @throws IllegalArgumentException if the pattern is not valid
+   */
+  public static void checkPattern(String pattern) {
+    Pattern.compile(toRegex(pattern));
+  }
+
+  /**
+   * Converts a pattern to an equivalent regular expression.
+   *
+   * @param pattern a glob, or a regular expression prefixed with "re:"
+   * @return the regular expression
+   * @throws IllegalArgumentException if a glob has an unclosed [ or {
+   */
+  public static String toRegex(String pattern) {
+    if (pattern.startsWith(REGEX_PREFIX)) {
+      return pattern.substring(REGEX_PREFIX.length());
+    }
+
+    StringBuilder regex = new StringBuilder();
+    boolean inAlternatives = false;
+    for (int i = 0; i < pattern.length(); i++) {
+      char c = pattern.charAt(i);
+      switch (c) {
+        case '*':
+          regex.append(".*");
+          break;
+        case '?':
+          regex.append('.');
+          break;
+        case '[':
+          int end = pattern.indexOf(']', i + 2);
+          if (end < 0) {
+            throw new IllegalArgumentException("Unclosed [ in pattern: " + pattern);
+          }
+          regex.append('[');
+          int start = i + 1;
+          if (pattern.charAt(start) == '!') {
+            regex.append('^');
+            start++;
+          }
+          for (int j = start; j < end; j++) {
+            char member = pattern.charAt(j);
+            if (member == '\\' || member == '[' || member == ']' || member == '&' || member == '^') {
+              regex.append('\\');
+            }
+            regex.append(member);
+          }
+          regex.append(']');
+          i = end;
+          break;
+        case '{':
+          if (inAlternatives) {
+            throw new IllegalArgumentException("Nested { in pattern: " + pattern);
+          }
+          inAlternatives = true;
+          regex.append("(?:");
+          break;
+        case '}':
+          if (!inAlternatives) {
+            regex.append("\\}");
+          } else {
+            inAlternatives = false;
+            regex.append(')');
+          }
+          break;
+        case ',':
+          regex.append(inAlternatives ? "|" : ",");
+          break;
+        default:
+          if ("\\.+()^$|".indexOf(c) >= 0) {
+            regex.append('\\');
+          }
+          regex.append(c);
+      }
+    }
+    if (inAlternatives) {
+      throw new IllegalArgumentException("Unclosed { in pattern: " + pattern);
+    }
+    return regex.toString();
+  }
+
+  /**
+   * Returns true if a pattern can only match the exact name it spells out.
+   */
+  private static boolean isLiteral(String pattern) {
+    if (pattern.startsWith(REGEX_PREFIX)) {
+      return false;
+    }
+    for (int i = 0; i < pattern.length(); i++) {
+      if ("*?[{}".indexOf(pattern.charAt(i)) >= 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * A set of patterns compiled for matching: literal names are looked up in a hash set
+   * and the remaining patterns are combined into one regular expression.
+   */
+  private static final class Matcher {
+    private final Set<String> literals = new HashSet<>();
+    private final Pattern pattern;
+
+    Matcher(List<String> patterns) {
+      List<String> regexes = new ArrayList<>();
+      for (String pattern : patterns) {
+        if (isLiteral(pattern)) {
+          literals.add(pattern);
+        } else {
+          regexes.add("(?:" + toRegex(pattern) + ")");
+        }
+      }
+      this.pattern = regexes.isEmpty() ? null : Pattern.compile(String.join("|", regexes), Pattern.DOTALL);
+    }
+
+    boolean matches(String name) {
+      return literals.contains(name) || (pattern != null && pattern.matcher(name).matches());
+    }
+  }
+}
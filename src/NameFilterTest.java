@@ -0,0 +1,63 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NameFilterTest {
+
+  @Test
+  void testExcludeLiteralNames() {
+    NameFilter filter = new NameFilter(List.of(), List.of("node_modules", ".git", "target"));
+
+    assertTrue(filter.isExcluded("node_modules"));
+    assertTrue(filter.isExcluded(".git"));
+    assertFalse(filter.isExcluded("node_modules2"));
+    assertFalse(filter.isExcluded("Target"));
+  }
+
+  @Test
+  void testExcludeGlobs() {
+    NameFilter filter = new NameFilter(List.of(), List.of("*.class", "build-?", "[!a-m]*.log", "*.{tmp,bak}"));
+
+    assertTrue(filter.isExcluded("App.class"));
+    assertTrue(filter.isExcluded("build-1"));
+    assertFalse(filter.isExcluded("build-12"));
+    assertTrue(filter.isExcluded("server.log"));
+    assertFalse(filter.isExcluded("app.log"));
+    assertTrue(filter.isExcluded("notes.tmp"));
+    assertTrue(filter.isExcluded("notes.bak"));
+    assertFalse(filter.isExcluded("notes.txt"));
+    // Regex characters in globs are matched literally
+    assertFalse(filter.isExcluded("Appxclass"));
+  }
+
+  @Test
+  void testRegexPatterns() {
+    NameFilter filter = new NameFilter(List.of(), List.of("re:\\d+"));
+
+    assertTrue(filter.isExcluded("2024"));
+    assertFalse(filter.isExcluded("v2024"));
+  }
+
+  @Test
+  void testIncludePatternsOnlyApplyWhenGiven() {
+    NameFilter none = new NameFilter(List.of(), List.of());
+    assertTrue(none.isIncludedFile("anything.txt"));
+    assertFalse(none.isExcluded("anything.txt"));
+
+    NameFilter javaOnly = new NameFilter(List.of("*.java", "README.md"), List.of());
+    assertTrue(javaOnly.isIncludedFile("App.java"));
+    assertTrue(javaOnly.isIncludedFile("README.md"));
+    assertFalse(javaOnly.isIncludedFile("notes.md"));
+  }
+
+  @Test
+  void testInvalidPatterns() {
+    assertThrows(IllegalArgumentException.class, () -> NameFilter.checkPattern("[abc"));
+    assertThrows(IllegalArgumentException.class, () -> NameFilter.checkPattern("{a,b"));
+    assertThrows(IllegalArgumentException.class, () -> NameFilter.checkPattern("re:(unclosed"));
+  }
+}
@@ -0,0 +1,142 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the entries of a directory tree as newline-delimited JSON, one record per
+ * line, so that other programs can read the tree without parsing the text output.
+ *
+ * Every record is complete on its own and is printed as soon as its entry is walked,
+ * so a reader can start on the first records before the walk has finished.
+ *
+ * Record fields:
+ * - path  : the path relative to the root, with "/" between names; "" for the root
+ * - name  : the name of the file or directory
+ * - depth : the number of levels below the root, 0 for the root
+ * - type  : "file" or "directory"
+ * - target: the target of a symbolic link to a directory, only for links
+ * - size  : the size of a file in bytes, or the total size of the files below a
+ *           directory, only when sizes are included
+ * - files : the number of files below a directory, only when sizes are included
+ *
+ * Example Output:
+ *
+ * {"path":"","name":"myFolder","depth":0,"type":"directory"}
+ * {"path":"Apple.txt","name":"Apple.txt","depth":1,"type":"file"}
+ * {"path":"Documents","name":"Documents","depth":1,"type":"directory"}
+ * {"path":"Documents/notes.txt","name":"notes.txt","depth":2,"type":"file"}
+ *
+ * Paths are built from the names of the directories the writer has entered, so
+ * entries without a file, such as those replayed from a TreeIndex, are written
+ * the same way.
+ */
+public class NdjsonWriter implements TreeVisitor {
+  private final ColorPrinter out;
+
+  /**
+   * The paths of the directories that have been entered and not exited, by depth.
+   */
+  private final List<String> paths = new ArrayList<>();
+
+  /**
+   * Constructs an NdjsonWriter that prints records through the given printer, without
+   * any color codes.
+   *
+   * @param out the printer to write records to
+   */
+  public NdjsonWriter(ColorPrinter out) {
+    this.out = out;
+  }
+
+  @Override
+  public void enterDirectory(DirectoryEntry dir, int depth) {
+    String path = path(dir, depth);
+    paths.subList(depth, paths.size()).clear();
+    paths.add(path);
+    out.printRaw(record(path, dir, depth));
+  }
+
+  @Override
+  public void file(DirectoryEntry file, int depth) {
+    out.printRaw(record(path(file, depth), file, depth));
+  }
+
+  @Override
+  public void exitDirectory(DirectoryEntry dir, int depth) {
+    paths.subList(depth, paths.size()).clear();
+  }
+
+  private String path(DirectoryEntry entry, int depth) {
+    if (depth == 0) {
+      return "";
+    }
+    String parent = paths.get(depth - 1);
+    return parent.isEmpty() ? entry.getName() : parent + "/" + entry.getName();
+  }
+
+  /**
+   * Formats the record for an entry.
+   *
+   * @param path the path of the entry relative to the root
+   * @param entry the file or directory
+   * @param depth the depth of the entry, 0 for the root
+   * @return the record, ending with a line separator
+   */
+  static String record(String path, DirectoryEntry entry, int depth) {
+    StringBuilder record = new StringBuilder(64 + 2 * path.length());
+    record.append("{\"path\":");
+    appendString(record, path);
+    record.append(",\"name\":");
+    appendString(record, entry.getName());
+    record.append(",\"depth\":").append(depth);
+    record.append(",\"type\":").append(entry.isDirectory() ? "\"directory\"" : "\"file\"");
+    if (entry.getLinkTarget() != null) {
+      record.append(",\"target\":");
+      appendString(record, entry.getLinkTarget());
+    }
+    if (entry.getSize() >= 0) {
+      record.append(",\"size\":").append(entry.getSize());
+    }
+    if (entry.isDirectory() && entry.getFileCount() >= 0) {
+      record.append(",\"files\":").append(entry.getFileCount());
+    }
+    return record.append('}').append(System.lineSeparator()).toString();
+  }
+
+  /**
+   * Appends a string as a quoted JSON string, escaping quotes, backslashes and
+   * control characters.
+   *
+   * @param json the builder to append to
+   * @param value the string to append
+   */
+  static void appendString(StringBuilder json, String value) {
+    json.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          json.append("\\\"");
+          break;
+        case '\\':
+          json.append("\\\\");
+          break;
+        case '\n':
+          json.append("\\n");
+          break;
+        case '\r':
+          json.append("\\r");
+          break;
+        case '\t':
+          json.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            json.append(String.format("\\u%04x", (int) c));
+          } else {
+            json.append(c);
+          }
+      }
+    }
+    json.append('"');
+  }
+}
@@ -0,0 +1,52 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class NdjsonWriterTest {
+  private static final String NL = System.lineSeparator();
+
+  @Test
+  void testRecords() {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    NdjsonWriter writer = new NdjsonWriter(new ColorPrinter(new PrintStream(output)));
+    File root = new File("base", "root");
+    File docs = new File(root, "docs");
+
+    DirectoryEntry rootEntry = new DirectoryEntry(root, "root", true, false);
+    DirectoryEntry docsEntry = new DirectoryEntry(docs, "docs", true, false);
+    writer.enterDirectory(rootEntry, 0);
+    writer.enterDirectory(docsEntry, 1);
+    writer.file(new DirectoryEntry(new File(docs, "a.txt"), "a.txt", false, false).withTotals(-1, 12), 2);
+    writer.exitDirectory(docsEntry, 1);
+    writer.file(new DirectoryEntry("b.txt", false, false), 1);
+    writer.exitDirectory(rootEntry, 0);
+
+    assertEquals("{\"path\":\"\",\"name\":\"root\",\"depth\":0,\"type\":\"directory\"}" + NL
+        + "{\"path\":\"docs\",\"name\":\"docs\",\"depth\":1,\"type\":\"directory\"}" + NL
+        + "{\"path\":\"docs/a.txt\",\"name\":\"a.txt\",\"depth\":2,\"type\":\"file\",\"size\":12}" + NL
+        + "{\"path\":\"b.txt\",\"name\":\"b.txt\",\"depth\":1,\"type\":\"file\"}" + NL, output.toString());
+  }
+
+  @Test
+  void testDirectoryTotals() {
+    DirectoryEntry root = new DirectoryEntry("root", true, false).withTotals(2, 300);
+    DirectoryEntry lib = new DirectoryEntry("lib", true, false).withTotals(0, 0);
+
+    assertEquals("{\"path\":\"\",\"name\":\"root\",\"depth\":0,\"type\":\"directory\",\"size\":300,\"files\":2}" + NL,
+        NdjsonWriter.record("", root, 0));
+    assertEquals("{\"path\":\"lib\",\"name\":\"lib\",\"depth\":1,\"type\":\"directory\",\"size\":0,\"files\":0}" + NL,
+        NdjsonWriter.record("lib", lib, 1));
+  }
+
+  @Test
+  void testEscapesNames() {
+    StringBuilder json = new StringBuilder();
+    NdjsonWriter.appendString(json, "say \"hi\"\\\n\t\u0001é");
+
+    assertEquals("\"say \\\"hi\\\"\\\\\\n\\t\\u0001é\"", json.toString());
+  }
+}
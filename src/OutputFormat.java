@@ -0,0 +1,34 @@
+/**
+ * Enum representing the formats a directory tree can be printed in.
+ * 
+ * Supported Formats:
+ * - TEXT   : The indented tree, colored by depth unless color is disabled
+ * - NDJSON : One JSON object per line for every file and directory, see NdjsonWriter
+ */
+public enum OutputFormat {
+  /**
+   * The indented tree, colored by depth unless color is disabled.
+   */
+  TEXT,
+
+  /**
+   * One JSON object per line for every file and directory.
+   */
+  NDJSON;
+
+  /**
+   * Returns the format with the given name, ignoring case.
+   *
+   * @param name the name of the format, such as "text" or "ndjson"
+   * @return the format
+   * @throws IllegalArgumentException if there is no format with that name
+   */
+  public static OutputFormat parse(String name) {
+    for (OutputFormat format : values()) {
+      if (format.name().equalsIgnoreCase(name)) {
+        return format;
+      }
+    }
+    throw new IllegalArgumentException("Unknown output format: " + name);
+  }
+}
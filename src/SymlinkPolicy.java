@@ -0,0 +1,39 @@
+/**
+ * Enum representing how symbolic links to directories are treated during a walk.
+ * 
+ * A link to a directory is printed with its target. The policy decides whether the walk
+ * continues through it. Directories the walk would not list anyway, such as those at
+ * the depth limit, are not checked for being links, and are printed without a target.
+ * 
+ * Supported Policies:
+ * - FOLLOW   : Follow links, but list each linked directory only once, and never one
+ *              that contains the link
+ * - NOFOLLOW : Never follow links
+ */
+public enum SymlinkPolicy {
+  /**
+   * Follow links to directories, cutting cycles and listing each linked directory once.
+   */
+  FOLLOW,
+
+  /**
+   * Print links to directories without listing them.
+   */
+  NOFOLLOW;
+
+  /**
+   * Returns the policy with the given name, ignoring case.
+   *
+   * @param name the name of the policy, such as "follow" or "nofollow"
+   * @return the policy
+   * @throws IllegalArgumentException if there is no policy with that name
+   */
+  public static SymlinkPolicy parse(String name) {
+    for (SymlinkPolicy policy : values()) {
+      if (policy.name().equalsIgnoreCase(name)) {
+        return policy;
+      }
+    }
+    throw new IllegalArgumentException("Unknown symlink policy: " + name);
+  }
+}
@@ -0,0 +1,168 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Renders a tree as indented, colored text through a ColorPrinter.
+ *
+ * The root is printed as its name followed by "/". Every other entry is printed on its
+ * own line, indented by 3 spaces per level and colored by its depth, cycling through
+ * the color sequence. Directories end with "/", followed by their totals when sizes
+ * are added up. A symbolic link to a directory is followed by " -> " and its target.
+ * Without color, every line is printed in the printer's current color.
+ * Entries left out by the per-directory cap are summed up in a "... and K more" line.
+ *
+ * The color code and indentation of each depth are built once and kept in a table, so
+ * printing a line takes one lookup, and every line carries exactly one color code and
+ * one reset.
+ *
+ * When streaming, lines are written as bytes: the prefixes are encoded once, and each
+ * name is encoded directly into the ColorPrinter's reusable byte buffer rather than
+ * built into a String per line. The output is the same.
+ *
+ * Example Output:
+ *
+ * myFolder/
+ *    Apple.txt
+ *    Documents/ [2 files, 1.5 KiB]
+ *       notes.txt
+ *       README.md
+ */
+public class TextRenderer implements TreeVisitor {
+  private final ColorPrinter out;
+  private final List<ConsoleColor> colorSequence;
+  private final boolean useColor;
+  private final boolean streaming;
+
+  /**
+   * The color code and indentation printed before the names at each depth, built on first use.
+   */
+  private String[] prefixes = new String[16];
+
+  /**
+   * The prefixes encoded as bytes for streaming, built on first use.
+   */
+  private byte[][] encodedPrefixes = new byte[16][];
+
+  /**
+   * Constructs a TextRenderer.
+   *
+   * @param out the printer to write lines to
+   * @param colorSequence the colors to cycle through by depth, starting with the root's
+   * @param useColor whether lines below the root are colored
+   * @param streaming whether lines are streamed into the printer's buffer
+   */
+  public TextRenderer(ColorPrinter out, List<ConsoleColor> colorSequence, boolean useColor, boolean streaming) {
+    this.out = out;
+    this.colorSequence = colorSequence;
+    this.useColor = useColor;
+    this.streaming = streaming;
+  }
+
+  @Override
+  public void enterDirectory(DirectoryEntry dir, int depth) {
+    printLine(dir.getName(), "/" + target(dir) + totals(dir), depth);
+  }
+
+  @Override
+  public void file(DirectoryEntry file, int depth) {
+    printLine(file.getName(), "", depth);
+  }
+
+  @Override
+  public void exitDirectory(DirectoryEntry dir, int depth) {
+    // Nothing is printed after a directory's contents
+  }
+
+  @Override
+  public void omitted(DirectoryEntry dir, int count, int depth) {
+    printLine("... and " + count + " more", "", depth + 1);
+  }
+
+  /**
+   * Prints a single line, indented and colored for its depth.
+   *
+   * @param name the name of the file or directory
+   * @param suffix the text printed after the name
+   * @param depth the depth of the entry
+   */
+  private void printLine(String name, String suffix, int depth) {
+    if(streaming){
+      out.streamLine(encodedPrefix(depth), name, suffix);
+    }else {
+      out.printLine(prefix(depth), name, suffix);
+    }
+  }
+
+  /**
+   * Returns the color code and indentation printed before the names at a depth. The root
+   * always takes the first color of the sequence.
+   */
+  private String prefix(int depth) {
+    if (depth >= prefixes.length) {
+      prefixes = Arrays.copyOf(prefixes, Math.max(depth + 1, 2 * prefixes.length));
+    }
+    String prefix = prefixes[depth];
+    if (prefix == null) {
+      ConsoleColor color = depth == 0 || useColor ? colorSequence.get(depth % colorSequence.size()) : out.getCurrentColor();
+      prefix = (color == null ? "" : color.getCode()) + "   ".repeat(depth);
+      prefixes[depth] = prefix;
+    }
+    return prefix;
+  }
+
+  /**
+   * Returns the prefix for a depth encoded with the printer's encoding.
+   */
+  private byte[] encodedPrefix(int depth) {
+    if (depth >= encodedPrefixes.length) {
+      encodedPrefixes = Arrays.copyOf(encodedPrefixes, Math.max(depth + 1, 2 * encodedPrefixes.length));
+    }
+    byte[] prefix = encodedPrefixes[depth];
+    if (prefix == null) {
+      prefix = out.encode(prefix(depth));
+      encodedPrefixes[depth] = prefix;
+    }
+    return prefix;
+  }
+
+  /**
+   * Formats the target shown after a link's name, such as " -> /data/shared", or "" if
+   * the directory is not a link.
+   */
+  private static String target(DirectoryEntry dir) {
+    return dir.getLinkTarget() == null ? "" : " -> " + dir.getLinkTarget();
+  }
+
+  /**
+   * Formats the totals shown after a directory name, such as " [3 files, 1.5 KiB]",
+   * or "" if the directory carries no totals.
+   */
+  private static String totals(DirectoryEntry dir) {
+    long files = dir.getFileCount();
+    if (files < 0) {
+      return "";
+    }
+    return " [" + files + (files == 1 ? " file, " : " files, ") + formatSize(dir.getSize()) + "]";
+  }
+
+  /**
+   * Formats a number of bytes in the largest binary unit that keeps it at least 1.
+   *
+   * @param bytes the number of bytes
+   * @return the size, such as "512 B" or "1.5 KiB"
+   */
+  public static String formatSize(long bytes) {
+    if (bytes < 1024) {
+      return bytes + " B";
+    }
+    String[] units = {"KiB", "MiB", "GiB", "TiB", "PiB", "EiB"};
+    double size = bytes;
+    int unit = -1;
+    while (size >= 1024 && unit < units.length - 1) {
+      size /= 1024;
+      unit++;
+    }
+    return String.format(Locale.ROOT, "%.1f %s", size, units[unit]);
+  }
+}
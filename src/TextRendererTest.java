@@ -0,0 +1,65 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TextRendererTest {
+  private static final List<ConsoleColor> COLORS = List.of(ConsoleColor.WHITE, ConsoleColor.PURPLE, ConsoleColor.YELLOW);
+
+  private static String render(boolean useColor, boolean streaming) {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ColorPrinter printer = new ColorPrinter(new PrintStream(output));
+    TextRenderer renderer = new TextRenderer(printer, COLORS, useColor, streaming);
+
+    DirectoryEntry root = new DirectoryEntry("root", true, false);
+    DirectoryEntry docs = new DirectoryEntry("docs", true, false).withTotals(2, 1536);
+    renderer.enterDirectory(root, 0);
+    renderer.enterDirectory(docs, 1);
+    renderer.file(new DirectoryEntry("a.txt", false, false), 2);
+    renderer.exitDirectory(docs, 1);
+    renderer.exitDirectory(root, 0);
+    printer.flush();
+    return output.toString();
+  }
+
+  @Test
+  void testRendersIndentedColoredLines() {
+    String nl = System.lineSeparator();
+    String white = ConsoleColor.WHITE.toString();
+    String reset = ConsoleColor.RESET.toString();
+
+    String expected = white + "root/" + reset + nl
+        + ConsoleColor.PURPLE + "   docs/ [2 files, 1.5 KiB]" + reset + nl
+        + ConsoleColor.YELLOW + "      a.txt" + reset + nl;
+    assertEquals(expected, render(true, false));
+    assertEquals(expected, render(true, true));
+  }
+
+  @Test
+  void testRendersWithoutColor() {
+    String nl = System.lineSeparator();
+    String white = ConsoleColor.WHITE.toString();
+    String reset = ConsoleColor.RESET.toString();
+
+    String expected = white + "root/" + reset + nl
+        + white + "   docs/ [2 files, 1.5 KiB]" + reset + nl
+        + white + "      a.txt" + reset + nl;
+    assertEquals(expected, render(false, false));
+    assertEquals(expected, render(false, true));
+  }
+
+  @Test
+  void testCyclesColorsBeyondSequence() {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ColorPrinter printer = new ColorPrinter(new PrintStream(output));
+    TextRenderer renderer = new TextRenderer(printer, COLORS, true, false);
+
+    renderer.file(new DirectoryEntry("deep.txt", false, false), 40);
+
+    String expected = ConsoleColor.PURPLE + " ".repeat(120) + "deep.txt" + ConsoleColor.RESET + System.lineSeparator();
+    assertEquals(expected, output.toString());
+  }
+}
@@ -0,0 +1,270 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Prints the differences between two directory trees.
+ *
+ * Both trees are walked side by side. The two sorted listings of each pair of
+ * directories are merged in AlphabeticalFileSorter order, so every name is
+ * compared once and nothing is printed for entries that match. Only these lines
+ * are printed:
+ * - "+ name" in green for an entry that exists only in the new tree,
+ * - "- name" in red for an entry that exists only in the base tree,
+ * - "~ name" in yellow for an entry that is a file in one tree and a directory in the other.
+ *
+ * Added and removed directories are printed with everything below them. A directory
+ * present in both trees is printed without a marker, and only if something below it
+ * changed, so the changes keep their place in the tree.
+ *
+ * A pair of directories with the same last-modified time is checked for being the
+ * same directory, such as one shared through a symbolic link, and is then skipped
+ * without being listed.
+ *
+ * Symbolic links to directories are followed as the symlink policy allows, with one
+ * LinkTracker per tree, so comparing trees with link cycles ends.
+ *
+ * Hidden files, name patterns, .gitignore rules and the depth limit are applied to
+ * both trees as they are when a single tree is printed.
+ *
+ * Example Output (-diff base new):
+ *
+ * base/ -> new/
+ *      docs/
+ *       + guide.md
+ *       - notes.txt
+ *    ~ lib/
+ *       + a.jar
+ */
+public class TreeDiffer {
+  /**
+   * The color of entries that exist only in the new tree.
+   */
+  public static final ConsoleColor ADDED_COLOR = ConsoleColor.GREEN;
+
+  /**
+   * The color of entries that exist only in the base tree.
+   */
+  public static final ConsoleColor REMOVED_COLOR = ConsoleColor.RED;
+
+  /**
+   * The color of entries whose type differs between the trees.
+   */
+  public static final ConsoleColor CHANGED_COLOR = ConsoleColor.YELLOW;
+
+  private static final DirectoryEntry[] NO_ENTRIES = new DirectoryEntry[0];
+
+  private final TruffulaOptions options;
+  private final ColorPrinter out;
+  private final DirectoryScanner scanner;
+
+  /**
+   * The lines of the directories being compared, from the root down, that have not been
+   * printed yet because nothing has changed below them so far.
+   */
+  private final List<String> context = new ArrayList<>();
+  private int printedContext = 0;
+  private int changes = 0;
+
+  /**
+   * The links followed in the base tree and in the new tree.
+   */
+  private LinkTracker baseLinks;
+  private LinkTracker currentLinks;
+
+  /**
+   * Constructs a TreeDiffer that compares the options' diff base with its root.
+   *
+   * @param options the configuration options, with a diff base set
+   * @param outStream the output stream to print to
+   */
+  public TreeDiffer(TruffulaOptions options, PrintStream outStream) {
+    this.options = options;
+    this.out = new ColorPrinter(outStream, ConsoleColor.WHITE, options.getBufferSize());
+    this.out.setAutoFlush(options.isAutoFlush());
+    this.scanner = new DirectoryScanner(options.isShowHidden(),
+        new NameFilter(options.getIncludePatterns(), options.getExcludePatterns()), options.isUseGitIgnore(), null);
+  }
+
+  /**
+   * Prints the differences from the diff base to the root.
+   *
+   * @return the number of added, removed and changed entries that were printed
+   */
+  public int printDiff() {
+    File base = options.getDiffBase();
+    File root = options.getRoot();
+    changes = 0;
+    context.clear();
+    printedContext = 0;
+    baseLinks = new LinkTracker(options.getSymlinkPolicy(), base);
+    currentLinks = new LinkTracker(options.getSymlinkPolicy(), root);
+
+    out.println(base.getName() + "/ -> " + root.getName() + "/");
+    compare(new DirectoryEntry(base, base.getName(), true, false), new DirectoryEntry(root, root.getName(), true, false));
+    out.flush();
+    return changes;
+  }
+
+  /**
+   * Merges the listings of a pair of directories, printing what differs and comparing
+   * the subdirectories present in both.
+   *
+   * The directories being compared or printed are kept on an explicit stack of levels,
+   * like in TreeWalker, so trees of any depth can be compared. A level below an added,
+   * removed or changed entry has only that entry's listing on its side, or, for a
+   * changed entry, both listings, which are then not merged: everything in the base
+   * listing is printed as removed, then everything in the new one as added.
+   */
+  private void compare(DirectoryEntry base, DirectoryEntry current) {
+    if (isSameDirectory(base.getFile(), current.getFile())) return;
+
+    Level[] stack = new Level[16];
+    int top = 0;
+    stack[0] = new Level();
+    stack[0].open(scan(base), scan(current), 0, true);
+    while (top >= 0) {
+      Level level = stack[top];
+      DirectoryEntry[] left = level.left;
+      DirectoryEntry[] right = level.right;
+      if (level.i == left.length && level.j == right.length) {
+        if (level.merged && top > 0) {
+          context.remove(context.size() - 1);
+          printedContext = Math.min(printedContext, context.size());
+        }
+        top--;
+        continue;
+      }
+
+      int depth = level.depth;
+      int order = level.i == left.length ? 1
+          : level.j == right.length || !level.merged ? -1
+          : AlphabeticalFileSorter.compare(left[level.i].getName(), right[level.j].getName());
+      DirectoryEntry[] below = null;
+      DirectoryEntry[] belowRight = NO_ENTRIES;
+      boolean merged = false;
+      if (order < 0) {
+        DirectoryEntry entry = left[level.i++];
+        printChange('-', REMOVED_COLOR, entry, depth);
+        below = children(entry, baseLinks, depth);
+      } else if (order > 0) {
+        DirectoryEntry entry = right[level.j++];
+        printChange('+', ADDED_COLOR, entry, depth);
+        below = NO_ENTRIES;
+        belowRight = children(entry, currentLinks, depth);
+      } else {
+        DirectoryEntry before = left[level.i++];
+        DirectoryEntry after = right[level.j++];
+        if (before.isDirectory() != after.isDirectory()) {
+          printChange('~', CHANGED_COLOR, after, depth);
+          below = children(before, baseLinks, depth);
+          belowRight = children(after, currentLinks, depth);
+        } else if (before.isDirectory() && canDescend(depth + 1)) {
+          before = scanner.resolveLink(before);
+          after = scanner.resolveLink(after);
+          // Both trees record the link, even when the other is not followed
+          if (baseLinks.isListed(before) & currentLinks.isListed(after)
+              && !isSameDirectory(before.getFile(), after.getFile())) {
+            context.add(line(' ', null, after, depth));
+            below = scan(before);
+            belowRight = scan(after);
+            merged = true;
+          }
+        }
+      }
+
+      if (below != null) {
+        if (++top == stack.length) {
+          stack = Arrays.copyOf(stack, 2 * stack.length);
+        }
+        if (stack[top] == null) {
+          stack[top] = new Level();
+        }
+        stack[top].open(below, belowRight, depth + 1, merged);
+      }
+    }
+  }
+
+  /**
+   * Lists an added, removed or changed directory, whose entries are all printed, or
+   * returns no entries for a file or a directory that is not listed.
+   */
+  private DirectoryEntry[] children(DirectoryEntry dir, LinkTracker links, int depth) {
+    if (!dir.isDirectory() || !canDescend(depth + 1)) return NO_ENTRIES;
+    dir = scanner.resolveLink(dir);
+    return links.isListed(dir) ? scan(dir) : NO_ENTRIES;
+  }
+
+  /**
+   * A pair of listings being compared, and the next entry of each.
+   */
+  private static final class Level {
+    private DirectoryEntry[] left;
+    private DirectoryEntry[] right;
+    private int i;
+    private int j;
+    private int depth;
+
+    /**
+     * Whether entries with the same name are matched, or the two listings are printed
+     * one after the other.
+     */
+    private boolean merged;
+
+    void open(DirectoryEntry[] left, DirectoryEntry[] right, int depth, boolean merged) {
+      this.left = left;
+      this.right = right;
+      this.i = 0;
+      this.j = 0;
+      this.depth = depth;
+      this.merged = merged;
+    }
+  }
+
+  /**
+   * Prints one changed entry, after the lines of any directories above it that have
+   * not been printed yet.
+   */
+  private void printChange(char marker, ConsoleColor color, DirectoryEntry entry, int depth) {
+    for (; printedContext < context.size(); printedContext++) {
+      out.println(context.get(printedContext));
+    }
+    out.println(line(marker, color, entry, depth));
+    changes++;
+  }
+
+  private String line(char marker, ConsoleColor color, DirectoryEntry entry, int depth) {
+    String line = "   ".repeat(depth + 1) + marker + " " + entry.getName() + (entry.isDirectory() ? "/" : "");
+    if (options.isUseColor() && color != null) {
+      return color.toString() + line + ConsoleColor.RESET;
+    }
+    return line + ConsoleColor.RESET;
+  }
+
+  private DirectoryEntry[] scan(DirectoryEntry dir) {
+    DirectoryEntry[] entries = scanner.scan(dir);
+    return entries == null ? NO_ENTRIES : entries;
+  }
+
+  private boolean canDescend(int depth) {
+    return options.getMaxDepth() == 0 || depth < options.getMaxDepth();
+  }
+
+  /**
+   * Indicates whether two directories are the same directory. The last-modified times
+   * are compared first, so the canonical paths are only resolved for likely matches.
+   */
+  private static boolean isSameDirectory(File base, File current) {
+    if (base.lastModified() != current.lastModified()) {
+      return false;
+    }
+    try {
+      return base.getCanonicalFile().equals(current.getCanonicalFile());
+    } catch (IOException e) {
+      return false;
+    }
+  }
+}
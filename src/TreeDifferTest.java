@@ -0,0 +1,141 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TreeDifferTest {
+
+  private static String line(ConsoleColor color, String text) {
+    return ConsoleColor.WHITE + (color == null ? "" : color.toString()) + text + ConsoleColor.RESET
+        + System.lineSeparator() + ConsoleColor.RESET;
+  }
+
+  private static void createFiles(File dir, String... names) throws IOException {
+    assertTrue(dir.isDirectory() || dir.mkdirs());
+    for (String name : names) {
+      new File(dir, name).createNewFile();
+    }
+  }
+
+  @Test
+  void testPrintsAddedRemovedAndChangedEntries(@TempDir File tempDir) throws IOException {
+    // base/                  current/
+    //    docs/                  docs/
+    //       notes.txt              guide.md
+    //       same.txt               same.txt
+    //    lib                    lib/
+    //                              a.jar
+    //    old/                   Zebra.txt
+    //       inner.txt
+    //    same/                  same/
+    //       x.txt                  x.txt
+    File base = new File(tempDir, "base");
+    File current = new File(tempDir, "current");
+    createFiles(new File(base, "docs"), "notes.txt", "same.txt");
+    createFiles(new File(current, "docs"), "guide.md", "same.txt");
+    createFiles(base, "lib");
+    createFiles(new File(current, "lib"), "a.jar");
+    createFiles(new File(base, "old"), "inner.txt");
+    createFiles(current, "Zebra.txt");
+    createFiles(new File(base, "same"), "x.txt");
+    createFiles(new File(current, "same"), "x.txt");
+
+    TruffulaOptions options = new TruffulaOptions(current, false, true);
+    options.setDiffBase(base);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    int changes = new TreeDiffer(options, new PrintStream(output)).printDiff();
+
+    String expected = ConsoleColor.WHITE + "base/ -> current/" + System.lineSeparator() + ConsoleColor.RESET
+        + line(null, "     docs/")
+        + line(ConsoleColor.GREEN, "      + guide.md")
+        + line(ConsoleColor.RED, "      - notes.txt")
+        + line(ConsoleColor.YELLOW, "   ~ lib/")
+        + line(ConsoleColor.GREEN, "      + a.jar")
+        + line(ConsoleColor.RED, "   - old/")
+        + line(ConsoleColor.RED, "      - inner.txt")
+        + line(ConsoleColor.GREEN, "   + Zebra.txt");
+    assertEquals(expected, output.toString());
+    assertEquals(7, changes);
+  }
+
+  @Test
+  void testIdenticalTreesPrintNothing(@TempDir File tempDir) throws IOException {
+    File base = new File(tempDir, "base");
+    File current = new File(tempDir, "current");
+    createFiles(new File(base, "a/b"), "c.txt");
+    createFiles(new File(current, "a/b"), "c.txt");
+
+    TruffulaOptions options = new TruffulaOptions(current, false, false);
+    options.setDiffBase(base);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    assertEquals(0, new TreeDiffer(options, new PrintStream(output)).printDiff());
+    assertEquals(ConsoleColor.WHITE + "base/ -> current/" + System.lineSeparator() + ConsoleColor.RESET, output.toString());
+
+    // The same directory on both sides is skipped as a whole
+    options.setDiffBase(current);
+    assertEquals(0, new TreeDiffer(options, new PrintStream(new ByteArrayOutputStream())).printDiff());
+  }
+
+  @Test
+  void testAppliesHiddenFilesAndDepthLimit(@TempDir File tempDir) throws IOException {
+    File base = new File(tempDir, "base");
+    File current = new File(tempDir, "current");
+    createFiles(new File(base, "a"));
+    createFiles(new File(current, "a/deep"), "file.txt");
+    TruffulaPrinterTest.createHiddenFile(current, ".hidden");
+
+    TruffulaOptions options = new TruffulaOptions(current, false, false);
+    options.setDiffBase(base);
+    options.setMaxDepth(2);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    assertEquals(1, new TreeDiffer(options, new PrintStream(output)).printDiff());
+    assertTrue(output.toString().contains("      + deep/"));
+  }
+
+  @Test
+  void testComparesDeepTreesWithoutRecursion(@TempDir File tempDir) throws IOException, InterruptedException {
+    // base/                  current/
+    //    d/                     d/
+    //       ...                    ...
+    //          d/                     d/
+    //             x.txt                  y.txt
+    //    gone/d/.../d/
+    int levels = 300;
+    File base = new File(tempDir, "base");
+    File current = new File(tempDir, "current");
+    String chain = "d/".repeat(levels);
+    createFiles(new File(base, chain), "x.txt");
+    createFiles(new File(current, chain), "y.txt");
+    createFiles(new File(base, "gone/" + chain));
+
+    TruffulaOptions options = new TruffulaOptions(current, false, false);
+    options.setDiffBase(base);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    int[] changes = new int[1];
+    Throwable[] failure = new Throwable[1];
+    // A small stack, which a recursive comparison would overflow
+    Thread differ = new Thread(null, () -> {
+      try {
+        changes[0] = new TreeDiffer(options, new PrintStream(output)).printDiff();
+      } catch (Throwable e) {
+        failure[0] = e;
+      }
+    }, "deep-diff", 64 * 1024);
+    differ.start();
+    differ.join();
+
+    assertNull(failure[0]);
+    // gone/ and its chain, then x.txt removed and y.txt added at the bottom
+    assertEquals(levels + 3, changes[0]);
+    assertTrue(output.toString().contains("   ".repeat(levels + 1) + "+ y.txt"));
+  }
+}
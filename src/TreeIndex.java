@@ -0,0 +1,388 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+
+/**
+ * A printed tree saved in a flat binary format, so that it can be printed again
+ * without touching the directories it was read from.
+ *
+ * The file is read into a single byte array and the tree is walked in place: a node
+ * is an index into the node table, and its name, flags and children are read from
+ * the array at fixed offsets. No File objects are created, and a name is only
+ * decoded when its entry is reported by TreeWalker.walk(TreeIndex, TreeVisitor).
+ *
+ * A Recorder collects a tree from a walk, and a Builder lays it out in the file.
+ *
+ * File format (big-endian):
+ * - int : MAGIC
+ * - int : VERSION
+ * - int : number of nodes
+ * - int : length of the string table in bytes
+ * - node table, NODE_SIZE bytes per node, the root first:
+ *   - int : offset of the name in the string table
+ *   - int : length of the name in bytes
+ *   - int : flags, FLAG_DIRECTORY and FLAG_HIDDEN
+ *   - int : index of the parent node, -1 for the root
+ *   - int : index of the first child node
+ *   - int : number of children
+ * - string table: the names of all nodes in UTF-8
+ *
+ * The children of a node are stored next to each other, in the order they are printed.
+ *
+ * Reading checks the whole node table, so a truncated or corrupt file is rejected with
+ * an IOException rather than failing later, when it is walked.
+ *
+ * A TreeIndex is immutable once read and may be shared between threads.
+ */
+public class TreeIndex {
+  /**
+   * The first four bytes of an index file, "TRIX".
+   */
+  public static final int MAGIC = 0x54524958;
+
+  /**
+   * The version of the file format.
+   */
+  public static final int VERSION = 1;
+
+  private static final int HEADER_SIZE = 16;
+  private static final int NODE_SIZE = 24;
+
+  private static final int FLAG_DIRECTORY = 1;
+  private static final int FLAG_HIDDEN = 2;
+
+  private final byte[] data;
+  private final int nodeCount;
+  private final int stringTable;
+
+  private TreeIndex(byte[] data, int nodeCount) {
+    this.data = data;
+    this.nodeCount = nodeCount;
+    this.stringTable = HEADER_SIZE + nodeCount * NODE_SIZE;
+  }
+
+  /**
+   * Reads an index file.
+   *
+   * @param file the index file
+   * @return the index
+   * @throws IOException if the file cannot be read or is not a valid index
+   */
+  public static TreeIndex read(File file) throws IOException {
+    byte[] data;
+    try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+      if (in.length() > Integer.MAX_VALUE) {
+        throw new IOException("Tree index is too large: " + file);
+      }
+      data = new byte[(int) in.length()];
+      in.readFully(data);
+    }
+
+    if (data.length < HEADER_SIZE || readInt(data, 0) != MAGIC || readInt(data, 4) != VERSION) {
+      throw new IOException("Not a tree index: " + file);
+    }
+    int nodeCount = readInt(data, 8);
+    int stringsLength = readInt(data, 12);
+    long size = HEADER_SIZE + (long) nodeCount * NODE_SIZE + stringsLength;
+    if (nodeCount < 1 || stringsLength < 0 || size != data.length) {
+      throw new EOFException("Truncated tree index: " + file);
+    }
+    TreeIndex index = new TreeIndex(data, nodeCount);
+    index.check(file, stringsLength);
+    return index;
+  }
+
+  /**
+   * Checks that every name lies in the string table and that the nodes form a tree:
+   * the root has no parent, and the children of a node come after it and name it as
+   * their parent. So a walk of a corrupt index cannot read past the data or loop.
+   *
+   * @throws IOException if a node is out of range
+   */
+  private void check(File file, int stringsLength) throws IOException {
+    for (int node = 0; node < nodeCount; node++) {
+      int offset = field(node, 0);
+      int length = field(node, 1);
+      if (offset < 0 || length < 0 || (long) offset + length > stringsLength) {
+        throw new IOException("Corrupt tree index, name out of range at node " + node + ": " + file);
+      }
+      int parent = field(node, 3);
+      if (node == 0 ? parent != -1 : parent < 0 || parent >= node) {
+        throw new IOException("Corrupt tree index, bad parent at node " + node + ": " + file);
+      }
+      int count = field(node, 5);
+      if (count == 0) continue;
+      int first = field(node, 4);
+      if (count < 0 || first <= node || (long) first + count > nodeCount) {
+        throw new IOException("Corrupt tree index, children out of range at node " + node + ": " + file);
+      }
+      for (int child = first; child < first + count; child++) {
+        if (field(child, 3) != node) {
+          throw new IOException("Corrupt tree index, bad parent at node " + child + ": " + file);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the number of nodes, including the root.
+   *
+   * @return the number of nodes
+   */
+  public int size() {
+    return nodeCount;
+  }
+
+  /**
+   * Returns the name of a node. The root is node 0.
+   *
+   * @param node the node
+   * @return the name of the file or directory
+   */
+  public String getName(int node) {
+    try {
+      return new String(data, stringTable + field(node, 0), field(node, 1), "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException("UTF-8 is not supported", e);
+    }
+  }
+
+  /**
+   * Indicates whether a node is a directory.
+   *
+   * @param node the node
+   * @return true if the node is a directory
+   */
+  public boolean isDirectory(int node) {
+    return (field(node, 2) & FLAG_DIRECTORY) != 0;
+  }
+
+  /**
+   * Indicates whether a node is a hidden file or directory.
+   *
+   * @param node the node
+   * @return true if the node is hidden
+   */
+  public boolean isHidden(int node) {
+    return (field(node, 2) & FLAG_HIDDEN) != 0;
+  }
+
+  /**
+   * Returns the parent of a node.
+   *
+   * @param node the node
+   * @return the parent node, or -1 for the root
+   */
+  public int getParent(int node) {
+    return field(node, 3);
+  }
+
+  /**
+   * Returns the first child of a node. The other children follow it.
+   *
+   * @param node the node
+   * @return the first child node, only meaningful if the node has children
+   */
+  public int getFirstChild(int node) {
+    return field(node, 4);
+  }
+
+  /**
+   * Returns the number of children of a node.
+   *
+   * @param node the node
+   * @return the number of children
+   */
+  public int getChildCount(int node) {
+    return field(node, 5);
+  }
+
+  /**
+   * Reads one int field of a node from the node table.
+   */
+  private int field(int node, int field) {
+    if (node < 0 || node >= nodeCount) {
+      throw new IndexOutOfBoundsException("No such node: " + node);
+    }
+    return readInt(data, HEADER_SIZE + node * NODE_SIZE + field * 4);
+  }
+
+  private static int readInt(byte[] data, int offset) {
+    return (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16
+        | (data[offset + 2] & 0xFF) << 8 | (data[offset + 3] & 0xFF);
+  }
+
+  /**
+   * Collects a tree while it is walked and writes it as an index.
+   *
+   * Each directory's children are added in one call, which keeps them next to each
+   * other in the node table.
+   */
+  public static class Builder {
+    private int[] nodes = new int[NODE_SIZE / 4 * 64];
+    private int nodeCount = 1;
+    private byte[] strings = new byte[1024];
+    private int stringsLength = 0;
+
+    /**
+     * Constructs a Builder whose root node has the given name.
+     *
+     * @param rootName the name of the root directory
+     */
+    public Builder(String rootName) {
+      setNode(0, rootName, FLAG_DIRECTORY, -1);
+    }
+
+    /**
+     * Adds the children of a node that has been listed.
+     *
+     * @param parent  the node whose children these are, 0 for the root
+     * @param entries the children, in the order they are printed
+     * @return the node of the first child; the others follow it in order
+     */
+    public int addChildren(int parent, DirectoryEntry[] entries) {
+      int first = nodeCount;
+      nodeCount += entries.length;
+      if (nodeCount * (NODE_SIZE / 4) > nodes.length) {
+        nodes = Arrays.copyOf(nodes, Math.max(nodes.length * 2, nodeCount * (NODE_SIZE / 4)));
+      }
+      for (int i = 0; i < entries.length; i++) {
+        int flags = (entries[i].isDirectory() ? FLAG_DIRECTORY : 0) | (entries[i].isHidden() ? FLAG_HIDDEN : 0);
+        setNode(first + i, entries[i].getName(), flags, parent);
+      }
+      int base = parent * (NODE_SIZE / 4);
+      nodes[base + 4] = first;
+      nodes[base + 5] = entries.length;
+      return first;
+    }
+
+    private void setNode(int node, String name, int flags, int parent) {
+      byte[] bytes;
+      try {
+        bytes = name.getBytes("UTF-8");
+      } catch (UnsupportedEncodingException e) {
+        throw new IllegalStateException("UTF-8 is not supported", e);
+      }
+      if (stringsLength + bytes.length > strings.length) {
+        strings = Arrays.copyOf(strings, Math.max(strings.length * 2, stringsLength + bytes.length));
+      }
+      System.arraycopy(bytes, 0, strings, stringsLength, bytes.length);
+
+      int base = node * (NODE_SIZE / 4);
+      nodes[base] = stringsLength;
+      nodes[base + 1] = bytes.length;
+      nodes[base + 2] = flags;
+      nodes[base + 3] = parent;
+      nodes[base + 4] = node + 1;
+      nodes[base + 5] = 0;
+      stringsLength += bytes.length;
+    }
+
+    /**
+     * Writes the collected tree, replacing the file.
+     *
+     * @param file the index file
+     * @throws IOException if the file cannot be written
+     */
+    public void write(File file) throws IOException {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(nodeCount);
+        out.writeInt(stringsLength);
+        for (int i = 0; i < nodeCount * (NODE_SIZE / 4); i++) {
+          out.writeInt(nodes[i]);
+        }
+        out.write(strings, 0, stringsLength);
+      }
+    }
+  }
+
+  /**
+   * Records a tree as a TreeWalker reports it, so that it can be written as an index
+   * once the walk is over.
+   *
+   * The children of a directory are only all known when the directory is exited, so
+   * the tree is kept as a CompactTree until write() lays it out with a Builder.
+   */
+  public static class Recorder implements TreeVisitor {
+    private CompactTree.Builder builder = new CompactTree.Builder();
+    private CompactTree tree;
+
+    @Override
+    public void enterDirectory(DirectoryEntry dir, int depth) {
+      builder.enterDirectory(dir, depth);
+    }
+
+    @Override
+    public void file(DirectoryEntry file, int depth) {
+      builder.file(file, depth);
+    }
+
+    @Override
+    public void exitDirectory(DirectoryEntry dir, int depth) {
+      builder.exitDirectory(dir, depth);
+    }
+
+    /**
+     * Writes the recorded tree, replacing the file.
+     *
+     * @param file the index file
+     * @throws IOException if the file cannot be written
+     * @throws IllegalStateException if no tree has been recorded
+     */
+    public void write(File file) throws IOException {
+      if (tree == null) {
+        tree = builder.build();
+        builder = null;
+      }
+      Builder index = new Builder(tree.getName(0));
+      layOut(index, tree);
+      index.write(file);
+    }
+
+    /**
+     * Adds the children of every directory to the index, in the order a depth-first walk
+     * reaches the directories. The directories still to be laid out are kept on an
+     * explicit stack, as pairs of index node and tree node, so a deep tree does not
+     * overflow the call stack.
+     */
+    private static void layOut(Builder index, CompactTree tree) {
+      // Starting with the root, which is node 0 of both
+      int[] stack = new int[32];
+      int top = 2;
+      while (top > 0) {
+        int dir = stack[--top];
+        int node = stack[--top];
+        int count = 0;
+        for (int child = tree.getFirstChild(dir); child != CompactTree.NONE; child = tree.getNextSibling(child)) {
+          count++;
+        }
+        int[] children = new int[count];
+        DirectoryEntry[] entries = new DirectoryEntry[count];
+        int i = 0;
+        for (int child = tree.getFirstChild(dir); child != CompactTree.NONE; child = tree.getNextSibling(child)) {
+          children[i] = child;
+          entries[i++] = new DirectoryEntry(tree.getName(child), tree.isDirectory(child), tree.isHidden(child));
+        }
+        int first = index.addChildren(node, entries);
+        // Pushed last to first, so the first subdirectory is laid out next
+        for (i = count - 1; i >= 0; i--) {
+          if (entries[i].isDirectory()) {
+            if (top == stack.length) {
+              stack = Arrays.copyOf(stack, 2 * stack.length);
+            }
+            stack[top++] = first + i;
+            stack[top++] = children[i];
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,153 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TreeIndexTest {
+
+  private static DirectoryEntry entry(String name, boolean directory, boolean hidden) {
+    return new DirectoryEntry(new File(name), name, directory, hidden);
+  }
+
+  @Test
+  void testWriteAndRead(@TempDir File tempDir) throws IOException {
+    // root/
+    //    .hidden
+    //    docs/
+    //       Ünïcode.txt
+    //    empty/
+    TreeIndex.Builder builder = new TreeIndex.Builder("root");
+    int first = builder.addChildren(0, new DirectoryEntry[] {
+        entry(".hidden", false, true), entry("docs", true, false), entry("empty", true, false)});
+    assertEquals(1, first);
+    builder.addChildren(2, new DirectoryEntry[] {entry("Ünïcode.txt", false, false)});
+    builder.addChildren(3, new DirectoryEntry[0]);
+
+    File file = new File(tempDir, "tree.index");
+    builder.write(file);
+    TreeIndex index = TreeIndex.read(file);
+
+    assertEquals(5, index.size());
+    assertEquals("root", index.getName(0));
+    assertEquals(-1, index.getParent(0));
+    assertEquals(1, index.getFirstChild(0));
+    assertEquals(3, index.getChildCount(0));
+
+    assertEquals(".hidden", index.getName(1));
+    assertTrue(index.isHidden(1));
+    assertFalse(index.isDirectory(1));
+
+    assertEquals("docs", index.getName(2));
+    assertTrue(index.isDirectory(2));
+    assertEquals(1, index.getChildCount(2));
+    int child = index.getFirstChild(2);
+    assertEquals("Ünïcode.txt", index.getName(child));
+    assertEquals(2, index.getParent(child));
+
+    assertEquals(0, index.getChildCount(3));
+    assertThrows(IndexOutOfBoundsException.class, () -> index.getName(5));
+  }
+
+  @Test
+  void testReadRejectsInvalidFiles(@TempDir File tempDir) throws IOException {
+    File file = new File(tempDir, "tree.index");
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16});
+    }
+    assertThrows(IOException.class, () -> TreeIndex.read(file));
+
+    new TreeIndex.Builder("root").write(file);
+    long length = file.length();
+    try (FileOutputStream out = new FileOutputStream(file, true)) {
+      out.write(0);
+    }
+    assertEquals(length + 1, file.length());
+    assertThrows(IOException.class, () -> TreeIndex.read(file));
+  }
+
+  @Test
+  void testRecorderKeepsChildrenTogether(@TempDir File tempDir) throws IOException {
+    // root/
+    //    a/
+    //       x.txt
+    //    b.txt
+    //    c/
+    DirectoryEntry root = entry("root", true, false);
+    DirectoryEntry a = entry("a", true, false);
+    DirectoryEntry c = entry("c", true, false);
+    TreeIndex.Recorder recorder = new TreeIndex.Recorder();
+    recorder.enterDirectory(root, 0);
+    recorder.enterDirectory(a, 1);
+    recorder.file(entry("x.txt", false, false), 2);
+    recorder.exitDirectory(a, 1);
+    recorder.file(entry("b.txt", false, false), 1);
+    recorder.enterDirectory(c, 1);
+    recorder.exitDirectory(c, 1);
+    recorder.exitDirectory(root, 0);
+
+    File file = new File(tempDir, "tree.index");
+    recorder.write(file);
+    TreeIndex index = TreeIndex.read(file);
+
+    assertEquals(5, index.size());
+    assertEquals(3, index.getChildCount(0));
+    int first = index.getFirstChild(0);
+    assertEquals("a", index.getName(first));
+    assertEquals("b.txt", index.getName(first + 1));
+    assertEquals("c", index.getName(first + 2));
+    assertEquals("x.txt", index.getName(index.getFirstChild(first)));
+    assertEquals(first, index.getParent(index.getFirstChild(first)));
+    assertEquals(0, index.getChildCount(first + 2));
+  }
+
+  @Test
+  void testReadRejectsCorruptNodes(@TempDir File tempDir) throws IOException {
+    // root/
+    //    a/
+    //       x.txt
+    TreeIndex.Builder builder = new TreeIndex.Builder("root");
+    builder.addChildren(0, new DirectoryEntry[] {entry("a", true, false)});
+    builder.addChildren(1, new DirectoryEntry[] {entry("x.txt", false, false)});
+    File file = new File(tempDir, "tree.index");
+    builder.write(file);
+    byte[] valid;
+    try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+      valid = new byte[(int) in.length()];
+      in.readFully(valid);
+    }
+    assertEquals(3, TreeIndex.read(file).size());
+
+    // Header of 16 bytes, then 6 ints per node: name offset, name length, flags, parent,
+    // first child, child count
+    int[][] corruptions = {
+        {1, 1, 1000},  // name past the string table
+        {1, 0, -5},    // negative name offset
+        {1, 4, 0},     // a's children start at the root, which would loop
+        {1, 5, 7},     // a has more children than there are nodes
+        {2, 3, 0},     // x.txt names the root as its parent
+        {0, 3, 2},     // the root has a parent
+    };
+    for (int[] corruption : corruptions) {
+      byte[] data = valid.clone();
+      int offset = 16 + corruption[0] * 24 + corruption[1] * 4;
+      int value = corruption[2];
+      data[offset] = (byte) (value >>> 24);
+      data[offset + 1] = (byte) (value >>> 16);
+      data[offset + 2] = (byte) (value >>> 8);
+      data[offset + 3] = (byte) value;
+      try (FileOutputStream out = new FileOutputStream(file)) {
+        out.write(data);
+      }
+      assertThrows(IOException.class, () -> TreeIndex.read(file), () -> Arrays.toString(corruption));
+    }
+  }
+}
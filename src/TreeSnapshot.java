@@ -0,0 +1,321 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A saved index of the directory listings of a tree, used to replay unchanged
+ * directories instead of listing them again.
+ * 
+ * For every directory a walk lists, the snapshot records the directory's last-modified
+ * time and its sorted children with their type and hidden status. On the next run, a
+ * directory whose last-modified time is unchanged is replayed from the snapshot: that
+ * costs one stat call for the directory and none for its children. Directories whose
+ * time changed are listed again. Adding, removing or renaming a child changes a
+ * directory's last-modified time, so a replayed listing is always current.
+ * 
+ * Listings are stored before any filtering, so the same snapshot works whatever
+ * hidden file, pattern and .gitignore options a later run uses.
+ * 
+ * Every child directory is checked for being a symbolic link when its directory is
+ * listed, and a link is stored with its target, so a replayed listing needs no
+ * canonical path lookups either.
+ * 
+ * A directory modified within MTIME_GRANULARITY_MILLIS of the start of the walk that
+ * listed it is never replayed, because a change made right after the listing might
+ * not have moved its time on file systems with coarse timestamps.
+ * 
+ * File format (big-endian, strings in modified UTF-8):
+ * - int    : MAGIC
+ * - int    : VERSION
+ * - string : absolute path of the root
+ * - long   : time the walk that wrote the snapshot started
+ * - int    : number of directories, followed for each directory by
+ *   - string : path relative to the root, "" for the root itself
+ *   - long   : last-modified time of the directory
+ *   - int    : number of children, followed for each child by
+ *     - string : name
+ *     - byte   : flags, FLAG_DIRECTORY, FLAG_HIDDEN and FLAG_LINK
+ *     - string : canonical path of the link's target, only with FLAG_LINK
+ * 
+ * A TreeSnapshot may be used by several walking threads at once.
+ */
+public class TreeSnapshot {
+  /**
+   * The first four bytes of a snapshot file, "TRFS".
+   */
+  public static final int MAGIC = 0x54524653;
+
+  /**
+   * The version of the file format.
+   */
+  public static final int VERSION = 2;
+
+  /**
+   * How close to the start of a walk a directory's last-modified time may be
+   * before its listing is no longer trusted.
+   */
+  public static final long MTIME_GRANULARITY_MILLIS = 2000;
+
+  private static final byte FLAG_DIRECTORY = 1;
+  private static final byte FLAG_HIDDEN = 2;
+  private static final byte FLAG_LINK = 4;
+
+  private final File root;
+  private final String rootPath;
+
+  /**
+   * The listings of the previous run, by path relative to the root.
+   */
+  private final Map<String, Listing> previous;
+
+  /**
+   * The time the previous run started, or 0 if there was none.
+   */
+  private final long previousStartedAt;
+
+  /**
+   * The listings of this run, which become the next snapshot.
+   */
+  private final Map<String, Listing> current = new ConcurrentHashMap<>();
+  private final long startedAt = System.currentTimeMillis();
+
+  private TreeSnapshot(File root, Map<String, Listing> previous, long previousStartedAt) {
+    this.root = root.getAbsoluteFile();
+    this.rootPath = this.root.getPath();
+    this.previous = previous;
+    this.previousStartedAt = previousStartedAt;
+  }
+
+  /**
+   * Loads the snapshot saved for a root. If the file does not exist, cannot be read, is
+   * not a snapshot or was saved for a different root, an empty snapshot is returned and
+   * the walk lists every directory.
+   *
+   * @param file the snapshot file
+   * @param root the root of the walk
+   * @return the loaded snapshot
+   */
+  public static TreeSnapshot load(File file, File root) {
+    String rootPath = root.getAbsolutePath();
+    if (!file.isFile()) {
+      return new TreeSnapshot(root, new HashMap<>(), 0);
+    }
+
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(rootPath)) {
+        return new TreeSnapshot(root, new HashMap<>(), 0);
+      }
+      long startedAt = in.readLong();
+      int directories = in.readInt();
+      Map<String, Listing> listings = new HashMap<>(directories * 2);
+      for (int i = 0; i < directories; i++) {
+        String path = in.readUTF();
+        long lastModified = in.readLong();
+        int children = in.readInt();
+        String[] names = new String[children];
+        byte[] flags = new byte[children];
+        String[] targets = null;
+        for (int j = 0; j < children; j++) {
+          names[j] = in.readUTF();
+          flags[j] = in.readByte();
+          if ((flags[j] & FLAG_LINK) != 0) {
+            if (targets == null) {
+              targets = new String[children];
+            }
+            targets[j] = in.readUTF();
+          }
+        }
+        listings.put(path, new Listing(lastModified, names, flags, targets));
+      }
+      return new TreeSnapshot(root, listings, startedAt);
+    } catch (IOException e) {
+      return new TreeSnapshot(root, new HashMap<>(), 0);
+    }
+  }
+
+  /**
+   * Returns the children of a directory like {@link #list(File, String, WalkStats)},
+   * looking up the directory's canonical path first.
+   *
+   * @param dir a directory below (or equal to) the root
+   * @return the sorted children, or null if dir is not a directory or cannot be read
+   */
+  public DirectoryEntry[] list(File dir) {
+    try {
+      return list(dir, dir.getCanonicalPath(), null);
+    } catch (IOException e) {
+      return list(dir, null, null);
+    }
+  }
+
+  /**
+   * Returns the children of a directory, sorted with AlphabeticalFileSorter and not
+   * filtered in any way. The listing is replayed from the loaded snapshot if the
+   * directory has not changed, or read from the file system otherwise, and is recorded
+   * for the next snapshot either way. Child directories are returned already checked
+   * for being symbolic links.
+   *
+   * @param dir          a directory below (or equal to) the root
+   * @param canonicalDir the canonical path of dir, or null if unknown, in which case no
+   *                     child is taken for a link
+   * @param stats        the stats to record stat calls, sorts and canonical path lookups in, or null for none
+   * @return the sorted children, or null if dir is not a directory or cannot be read
+   */
+  public DirectoryEntry[] list(File dir, String canonicalDir, WalkStats stats) {
+    String path = relativePath(dir);
+    long lastModified = dir.lastModified();
+    if (stats != null) {
+      stats.recordStatCalls(1);
+    }
+
+    Listing listing = previous.get(path);
+    if (listing == null || listing.lastModified != lastModified
+        || lastModified >= previousStartedAt - MTIME_GRANULARITY_MILLIS) {
+      listing = read(dir, lastModified, canonicalDir, stats);
+      if (listing == null) {
+        return null;
+      }
+    }
+    current.put(path, listing);
+    return listing.toEntries(dir, canonicalDir);
+  }
+
+  /**
+   * Saves the listings of this run, replacing the file. The file is written next to
+   * its final location first, so an interrupted save leaves the old snapshot intact.
+   *
+   * @param file the snapshot file
+   * @throws IOException if the file cannot be written
+   */
+  public void save(File file) throws IOException {
+    File temp = new File(file.getPath() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeUTF(rootPath);
+      out.writeLong(startedAt);
+      out.writeInt(current.size());
+      for (Map.Entry<String, Listing> entry : current.entrySet()) {
+        Listing listing = entry.getValue();
+        out.writeUTF(entry.getKey());
+        out.writeLong(listing.lastModified);
+        out.writeInt(listing.names.length);
+        for (int i = 0; i < listing.names.length; i++) {
+          out.writeUTF(listing.names[i]);
+          out.writeByte(listing.flags[i]);
+          if ((listing.flags[i] & FLAG_LINK) != 0) {
+            out.writeUTF(listing.targets[i]);
+          }
+        }
+      }
+    }
+    if (file.exists() && !file.delete()) {
+      throw new IOException("Could not replace snapshot: " + file);
+    }
+    if (!temp.renameTo(file)) {
+      throw new IOException("Could not write snapshot: " + file);
+    }
+  }
+
+  /**
+   * Returns the path of a directory relative to the root.
+   */
+  private String relativePath(File dir) {
+    String path = dir.getAbsolutePath();
+    if (path.equals(rootPath)) {
+      return "";
+    }
+    if (!path.startsWith(rootPath)) {
+      throw new IllegalArgumentException("Not below the snapshot root " + root + ": " + dir);
+    }
+    int start = rootPath.endsWith(File.separator) ? rootPath.length() : rootPath.length() + 1;
+    return path.substring(start);
+  }
+
+  /**
+   * Lists a directory from the file system, checking every child directory for being a
+   * symbolic link.
+   */
+  private static Listing read(File dir, long lastModified, String canonicalDir, WalkStats stats) {
+    File[] files = dir.listFiles();
+    if (files == null) {
+      return null;
+    }
+
+    long start = stats != null ? System.nanoTime() : 0;
+    AlphabeticalFileSorter.sort(files);
+    if (stats != null) {
+      stats.recordSort(System.nanoTime() - start);
+    }
+    String[] names = new String[files.length];
+    byte[] flags = new byte[files.length];
+    String[] targets = null;
+    int lookups = 0;
+    for (int i = 0; i < files.length; i++) {
+      names[i] = files[i].getName();
+      boolean directory = files[i].isDirectory();
+      flags[i] = (byte) ((directory ? FLAG_DIRECTORY : 0) | (files[i].isHidden() ? FLAG_HIDDEN : 0));
+      if (directory && canonicalDir != null) {
+        lookups++;
+        String target = DirectoryScanner.linkTarget(files[i], canonicalDir);
+        if (target != null) {
+          if (targets == null) {
+            targets = new String[files.length];
+          }
+          targets[i] = target;
+          flags[i] |= FLAG_LINK;
+        }
+      }
+    }
+    if (stats != null) {
+      stats.recordStatCalls(files.length);
+      stats.recordPathLookups(lookups);
+    }
+    return new Listing(lastModified, names, flags, targets);
+  }
+
+  /**
+   * The sorted children of one directory.
+   */
+  private static final class Listing {
+    private final long lastModified;
+    private final String[] names;
+    private final byte[] flags;
+
+    /**
+     * The targets of the children that are links, or null if there are none.
+     */
+    private final String[] targets;
+
+    Listing(long lastModified, String[] names, byte[] flags, String[] targets) {
+      this.lastModified = lastModified;
+      this.names = names;
+      this.flags = flags;
+      this.targets = targets;
+    }
+
+    DirectoryEntry[] toEntries(File dir, String canonicalDir) {
+      DirectoryEntry[] entries = new DirectoryEntry[names.length];
+      for (int i = 0; i < names.length; i++) {
+        boolean directory = (flags[i] & FLAG_DIRECTORY) != 0;
+        DirectoryEntry entry = new DirectoryEntry(new File(dir, names[i]), names[i], directory,
+            (flags[i] & FLAG_HIDDEN) != 0, GitIgnore.NONE, canonicalDir);
+        if ((flags[i] & FLAG_LINK) != 0) {
+          entry = entry.withLink(targets[i], DirectoryScanner.isRecursive(canonicalDir, targets[i]));
+        } else if (directory && canonicalDir != null) {
+          entry = entry.withLink(null, false);
+        }
+        entries[i] = entry;
+      }
+      return entries;
+    }
+  }
+}
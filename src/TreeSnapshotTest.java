@@ -0,0 +1,153 @@
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TreeSnapshotTest {
+
+  /**
+   * Sets a directory's last-modified time well before now, so its listing can be replayed.
+   */
+  private static void age(File dir) {
+    assertTrue(dir.setLastModified(System.currentTimeMillis() - 60_000));
+  }
+
+  private static String names(DirectoryEntry[] entries) {
+    StringBuilder names = new StringBuilder();
+    for (DirectoryEntry entry : entries) {
+      names.append(entry.getName()).append(entry.isDirectory() ? "/" : "").append(' ');
+    }
+    return names.toString().trim();
+  }
+
+  @Test
+  void testListRecordsSortedUnfilteredListing(@TempDir File tempDir) throws IOException {
+    File root = new File(tempDir, "root");
+    assertTrue(new File(root, "Sub").mkdirs());
+    new File(root, "b.txt").createNewFile();
+    TruffulaPrinterTest.createHiddenFile(root, ".hidden");
+
+    TreeSnapshot snapshot = TreeSnapshot.load(new File(tempDir, "missing.snapshot"), root);
+    DirectoryEntry[] entries = snapshot.list(root);
+
+    assertEquals(".hidden b.txt Sub/", names(entries));
+    assertTrue(entries[0].isHidden());
+    assertNull(snapshot.list(new File(root, "b.txt")));
+  }
+
+  @Test
+  void testUnchangedDirectoryIsReplayed(@TempDir File tempDir) throws IOException {
+    File root = new File(tempDir, "root");
+    File sub = new File(root, "sub");
+    assertTrue(sub.mkdirs());
+    new File(sub, "a.txt").createNewFile();
+    age(sub);
+    age(root);
+
+    File file = new File(tempDir, "tree.snapshot");
+    TreeSnapshot first = TreeSnapshot.load(file, root);
+    first.list(root);
+    first.list(sub);
+    first.save(file);
+
+    // Swap a.txt for a directory without the parent's time changing: only a replay still says a.txt
+    long lastModified = sub.lastModified();
+    assertTrue(new File(sub, "a.txt").delete());
+    assertTrue(new File(sub, "a.txt").mkdir());
+    assertTrue(sub.setLastModified(lastModified));
+
+    TreeSnapshot second = TreeSnapshot.load(file, root);
+    assertEquals("a.txt", names(second.list(sub)));
+
+    // Once the directory's time changes it is listed again
+    assertTrue(sub.setLastModified(lastModified - 5_000));
+    TreeSnapshot third = TreeSnapshot.load(file, root);
+    assertEquals("a.txt/", names(third.list(sub)));
+  }
+
+  @Test
+  void testRecentlyModifiedDirectoryIsNotReplayed(@TempDir File tempDir) throws IOException {
+    File root = new File(tempDir, "root");
+    assertTrue(root.mkdir());
+    new File(root, "a.txt").createNewFile();
+
+    File file = new File(tempDir, "tree.snapshot");
+    TreeSnapshot first = TreeSnapshot.load(file, root);
+    first.list(root);
+    first.save(file);
+
+    // Changed within the timestamp granularity of the first walk, with the time put back
+    long lastModified = root.lastModified();
+    new File(root, "b.txt").createNewFile();
+    assertTrue(root.setLastModified(lastModified));
+
+    assertEquals("a.txt b.txt", names(TreeSnapshot.load(file, root).list(root)));
+  }
+
+  @Test
+  void testSnapshotForOtherRootOrCorruptFileIsIgnored(@TempDir File tempDir) throws IOException {
+    File root = new File(tempDir, "root");
+    File other = new File(tempDir, "other");
+    assertTrue(root.mkdir());
+    assertTrue(other.mkdir());
+    new File(root, "a.txt").createNewFile();
+    age(root);
+
+    File file = new File(tempDir, "tree.snapshot");
+    TreeSnapshot first = TreeSnapshot.load(file, other);
+    first.list(other);
+    first.save(file);
+    assertEquals("a.txt", names(TreeSnapshot.load(file, root).list(root)));
+
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(new byte[] {1, 2, 3});
+    }
+    assertEquals("a.txt", names(TreeSnapshot.load(file, root).list(root)));
+    assertFalse(new File(tempDir, "tree.snapshot.tmp").exists());
+  }
+
+  @Test
+  void testReplayedLinksNeedNoLookups(@TempDir File tempDir) throws IOException {
+    // root/
+    //    real/
+    //    link -> real
+    File root = new File(tempDir, "root");
+    assertTrue(new File(root, "real").mkdirs());
+    try {
+      Files.createSymbolicLink(root.toPath().resolve("link"), Paths.get("real"));
+    } catch (UnsupportedOperationException | IOException e) {
+      Assumptions.assumeTrue(false, "Symbolic links are not supported: " + e);
+    }
+    age(root);
+    String rootPath = root.getCanonicalPath();
+    String target = new File(rootPath, "real").getPath();
+
+    File file = new File(tempDir, "tree.snapshot");
+    WalkStats cold = new WalkStats();
+    TreeSnapshot first = TreeSnapshot.load(file, root);
+    DirectoryEntry[] listed = first.list(root, rootPath, cold);
+    first.save(file);
+    assertEquals(2, cold.getPathLookups());
+    assertEquals(target, listed[0].getLinkTarget());
+
+    WalkStats replay = new WalkStats();
+    DirectoryEntry[] replayed = TreeSnapshot.load(file, root).list(root, rootPath, replay);
+    assertEquals(0, replay.getPathLookups());
+    assertEquals("link/ real/", names(replayed));
+    assertEquals(target, replayed[0].getLinkTarget());
+    assertFalse(replayed[0].isRecursiveLink());
+    assertTrue(replayed[1].isResolved());
+    assertNull(replayed[1].getLinkTarget());
+    assertEquals(target, replayed[1].getCanonicalPath());
+  }
+}
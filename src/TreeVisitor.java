@@ -0,0 +1,89 @@
+/**
+ * Receives the files and directories of a tree, in the order they are printed, from
+ * a TreeWalker.
+ * 
+ * Every directory, including the root, is announced by enterDirectory() before its
+ * contents and by exitDirectory() after them. A directory that is not listed, such as
+ * one at the depth limit, is entered and exited with nothing in between.
+ * 
+ * The depth is the number of levels below the root, which is at depth 0.
+ * 
+ * When the number of entries printed per directory is capped, omitted() is called
+ * after the listed contents of a directory that had more entries than the cap.
+ * 
+ * Renderers, such as TextRenderer and NdjsonWriter, and other consumers of the walk,
+ * such as TreeIndex.Recorder, implement this interface, so they all share one
+ * traversal. Visitors are called from a single thread.
+ */
+public interface TreeVisitor {
+
+  /**
+   * Called for a directory before its contents.
+   *
+   * @param dir   the directory
+   * @param depth the depth of the directory, 0 for the root
+   */
+  void enterDirectory(DirectoryEntry dir, int depth);
+
+  /**
+   * Called for a file.
+   *
+   * @param file  the file
+   * @param depth the depth of the file
+   */
+  void file(DirectoryEntry file, int depth);
+
+  /**
+   * Called for a directory after its contents.
+   *
+   * @param dir   the directory
+   * @param depth the depth of the directory, 0 for the root
+   */
+  void exitDirectory(DirectoryEntry dir, int depth);
+
+  /**
+   * Called after the listed contents of a directory when entries were left out because
+   * of the per-directory cap, and before exitDirectory(). Does nothing by default.
+   *
+   * @param dir   the directory
+   * @param count the number of entries left out
+   * @param depth the depth of the directory
+   */
+  default void omitted(DirectoryEntry dir, int count, int depth) {
+  }
+
+  /**
+   * Returns a visitor that passes every call to this visitor and then to the next one.
+   *
+   * @param next the visitor to call after this one
+   * @return the combined visitor
+   */
+  default TreeVisitor andThen(TreeVisitor next) {
+    TreeVisitor first = this;
+    return new TreeVisitor() {
+      @Override
+      public void enterDirectory(DirectoryEntry dir, int depth) {
+        first.enterDirectory(dir, depth);
+        next.enterDirectory(dir, depth);
+      }
+
+      @Override
+      public void file(DirectoryEntry file, int depth) {
+        first.file(file, depth);
+        next.file(file, depth);
+      }
+
+      @Override
+      public void exitDirectory(DirectoryEntry dir, int depth) {
+        first.exitDirectory(dir, depth);
+        next.exitDirectory(dir, depth);
+      }
+
+      @Override
+      public void omitted(DirectoryEntry dir, int count, int depth) {
+        first.omitted(dir, count, depth);
+        next.omitted(dir, count, depth);
+      }
+    };
+  }
+}
@@ -0,0 +1,639 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Walks a directory tree and reports it to a TreeVisitor, in the order the tree is
+ * printed: each directory is followed by its sorted contents.
+ *
+ * Listing, filtering and sorting are done by a DirectoryScanner. The walker decides
+ * which directories are listed, and how:
+ * - With a depth limit, directories at the limit are reported but never listed.
+ * - With one worker thread, the tree is walked depth-first on the calling thread, and
+ *   each entry is reported as soon as its directory has been listed. With prefetching,
+ *   the subdirectories about to be reached are listed ahead on virtual threads.
+ * - With a spill threshold, the single-threaded walk instead reads each listing as a
+ *   sorted stream from DirectoryScanner.scanSorted(), which sorts wide directories on
+ *   disk, so no listing longer than the threshold is held in memory. Prefetching is
+ *   then not used.
+ * - With more than one worker thread, sibling subtrees are listed and sorted
+ *   concurrently on a ForkJoinPool, then reported in order on the calling thread.
+ *   Symbolic links are not followed while the tree is listed concurrently. Once it is
+ *   listed, the links are offered to the LinkTracker in the order they are reported, and
+ *   those it accepts are listed then, so a parallel walk lists the same links as a
+ *   sequential one, whatever the timing of its threads.
+ * - When sizes are added up, the whole tree is listed first, so that every directory
+ *   is reported with the number of files and total size below it. Directories below
+ *   the depth limit are then listed too, for complete totals, but not reported.
+ * - With a cap on the entries per directory, only the entries that come first in sort
+ *   order are reported, followed by a count of the rest. A long listing is not sorted
+ *   in full: the first entries are selected from it. When sizes are added up, the
+ *   entries left out still count toward the totals.
+ * - Walks keep the directories being walked on an explicit stack rather than the call
+ *   stack, and a concurrently listed directory is added up by the last of its tasks to
+ *   finish rather than by a task waiting for them, so trees of any depth can be walked
+ *   without a larger thread stack.
+ * - Directories about to be listed are checked for being symbolic links first. Links
+ *   are reported with their targets, and listed as the symlink policy and a LinkTracker
+ *   allow, so a walk through links always ends. Directories that are not listed, such
+ *   as those at the depth limit, are not checked.
+ *
+ * A saved TreeIndex, or a tree held in memory as a CompactTree, can be reported the
+ * same way, without the file system.
+ */
+public class TreeWalker {
+  private final DirectoryScanner scanner;
+  private final boolean showHidden;
+  private final int maxDepth;
+  private final int maxEntries;
+  private final int parallelism;
+  private final int prefetch;
+  private final int spillThreshold;
+  private final boolean aggregate;
+  private final SymlinkPolicy symlinkPolicy;
+  private final WalkStats stats;
+
+  /**
+   * The links followed during the current walk of the file system.
+   */
+  private LinkTracker links;
+
+  /**
+   * Lists upcoming directories during a sequential walk, or null when prefetching is off.
+   */
+  private DirectoryPrefetcher prefetcher;
+
+  /**
+   * Constructs a TreeWalker that lists directories with the given scanner, and takes its
+   * depth limit, threading and size settings from the options.
+   *
+   * @param options the configuration options for the walk
+   * @param scanner the scanner to list directories with
+   */
+  public TreeWalker(TruffulaOptions options, DirectoryScanner scanner) {
+    this.scanner = scanner;
+    this.showHidden = options.isShowHidden();
+    this.maxDepth = options.getMaxDepth();
+    this.maxEntries = options.getMaxEntries();
+    this.parallelism = options.getParallelism();
+    this.prefetch = options.getPrefetch();
+    this.spillThreshold = options.getSpillThreshold();
+    this.aggregate = options.isAggregate();
+    this.symlinkPolicy = options.getSymlinkPolicy();
+    this.stats = scanner != null ? scanner.getStats() : null;
+  }
+
+  /**
+   * Walks the tree below a root directory, starting with the root itself at depth 0.
+   *
+   * @param root the root directory
+   * @param visitor the visitor to report the tree to
+   */
+  public void walk(File root, TreeVisitor visitor) {
+    DirectoryEntry entry = new DirectoryEntry(root, root.getName(), true, false);
+    links = new LinkTracker(symlinkPolicy, root);
+    if (aggregate || parallelism > 1) {
+      ForkJoinPool pool = new ForkJoinPool(parallelism);
+      try {
+        Node tree = new Node(entry);
+        pool.invoke(new ListTask(null, tree, 0, false));
+        stitch(pool, tree, 0);
+        report(tree, 0, visitor);
+      } finally {
+        pool.shutdown();
+      }
+    } else if (prefetch > 0 && spillThreshold == 0) {
+      prefetcher = new DirectoryPrefetcher(scanner, links, prefetch);
+      try {
+        walk(entry, 0, visitor, true);
+      } finally {
+        prefetcher.close();
+        prefetcher = null;
+      }
+    } else {
+      walk(entry, 0, visitor, true);
+    }
+  }
+
+  /**
+   * Walks the contents of a directory on the calling thread, without reporting the
+   * directory itself.
+   *
+   * @param dir the directory whose contents are walked
+   * @param depth the depth of dir
+   * @param visitor the visitor to report the contents to
+   */
+  public void walkContents(DirectoryEntry dir, int depth, TreeVisitor visitor) {
+    links = new LinkTracker(symlinkPolicy, dir.getFile());
+    walk(dir, depth, visitor, false);
+  }
+
+  /**
+   * Walks a directory and everything below it on the calling thread.
+   *
+   * The directories being walked are kept on an explicit stack of cursors, one per
+   * level, rather than on the call stack, so the depth of the tree is not limited by
+   * the thread's stack size. A cursor is entered when its directory is reached, and
+   * popped once its last entry has been reported, in the same order a recursive walk
+   * would report them. The cursors are reused from one directory to the next.
+   *
+   * @param dir the directory to walk
+   * @param depth the depth of dir
+   * @param visitor the visitor to report the tree to
+   * @param report whether dir itself is reported, or only its contents
+   */
+  private void walk(DirectoryEntry dir, int depth, TreeVisitor visitor, boolean report) {
+    if (report) {
+      visitor.enterDirectory(dir, depth);
+      if (!isListed(depth) || !links.isListed(dir)) {
+        visitor.exitDirectory(dir, depth);
+        return;
+      }
+    }
+
+    Cursor[] stack = new Cursor[16];
+    int top = 0;
+    stack[0] = new Cursor();
+    stack[0].open(dir, depth);
+    try {
+      while (top >= 0) {
+        Cursor cursor = stack[top];
+        DirectoryEntry entry = cursor.next();
+        if (entry == null) {
+          cursor.close();
+          if (cursor.omitted > 0) {
+            visitor.omitted(cursor.dir, cursor.omitted, cursor.depth);
+          }
+          if (top > 0 || report) {
+            visitor.exitDirectory(cursor.dir, cursor.depth);
+          }
+          top--;
+        } else if (!entry.isDirectory()) {
+          visitor.file(entry, cursor.depth + 1);
+        } else {
+          int childDepth = cursor.depth + 1;
+          boolean listed = false;
+          if (isListed(childDepth)) {
+            // Only directories about to be listed are checked for being links
+            entry = prefetcher != null ? prefetcher.resolveLink(entry) : scanner.resolveLink(entry);
+            listed = links.isListed(entry);
+            if (!listed && prefetcher != null) {
+              prefetcher.skip(entry);
+            }
+          }
+          visitor.enterDirectory(entry, childDepth);
+          if (listed) {
+            if (++top == stack.length) {
+              stack = Arrays.copyOf(stack, 2 * stack.length);
+            }
+            if (stack[top] == null) {
+              stack[top] = new Cursor();
+            }
+            stack[top].open(entry, childDepth);
+          } else {
+            visitor.exitDirectory(entry, childDepth);
+          }
+        }
+      }
+    } finally {
+      // Listings sorted on disk are deleted if the walk ends early
+      for (; top >= 0; top--) {
+        stack[top].close();
+      }
+    }
+  }
+
+  /**
+   * A directory being walked: its listing, the next entry to report and the number of
+   * entries left out by the per-directory cap.
+   *
+   * A listing is either held in memory, or, with a spill threshold, read one entry at a
+   * time as the scanner merges the names it sorted on disk.
+   */
+  private final class Cursor {
+    private DirectoryEntry dir;
+    private int depth;
+    private DirectoryEntry[] entries;
+    private int next;
+    private DirectoryScanner.SortedListing listing;
+    private int shown;
+    private int omitted;
+
+    /**
+     * Lists a directory and points the cursor at its first entry.
+     */
+    void open(DirectoryEntry dir, int depth) {
+      this.dir = dir;
+      this.depth = depth;
+      this.entries = null;
+      this.next = 0;
+      this.listing = null;
+      this.shown = 0;
+      this.omitted = 0;
+
+      if (spillThreshold > 0) {
+        listing = scanner.listSorted(dir, spillThreshold);
+        return;
+      }
+
+      DirectoryEntry[] listed = prefetcher != null ? prefetcher.scan(dir)
+          : maxEntries > 0 ? scanner.scanUnsorted(dir)
+          : scanner.scan(dir);
+      if (listed == null) return;
+
+      if (maxEntries > 0) {
+        omitted = Math.max(0, listed.length - maxEntries);
+        // Prefetched listings are already sorted
+        listed = prefetcher != null ? Arrays.copyOf(listed, listed.length - omitted) : scanner.sortFirst(listed, maxEntries);
+      }
+      if (prefetcher != null && isListed(depth + 1)) {
+        prefetcher.prefetch(listed);
+      }
+      entries = listed;
+    }
+
+    /**
+     * Returns the next entry to report, or null once every entry has been reported.
+     */
+    DirectoryEntry next() {
+      if (entries != null) {
+        return next < entries.length ? entries[next++] : null;
+      }
+      if (listing == null) {
+        return null;
+      }
+      if (maxEntries > 0 && shown == maxEntries) {
+        while (listing.hasNext()) {
+          listing.next();
+          omitted++;
+        }
+        return null;
+      }
+      if (!listing.hasNext()) {
+        return null;
+      }
+      shown++;
+      return listing.next();
+    }
+
+    /**
+     * Closes the listing and lets go of the entries.
+     */
+    void close() {
+      if (listing != null) {
+        listing.close();
+        listing = null;
+      }
+      entries = null;
+    }
+  }
+
+  /**
+   * Reports a tree saved as a TreeIndex, applying the hidden file setting and the depth
+   * limit as they would be applied to the directories themselves. The entries have no file.
+   *
+   * @param index the saved tree
+   * @param visitor the visitor to report the tree to
+   */
+  public void walk(TreeIndex index, TreeVisitor visitor) {
+    // The directories being reported, each with the range of its children still to
+    // report, on an explicit stack like in the other walks
+    DirectoryEntry[] dirs = new DirectoryEntry[16];
+    int[] next = new int[16];
+    int[] end = new int[16];
+    int[] shown = new int[16];
+    int[] omitted = new int[16];
+    int top = 0;
+    dirs[0] = new DirectoryEntry(index.getName(0), true, index.isHidden(0));
+    next[0] = index.getFirstChild(0);
+    end[0] = isListed(0) ? next[0] + index.getChildCount(0) : next[0];
+    visitor.enterDirectory(dirs[0], 0);
+    while (top >= 0) {
+      if (next[top] == end[top]) {
+        if (omitted[top] > 0) {
+          visitor.omitted(dirs[top], omitted[top], top);
+        }
+        visitor.exitDirectory(dirs[top], top);
+        dirs[top] = null;
+        top--;
+        continue;
+      }
+
+      int child = next[top]++;
+      if (!showHidden && index.isHidden(child)) continue;
+      if (maxEntries > 0 && shown[top] == maxEntries) {
+        omitted[top]++;
+        continue;
+      }
+      shown[top]++;
+      if (!index.isDirectory(child)) {
+        visitor.file(new DirectoryEntry(index.getName(child), false, index.isHidden(child)), top + 1);
+        continue;
+      }
+      if (++top == dirs.length) {
+        dirs = Arrays.copyOf(dirs, 2 * top);
+        next = Arrays.copyOf(next, 2 * top);
+        end = Arrays.copyOf(end, 2 * top);
+        shown = Arrays.copyOf(shown, 2 * top);
+        omitted = Arrays.copyOf(omitted, 2 * top);
+      }
+      dirs[top] = new DirectoryEntry(index.getName(child), true, index.isHidden(child));
+      next[top] = index.getFirstChild(child);
+      end[top] = isListed(top) ? next[top] + index.getChildCount(child) : next[top];
+      shown[top] = 0;
+      omitted[top] = 0;
+      visitor.enterDirectory(dirs[top], top);
+    }
+  }
+
+  /**
+   * Reports a tree held as a CompactTree, applying the hidden file setting, the depth
+   * limit and the cap on entries per directory as they would be applied to the
+   * directories themselves. The entries have no file, and carry the totals recorded
+   * with them.
+   *
+   * @param tree the tree
+   * @param visitor the visitor to report the tree to
+   */
+  public void walk(CompactTree tree, TreeVisitor visitor) {
+    // The directories being reported, each with its next child to report
+    DirectoryEntry[] dirs = new DirectoryEntry[16];
+    int[] next = new int[16];
+    int[] shown = new int[16];
+    int[] omitted = new int[16];
+    int top = 0;
+    dirs[0] = tree.getEntry(0);
+    next[0] = isListed(0) ? tree.getFirstChild(0) : CompactTree.NONE;
+    visitor.enterDirectory(dirs[0], 0);
+    while (top >= 0) {
+      if (next[top] == CompactTree.NONE) {
+        if (omitted[top] > 0) {
+          visitor.omitted(dirs[top], omitted[top], top);
+        }
+        visitor.exitDirectory(dirs[top], top);
+        dirs[top] = null;
+        top--;
+        continue;
+      }
+
+      int child = next[top];
+      next[top] = tree.getNextSibling(child);
+      if (!showHidden && tree.isHidden(child)) continue;
+      if (maxEntries > 0 && shown[top] == maxEntries) {
+        omitted[top]++;
+        continue;
+      }
+      shown[top]++;
+      if (!tree.isDirectory(child)) {
+        visitor.file(tree.getEntry(child), top + 1);
+        continue;
+      }
+      if (++top == dirs.length) {
+        dirs = Arrays.copyOf(dirs, 2 * top);
+        next = Arrays.copyOf(next, 2 * top);
+        shown = Arrays.copyOf(shown, 2 * top);
+        omitted = Arrays.copyOf(omitted, 2 * top);
+      }
+      dirs[top] = tree.getEntry(child);
+      next[top] = isListed(top) ? tree.getFirstChild(child) : CompactTree.NONE;
+      shown[top] = 0;
+      omitted[top] = 0;
+      visitor.enterDirectory(dirs[top], top);
+    }
+  }
+
+  /**
+   * Indicates whether a directory at the given depth is listed. Directories at the
+   * depth limit are reported but not listed.
+   *
+   * @param depth the depth of the directory
+   * @return true if the directory's contents are within the depth limit
+   */
+  private boolean isListed(int depth) {
+    return maxDepth == 0 || depth < maxDepth;
+  }
+
+  /**
+   * Reports a listed subtree, with totals when sizes are added up. The directories being
+   * reported are kept on an explicit stack, like in the sequential walk.
+   */
+  private void report(Node root, int depth, TreeVisitor visitor) {
+    Node[] nodes = new Node[16];
+    DirectoryEntry[] dirs = new DirectoryEntry[16];
+    int[] positions = new int[16];
+    int top = 0;
+    nodes[0] = root;
+    dirs[0] = directory(root);
+    visitor.enterDirectory(dirs[0], depth);
+    while (top >= 0) {
+      Node node = nodes[top];
+      if (positions[top] == node.shown) {
+        if (node.omitted > 0) {
+          visitor.omitted(dirs[top], node.omitted, depth + top);
+        }
+        visitor.exitDirectory(dirs[top], depth + top);
+        nodes[top] = null;
+        dirs[top] = null;
+        top--;
+        continue;
+      }
+
+      Node child = node.children[positions[top]++];
+      if (!child.entry.isDirectory()) {
+        visitor.file(aggregate ? child.entry.withTotals(-1, child.bytes) : child.entry, depth + top + 1);
+        continue;
+      }
+      if (++top == nodes.length) {
+        nodes = Arrays.copyOf(nodes, 2 * top);
+        dirs = Arrays.copyOf(dirs, 2 * top);
+        positions = Arrays.copyOf(positions, 2 * top);
+      }
+      nodes[top] = child;
+      dirs[top] = directory(child);
+      positions[top] = 0;
+      visitor.enterDirectory(dirs[top], depth + top);
+    }
+  }
+
+  private DirectoryEntry directory(Node node) {
+    return aggregate ? node.entry.withTotals(node.files, node.bytes) : node.entry;
+  }
+
+  /**
+   * Lists the links left out of a listed tree, visiting the tree in the order it is
+   * reported so that the LinkTracker accepts the same links as in a sequential walk. Each
+   * accepted link is listed concurrently like the rest of the tree, and its totals are
+   * added to the directories above it. Only subtrees that hold such links are visited.
+   */
+  private void stitch(ForkJoinPool pool, Node root, int depth) {
+    if (!root.hasPending) return;
+    Node[] nodes = new Node[16];
+    int[] positions = new int[16];
+    int top = 0;
+    nodes[0] = root;
+    while (top >= 0) {
+      Node node = nodes[top];
+      if (positions[top] == node.children.length) {
+        nodes[top] = null;
+        top--;
+        continue;
+      }
+
+      Node child = node.children[positions[top]++];
+      if (child.pending) {
+        child.pending = false;
+        if (links.isListed(child.entry)) {
+          pool.invoke(new ListTask(null, child, depth + top + 1, true));
+          for (int i = 0; i <= top; i++) {
+            nodes[i].files += child.files;
+            nodes[i].bytes += child.bytes;
+          }
+        }
+      }
+      if (child.hasPending) {
+        if (++top == nodes.length) {
+          nodes = Arrays.copyOf(nodes, 2 * top);
+          positions = Arrays.copyOf(positions, 2 * top);
+        }
+        nodes[top] = child;
+        positions[top] = 0;
+      }
+    }
+  }
+
+  /**
+   * A file, or a directory with its listed contents, the number of them that are
+   * reported and the number left out, and the number of files and bytes below it when
+   * sizes are added up.
+   *
+   * A link that may be followed is first left unlisted and pending. The contents of a
+   * directory that are not reported are only kept while a pending link is below it.
+   */
+  private static final class Node {
+    private static final Node[] NONE = new Node[0];
+
+    private DirectoryEntry entry;
+    private Node[] children = NONE;
+    private int shown;
+    private int omitted;
+    private long files;
+    private long bytes;
+    private boolean pending;
+    private boolean hasPending;
+
+    Node(DirectoryEntry entry) {
+      this.entry = entry;
+    }
+  }
+
+  /**
+   * Lists one directory into its node, forking a task for every subdirectory so that
+   * sibling subtrees are listed and sorted concurrently. Links below the directory are
+   * left pending, for stitch() to list.
+   *
+   * A task does not wait for its subtasks. Each one completes its parent once it and
+   * everything below it are listed, and the parent then adds up its children, so no
+   * thread holds a stack frame per level and trees of any depth can be listed.
+   */
+  @SuppressWarnings("serial") // Tasks are never serialized
+  private final class ListTask extends CountedCompleter<Void> {
+    private final Node node;
+    private final int depth;
+    private final boolean follow;
+
+    /**
+     * The listed children, before the ones that are not reported are dropped.
+     */
+    private Node[] children = Node.NONE;
+    private int omitted;
+
+    /**
+     * @param parent the task of the directory above, or null for the first directory listed
+     * @param node   the directory's node, which is filled in
+     * @param follow whether the directory is a link the LinkTracker accepted, which is listed
+     */
+    ListTask(ListTask parent, Node node, int depth, boolean follow) {
+      super(parent);
+      this.node = node;
+      this.depth = depth;
+      this.follow = follow;
+    }
+
+    @Override
+    public void compute() {
+      DirectoryEntry dir = scanner.resolveLink(node.entry);
+      node.entry = dir;
+      if (dir.getLinkTarget() != null && !follow) {
+        node.pending = symlinkPolicy == SymlinkPolicy.FOLLOW && !dir.isRecursiveLink();
+        tryComplete();
+        return;
+      }
+      DirectoryEntry[] entries = maxEntries > 0 ? scanner.scanUnsorted(dir) : scanner.scan(dir);
+      if (entries == null) {
+        tryComplete();
+        return;
+      }
+
+      if (maxEntries > 0) {
+        omitted = Math.max(0, entries.length - maxEntries);
+        // The entries left out still count toward the totals
+        entries = scanner.sortFirst(entries, aggregate ? entries.length : maxEntries);
+      }
+
+      boolean descend = isListed(depth + 1);
+      children = new Node[entries.length];
+      List<ListTask> subtasks = new ArrayList<>();
+      int sized = 0;
+      for (int i = 0; i < entries.length; i++) {
+        DirectoryEntry entry = entries[i];
+        children[i] = new Node(entry);
+        if (entry.isDirectory() && (descend || aggregate)) {
+          subtasks.add(new ListTask(this, children[i], depth + 1, false));
+        } else if (aggregate && !entry.isDirectory()) {
+          children[i].bytes = entry.getFile().length();
+          sized++;
+        }
+      }
+      if (stats != null) {
+        stats.recordStatCalls(sized);
+      }
+      setPendingCount(subtasks.size());
+      for (ListTask subtask : subtasks) {
+        subtask.fork();
+      }
+      tryComplete();
+    }
+
+    /**
+     * Adds up the listed children once all of them are complete.
+     */
+    @Override
+    public void onCompletion(CountedCompleter<?> caller) {
+      for (Node child : children) {
+        if (child.entry.isDirectory()) {
+          node.files += child.files;
+          node.hasPending |= child.pending || child.hasPending;
+        } else if (aggregate) {
+          node.files++;
+        }
+        node.bytes += child.bytes;
+      }
+
+      // Below the depth limit only the totals are kept
+      if (isListed(depth)) {
+        // When adding up sizes, the entries left out were listed for their totals only
+        node.shown = aggregate && omitted > 0 ? maxEntries : children.length;
+        node.omitted = omitted;
+      }
+      if (node.hasPending) {
+        node.children = children;
+      } else if (node.shown > 0) {
+        node.children = node.shown < children.length ? Arrays.copyOf(children, node.shown) : children;
+      }
+      children = null;
+    }
+  }
+}
@@ -0,0 +1,352 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TreeWalkerTest {
+
+  /**
+   * Records every call as a short string, such as "+dir@1", "file@2" and "-dir@1".
+   */
+  private static class EventLog implements TreeVisitor {
+    final List<String> events = new ArrayList<>();
+
+    @Override
+    public void enterDirectory(DirectoryEntry dir, int depth) {
+      events.add("+" + dir.getName() + "@" + depth + totals(dir));
+    }
+
+    @Override
+    public void file(DirectoryEntry file, int depth) {
+      events.add(file.getName() + "@" + depth + totals(file));
+    }
+
+    @Override
+    public void exitDirectory(DirectoryEntry dir, int depth) {
+      events.add("-" + dir.getName() + "@" + depth);
+    }
+
+    @Override
+    public void omitted(DirectoryEntry dir, int count, int depth) {
+      events.add("..." + count + "@" + depth);
+    }
+
+    private static String totals(DirectoryEntry entry) {
+      if (entry.getSize() < 0) return "";
+      return entry.isDirectory() ? "[" + entry.getFileCount() + "," + entry.getSize() + "]" : "[" + entry.getSize() + "]";
+    }
+  }
+
+  private static File createTree(File tempDir) throws IOException {
+    // root/
+    //    b.txt      (2 bytes)
+    //    Sub/
+    //       deep/
+    //          c.txt (3 bytes)
+    File root = new File(tempDir, "root");
+    assertTrue(new File(root, "Sub/deep").mkdirs());
+    try (FileWriter writer = new FileWriter(new File(root, "b.txt"))) {
+      writer.write("ab");
+    }
+    try (FileWriter writer = new FileWriter(new File(root, "Sub/deep/c.txt"))) {
+      writer.write("abc");
+    }
+    return root;
+  }
+
+  private static List<String> walk(TruffulaOptions options) {
+    EventLog log = new EventLog();
+    new TreeWalker(options, new DirectoryScanner(options.isShowHidden())).walk(options.getRoot(), log);
+    return log.events;
+  }
+
+  @Test
+  void testReportsEntriesInPrintedOrder(@TempDir File tempDir) throws IOException {
+    File root = createTree(tempDir);
+    List<String> expected = List.of("+root@0", "b.txt@1", "+Sub@1", "+deep@2", "c.txt@3", "-deep@2", "-Sub@1", "-root@0");
+
+    for (int workers : new int[] {1, 3}) {
+      for (int prefetch : new int[] {0, 2}) {
+        TruffulaOptions options = new TruffulaOptions(root, false, false);
+        options.setParallelism(workers);
+        options.setPrefetch(prefetch);
+        assertEquals(expected, walk(options));
+      }
+    }
+  }
+
+  @Test
+  void testDepthLimitEntersButDoesNotListDirectories(@TempDir File tempDir) throws IOException {
+    TruffulaOptions options = new TruffulaOptions(createTree(tempDir), false, false);
+    options.setMaxDepth(1);
+
+    assertEquals(List.of("+root@0", "b.txt@1", "+Sub@1", "-Sub@1", "-root@0"), walk(options));
+  }
+
+  @Test
+  void testAggregateReportsTotalsBelowDepthLimit(@TempDir File tempDir) throws IOException {
+    TruffulaOptions options = new TruffulaOptions(createTree(tempDir), false, false);
+    options.setMaxDepth(1);
+    options.setAggregate(true);
+
+    assertEquals(List.of("+root@0[2,5]", "b.txt@1[2]", "+Sub@1[1,3]", "-Sub@1", "-root@0"), walk(options));
+  }
+
+  @Test
+  void testWalksSavedIndex(@TempDir File tempDir) throws IOException {
+    File root = createTree(tempDir);
+    TruffulaPrinterTest.createHiddenFile(root, ".hidden");
+
+    TreeIndex.Recorder recorder = new TreeIndex.Recorder();
+    TruffulaOptions options = new TruffulaOptions(root, true, false);
+    new TreeWalker(options, new DirectoryScanner(true)).walk(root, recorder);
+    File file = new File(tempDir, "tree.index");
+    recorder.write(file);
+
+    EventLog log = new EventLog();
+    new TreeWalker(new TruffulaOptions(root, false, false), null).walk(TreeIndex.read(file), log);
+    assertEquals(walk(new TruffulaOptions(root, false, false)), log.events);
+  }
+
+  @Test
+  void testCapsEntriesPerDirectory(@TempDir File tempDir) throws IOException {
+    // wide/
+    //    a.txt .. e.txt (1 byte each)
+    //    F/
+    //       g.txt
+    File root = new File(tempDir, "wide");
+    assertTrue(new File(root, "F").mkdirs());
+    for (String name : new String[] {"e.txt", "c.txt", "a.txt", "d.txt", "b.txt", "F/g.txt"}) {
+      try (FileWriter writer = new FileWriter(new File(root, name))) {
+        writer.write("x");
+      }
+    }
+    List<String> expected = List.of("+wide@0", "a.txt@1", "b.txt@1", "...4@0", "-wide@0");
+
+    for (int workers : new int[] {1, 3}) {
+      for (int prefetch : new int[] {0, 2}) {
+        TruffulaOptions options = new TruffulaOptions(root, false, false);
+        options.setMaxEntries(2);
+        options.setParallelism(workers);
+        options.setPrefetch(prefetch);
+        assertEquals(expected, walk(options));
+      }
+    }
+
+    // Entries left out still count toward the totals
+    TruffulaOptions sizes = new TruffulaOptions(root, false, false);
+    sizes.setMaxEntries(5);
+    sizes.setAggregate(true);
+    assertEquals(List.of("+wide@0[6,6]", "a.txt@1[1]", "b.txt@1[1]", "c.txt@1[1]", "d.txt@1[1]", "e.txt@1[1]", "...1@0",
+        "-wide@0"), walk(sizes));
+
+    // A saved index is capped the same way
+    TreeIndex.Recorder recorder = new TreeIndex.Recorder();
+    TruffulaOptions all = new TruffulaOptions(root, false, false);
+    new TreeWalker(all, new DirectoryScanner(false)).walk(root, recorder);
+    File file = new File(tempDir, "wide.index");
+    recorder.write(file);
+    EventLog log = new EventLog();
+    TruffulaOptions capped = new TruffulaOptions(root, false, false);
+    capped.setMaxEntries(2);
+    new TreeWalker(capped, null).walk(TreeIndex.read(file), log);
+    assertEquals(expected, log.events);
+  }
+
+  @Test
+  void testWalksDeepTreesWithoutRecursion() throws InterruptedException {
+    // 0/
+    //    1/
+    //       ...
+    //          100000/
+    //    f
+    int levels = 100_000;
+    DirectoryScanner deep = new DirectoryScanner(false) {
+      @Override
+      public DirectoryEntry[] scan(DirectoryEntry dir) {
+        int level = Integer.parseInt(dir.getName());
+        if (level == levels) {
+          return new DirectoryEntry[0];
+        }
+        return new DirectoryEntry[] {new DirectoryEntry(String.valueOf(level + 1), true, false),
+            new DirectoryEntry("f", false, false)};
+      }
+
+      @Override
+      public SortedListing listSorted(DirectoryEntry dir, int runSize) {
+        return new SortedListing(scan(dir));
+      }
+    };
+    int[] counts = new int[4];
+    TreeVisitor counter = new TreeVisitor() {
+      @Override
+      public void enterDirectory(DirectoryEntry dir, int depth) {
+        counts[0]++;
+        counts[3] = Math.max(counts[3], depth);
+      }
+
+      @Override
+      public void file(DirectoryEntry file, int depth) {
+        counts[1]++;
+      }
+
+      @Override
+      public void exitDirectory(DirectoryEntry dir, int depth) {
+        counts[2]++;
+      }
+    };
+
+    for (int spill : new int[] {0, 10}) {
+      Arrays.fill(counts, 0);
+      TruffulaOptions options = new TruffulaOptions(new File("."), false, false);
+      options.setSpillThreshold(spill);
+      // A small stack, which a recursive walk would overflow
+      Throwable[] failure = new Throwable[1];
+      Thread walker = new Thread(null, () -> {
+        try {
+          new TreeWalker(options, deep).walkContents(new DirectoryEntry("0", true, false), 0, counter);
+        } catch (Throwable e) {
+          failure[0] = e;
+        }
+      }, "deep-walk", 256 * 1024);
+      walker.start();
+      walker.join();
+
+      assertNull(failure[0]);
+      assertEquals(levels, counts[0]);
+      assertEquals(levels, counts[1]);
+      assertEquals(levels, counts[2]);
+      assertEquals(levels, counts[3]);
+    }
+  }
+
+  @Test
+  void testListsDeepTreesConcurrentlyWithoutRecursion() throws InterruptedException {
+    // The same chain as above, listed by ForkJoin tasks when adding up sizes or
+    // listing in parallel
+    int levels = 100_000;
+    DirectoryScanner deep = new DirectoryScanner(false) {
+      @Override
+      public DirectoryEntry[] scan(DirectoryEntry dir) {
+        int level = Integer.parseInt(dir.getName());
+        if (level == levels) {
+          return new DirectoryEntry[0];
+        }
+        return new DirectoryEntry[] {new DirectoryEntry(String.valueOf(level + 1), true, false),
+            new DirectoryEntry(new File("f"), "f", false, false)};
+      }
+    };
+    long[] counts = new long[5];
+    TreeVisitor counter = new TreeVisitor() {
+      @Override
+      public void enterDirectory(DirectoryEntry dir, int depth) {
+        if (depth == 0) {
+          counts[4] = dir.getFileCount();
+        }
+        counts[0]++;
+        counts[3] = Math.max(counts[3], depth);
+      }
+
+      @Override
+      public void file(DirectoryEntry file, int depth) {
+        counts[1]++;
+      }
+
+      @Override
+      public void exitDirectory(DirectoryEntry dir, int depth) {
+        counts[2]++;
+      }
+    };
+
+    for (boolean aggregate : new boolean[] {true, false}) {
+      Arrays.fill(counts, 0);
+      TruffulaOptions options = new TruffulaOptions(new File("."), false, false);
+      options.setAggregate(aggregate);
+      options.setParallelism(aggregate ? 1 : 2);
+      Throwable[] failure = new Throwable[1];
+      Thread walker = new Thread(null, () -> {
+        try {
+          new TreeWalker(options, deep).walk(new File("0"), counter);
+        } catch (Throwable e) {
+          failure[0] = e;
+        }
+      }, "deep-walk", 256 * 1024);
+      walker.start();
+      walker.join();
+
+      assertNull(failure[0]);
+      assertEquals(levels + 1, counts[0]);
+      assertEquals(levels, counts[1]);
+      assertEquals(levels + 1, counts[2]);
+      assertEquals(levels, counts[3]);
+      assertEquals(aggregate ? levels : -1, counts[4]);
+    }
+  }
+
+  @Test
+  void testReportsDeepSavedTreesWithoutRecursion(@TempDir File tempDir) throws InterruptedException {
+    // The same chain as above, recorded, saved as an index and read back
+    int levels = 100_000;
+    int[] counts = new int[4];
+    TreeVisitor counter = new TreeVisitor() {
+      @Override
+      public void enterDirectory(DirectoryEntry dir, int depth) {
+        counts[0]++;
+        counts[3] = Math.max(counts[3], depth);
+      }
+
+      @Override
+      public void file(DirectoryEntry file, int depth) {
+        counts[1]++;
+      }
+
+      @Override
+      public void exitDirectory(DirectoryEntry dir, int depth) {
+        counts[2]++;
+      }
+    };
+
+    Throwable[] failure = new Throwable[1];
+    Thread walker = new Thread(null, () -> {
+      try {
+        CompactTree.Builder builder = new CompactTree.Builder();
+        TreeIndex.Recorder recorder = new TreeIndex.Recorder();
+        TreeVisitor recording = builder.andThen(recorder);
+        for (int level = 0; level <= levels; level++) {
+          recording.enterDirectory(new DirectoryEntry(String.valueOf(level), true, false), level);
+        }
+        for (int level = levels; level >= 0; level--) {
+          if (level < levels) {
+            recording.file(new DirectoryEntry("f", false, false), level + 1);
+          }
+          recording.exitDirectory(new DirectoryEntry(String.valueOf(level), true, false), level);
+        }
+        File file = new File(tempDir, "tree.index");
+        recorder.write(file);
+
+        TreeWalker treeWalker = new TreeWalker(new TruffulaOptions(new File("."), false, false), null);
+        treeWalker.walk(builder.build(), counter);
+        treeWalker.walk(TreeIndex.read(file), counter);
+      } catch (Throwable e) {
+        failure[0] = e;
+      }
+    }, "deep-walk", 256 * 1024);
+    walker.start();
+    walker.join();
+
+    assertNull(failure[0]);
+    assertEquals(2 * (levels + 1), counts[0]);
+    assertEquals(2 * levels, counts[1]);
+    assertEquals(2 * (levels + 1), counts[2]);
+    assertEquals(levels, counts[3]);
+  }
+}
@@ -0,0 +1,298 @@
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps a directory tree in memory and prints it again whenever it changes.
+ *
+ * The tree is listed once when watching starts. After that, every poll asks each
+ * watched directory for its last-modified time, which changes whenever a child is
+ * added, removed or renamed, and lists only the directories whose time moved.
+ * Directories that disappear are dropped along with everything below them, and new
+ * directories are listed as they appear.
+ *
+ * Changes are debounced: once a poll finds changes, the tree is printed at the first
+ * following poll that finds none, so a burst of changes is printed once. A tree that
+ * keeps changing is still printed every MAX_DEFERRED_POLLS polls. Printing walks the
+ * tree in memory through a TruffulaPrinter, without reading the file system.
+ *
+ * The project does not use java.nio, so changes are found by polling rather than
+ * through a WatchService. A file whose contents change does not change the printed
+ * tree, so only directories are polled.
+ *
+ * Symbolic links to directories are watched as the symlink policy allows, so each
+ * linked directory is watched at most once. Whenever the tree changes, which links are
+ * watched is decided again with a new LinkTracker, in the order the tree is printed, so
+ * a link that is removed and added again, or whose target is recreated, is watched
+ * again, and the watched links are always those a fresh start would watch.
+ *
+ * A TreeWatcher is used from a single thread.
+ */
+public class TreeWatcher implements Runnable {
+  /**
+   * The most polls that may find changes in a row before the tree is printed anyway.
+   */
+  public static final int MAX_DEFERRED_POLLS = 10;
+
+  private final TruffulaOptions options;
+  private final PrintStream out;
+  private final DirectoryScanner scanner;
+  private final TruffulaPrinter printer;
+
+  /**
+   * The listed directories, by file.
+   */
+  private final Map<File, WatchedDirectory> directories = new HashMap<>();
+
+  /**
+   * The number of polls in a row that found changes that have not been printed.
+   */
+  private int deferredPolls = 0;
+
+  /**
+   * Constructs a TreeWatcher for the root of the given options, printing to the given stream.
+   *
+   * @param options the configuration options for listing and printing the tree
+   * @param out the output stream to print to
+   */
+  public TreeWatcher(TruffulaOptions options, PrintStream out) {
+    this.options = options;
+    this.out = out;
+    this.scanner = new DirectoryScanner(options.isShowHidden(),
+        new NameFilter(options.getIncludePatterns(), options.getExcludePatterns()), options.isUseGitIgnore(), null);
+    this.printer = new TruffulaPrinter(options, out, new MemoryScanner(options.isShowHidden()));
+  }
+
+  /**
+   * Lists the whole tree and prints it.
+   */
+  public void start() {
+    directories.clear();
+    File root = options.getRoot();
+    WatchedDirectory watched = list(new DirectoryEntry(root, root.getName(), true, false), 0);
+    if (watched != null) {
+      directories.put(root, watched);
+      watchListed();
+    }
+    printer.printTree();
+  }
+
+  /**
+   * Lists the directories that changed since the last poll, and prints the tree if
+   * a burst of changes has ended.
+   *
+   * @return true if the tree was printed
+   */
+  public boolean poll() {
+    boolean changed = refresh();
+    if (changed && ++deferredPolls < MAX_DEFERRED_POLLS) {
+      return false;
+    }
+    if (!changed && deferredPolls == 0) {
+      return false;
+    }
+
+    deferredPolls = 0;
+    out.println();
+    printer.printTree();
+    return true;
+  }
+
+  /**
+   * Prints the tree, then polls it every watch interval until the thread is interrupted.
+   */
+  @Override
+  public void run() {
+    start();
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        Thread.sleep(options.getWatchInterval());
+        poll();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Returns the number of directories whose listing is held in memory.
+   *
+   * @return the number of watched directories
+   */
+  public int getWatchedDirectoryCount() {
+    return directories.size();
+  }
+
+  /**
+   * Lists every watched directory whose last-modified time changed.
+   *
+   * @return true if any directory changed
+   */
+  private boolean refresh() {
+    boolean changed = false;
+    for (WatchedDirectory dir : new ArrayList<>(directories.values())) {
+      // Skip directories dropped earlier in this pass
+      if (directories.get(dir.entry.getFile()) != dir) continue;
+      if (dir.entry.getFile().lastModified() == dir.lastModified) continue;
+
+      changed = true;
+      WatchedDirectory updated = list(dir.entry, dir.depth);
+      Set<File> kept = new HashSet<>();
+      if (updated != null) {
+        directories.put(dir.entry.getFile(), updated);
+        for (DirectoryEntry child : updated.entries) {
+          kept.add(child.getFile());
+        }
+      } else {
+        directories.remove(dir.entry.getFile());
+      }
+
+      for (DirectoryEntry child : dir.entries) {
+        if (child.isDirectory() && !kept.contains(child.getFile())) {
+          unwatch(child.getFile());
+        }
+      }
+    }
+    if (changed) {
+      watchListed();
+    }
+    return changed;
+  }
+
+  /**
+   * Walks the listings held in memory in the order the tree is printed, and lists the
+   * directories within the depth limit that are not watched yet. Which links are watched
+   * is decided with a new LinkTracker, as a fresh start would decide it: a link it
+   * accepts is watched, and a watched link it no longer accepts is dropped.
+   *
+   * Child directories are checked for being links before they are watched, and the
+   * checked entry is kept in its directory's listing, so the tree is printed without
+   * looking them up again.
+   */
+  private void watchListed() {
+    File root = options.getRoot();
+    LinkTracker links = new LinkTracker(options.getSymlinkPolicy(), root);
+    WatchedDirectory[] stack = new WatchedDirectory[16];
+    int[] positions = new int[16];
+    int top = 0;
+    stack[0] = directories.get(root);
+    if (stack[0] == null) return;
+    while (top >= 0) {
+      WatchedDirectory dir = stack[top];
+      if (positions[top] == dir.entries.length) {
+        stack[top] = null;
+        top--;
+        continue;
+      }
+
+      int index = positions[top]++;
+      DirectoryEntry child = dir.entries[index];
+      int depth = dir.depth + 1;
+      if (!child.isDirectory() || (options.getMaxDepth() > 0 && depth >= options.getMaxDepth())) continue;
+
+      child = scanner.resolveLink(child);
+      dir.entries[index] = child;
+      WatchedDirectory watched = directories.get(child.getFile());
+      if (!links.isListed(child)) {
+        if (watched != null) {
+          unwatch(child.getFile());
+        }
+        continue;
+      }
+      if (watched == null) {
+        watched = list(child, depth);
+        if (watched == null) continue;
+        directories.put(child.getFile(), watched);
+      }
+      if (++top == stack.length) {
+        stack = Arrays.copyOf(stack, 2 * top);
+        positions = Arrays.copyOf(positions, 2 * top);
+      }
+      stack[top] = watched;
+      positions[top] = 0;
+    }
+  }
+
+  /**
+   * Drops a directory and everything below it.
+   */
+  private void unwatch(File dir) {
+    WatchedDirectory watched = directories.remove(dir);
+    if (watched == null) return;
+    for (DirectoryEntry child : watched.entries) {
+      if (child.isDirectory()) {
+        unwatch(child.getFile());
+      }
+    }
+  }
+
+  /**
+   * Lists one directory, reading its last-modified time first so that a change made
+   * while it is listed is seen by the next poll.
+   */
+  private WatchedDirectory list(DirectoryEntry dir, int depth) {
+    long lastModified = dir.getFile().lastModified();
+    DirectoryEntry[] entries = scanner.scan(dir);
+    return entries == null ? null : new WatchedDirectory(dir, depth, lastModified, entries);
+  }
+
+  /**
+   * The listing of one directory as of its last poll.
+   */
+  private static final class WatchedDirectory {
+    private final DirectoryEntry entry;
+    private final int depth;
+    private final long lastModified;
+    private final DirectoryEntry[] entries;
+
+    WatchedDirectory(DirectoryEntry entry, int depth, long lastModified, DirectoryEntry[] entries) {
+      this.entry = entry;
+      this.depth = depth;
+      this.lastModified = lastModified;
+      this.entries = entries;
+    }
+  }
+
+  /**
+   * Answers scans from the listings held in memory.
+   */
+  private class MemoryScanner extends DirectoryScanner {
+    MemoryScanner(boolean showHidden) {
+      super(showHidden);
+    }
+
+    @Override
+    public DirectoryEntry[] scan(File dir) {
+      WatchedDirectory watched = directories.get(dir);
+      return watched == null ? null : watched.entries;
+    }
+
+    @Override
+    public DirectoryEntry[] scan(DirectoryEntry dir) {
+      return scan(dir.getFile());
+    }
+
+    @Override
+    public DirectoryEntry[] scanUnsorted(DirectoryEntry dir) {
+      return scan(dir.getFile());
+    }
+
+    @Override
+    public DirectoryEntry resolveLink(DirectoryEntry dir) {
+      // Watched directories were checked when they were listed
+      return dir;
+    }
+
+    @Override
+    public SortedListing listSorted(DirectoryEntry dir, int runSize) {
+      DirectoryEntry[] entries = scan(dir.getFile());
+      return entries == null ? null : new SortedListing(entries);
+    }
+  }
+}
@@ -0,0 +1,168 @@
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TreeWatcherTest {
+  private static int touches = 0;
+
+  /**
+   * Moves a directory's last-modified time, so the next poll sees it changed even on
+   * file systems with coarse timestamps.
+   */
+  private static void touch(File dir) {
+    assertTrue(dir.setLastModified(System.currentTimeMillis() - 10_000 * ++touches));
+  }
+
+  private static String render(TruffulaOptions options) {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    new TruffulaPrinter(options, new PrintStream(output)).printTree();
+    return output.toString();
+  }
+
+  @Test
+  void testPrintsOnlyAfterChangesSettle(@TempDir File tempDir) throws IOException {
+    File root = new File(tempDir, "root");
+    File sub = new File(root, "sub");
+    assertTrue(sub.mkdirs());
+    new File(sub, "a.txt").createNewFile();
+
+    TruffulaOptions options = new TruffulaOptions(root, false, false);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    TreeWatcher watcher = new TreeWatcher(options, new PrintStream(output));
+    watcher.start();
+    assertEquals(render(options), output.toString());
+    assertEquals(2, watcher.getWatchedDirectoryCount());
+
+    // Nothing changed
+    assertFalse(watcher.poll());
+
+    // A change is printed at the first quiet poll after it
+    new File(sub, "b.txt").createNewFile();
+    touch(sub);
+    output.reset();
+    assertFalse(watcher.poll());
+    assertEquals("", output.toString());
+    assertTrue(watcher.poll());
+    assertEquals(System.lineSeparator() + render(options), output.toString());
+    assertFalse(watcher.poll());
+  }
+
+  @Test
+  void testFollowsAddedAndRemovedDirectories(@TempDir File tempDir) throws IOException {
+    File root = new File(tempDir, "root");
+    File old = new File(root, "old");
+    assertTrue(old.mkdirs());
+    new File(old, "gone.txt").createNewFile();
+
+    TruffulaOptions options = new TruffulaOptions(root, false, true);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    TreeWatcher watcher = new TreeWatcher(options, new PrintStream(output));
+    watcher.start();
+
+    assertTrue(new File(old, "gone.txt").delete());
+    assertTrue(old.delete());
+    File added = new File(root, "added");
+    assertTrue(new File(added, "deeper").mkdirs());
+    new File(added, "new.txt").createNewFile();
+    touch(root);
+
+    assertFalse(watcher.poll());
+    output.reset();
+    assertTrue(watcher.poll());
+    assertEquals(System.lineSeparator() + render(options), output.toString());
+    assertEquals(3, watcher.getWatchedDirectoryCount());
+  }
+
+  @Test
+  void testKeepsPrintingWhileChangesContinue(@TempDir File tempDir) throws IOException {
+    File root = new File(tempDir, "root");
+    assertTrue(root.mkdir());
+
+    TreeWatcher watcher = new TreeWatcher(new TruffulaOptions(root, false, false), new PrintStream(new ByteArrayOutputStream()));
+    watcher.start();
+
+    for (int i = 1; i < TreeWatcher.MAX_DEFERRED_POLLS; i++) {
+      new File(root, "file" + i).createNewFile();
+      touch(root);
+      assertFalse(watcher.poll());
+    }
+    new File(root, "last").createNewFile();
+    touch(root);
+    assertTrue(watcher.poll());
+  }
+
+  @Test
+  void testStopsAtDepthLimit(@TempDir File tempDir) {
+    File root = new File(tempDir, "root");
+    assertTrue(new File(root, "a/b/c").mkdirs());
+
+    TruffulaOptions options = new TruffulaOptions(root, false, false);
+    options.setMaxDepth(2);
+    TreeWatcher watcher = new TreeWatcher(options, new PrintStream(new ByteArrayOutputStream()));
+    watcher.start();
+
+    assertEquals(2, watcher.getWatchedDirectoryCount());
+  }
+
+  @Test
+  void testWatchesLinkAgainAfterItIsAddedBack(@TempDir File tempDir) throws IOException {
+    // target/
+    //    t.txt
+    // root/
+    //    a/
+    //       link -> target
+    //    b/
+    //       link2 -> target
+    File target = new File(tempDir, "target");
+    File root = new File(tempDir, "root");
+    File a = new File(root, "a");
+    File b = new File(root, "b");
+    assertTrue(target.mkdir() && a.mkdirs() && b.mkdirs());
+    new File(target, "t.txt").createNewFile();
+    Path link = a.toPath().resolve("link");
+    try {
+      Files.createSymbolicLink(link, target.toPath());
+      Files.createSymbolicLink(b.toPath().resolve("link2"), target.toPath());
+    } catch (UnsupportedOperationException | IOException e) {
+      Assumptions.assumeTrue(false, "Symbolic links are not supported: " + e);
+    }
+
+    TruffulaOptions options = new TruffulaOptions(root, false, false);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    TreeWatcher watcher = new TreeWatcher(options, new PrintStream(output));
+    watcher.start();
+    assertEquals(render(options), output.toString());
+    assertEquals(4, watcher.getWatchedDirectoryCount());
+
+    // Once a/link is gone, the target is watched through b/link2
+    Files.delete(link);
+    touch(a);
+    assertFalse(watcher.poll());
+    output.reset();
+    assertTrue(watcher.poll());
+    assertEquals(System.lineSeparator() + render(options), output.toString());
+    assertTrue(output.toString().contains("link2/ -> " + target.getCanonicalPath()
+        + ConsoleColor.RESET + System.lineSeparator() + ConsoleColor.WHITE + "         t.txt"), output.toString());
+    assertEquals(4, watcher.getWatchedDirectoryCount());
+
+    // Added back, a/link comes first again
+    Files.createSymbolicLink(link, target.toPath());
+    touch(a);
+    assertFalse(watcher.poll());
+    output.reset();
+    assertTrue(watcher.poll());
+    assertEquals(System.lineSeparator() + render(options), output.toString());
+    assertEquals(4, watcher.getWatchedDirectoryCount());
+  }
+}
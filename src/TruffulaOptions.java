@@ -1,5 +1,8 @@
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Represents configuration options for controlling how a directory tree is displayed.
@@ -12,13 +15,7 @@ import java.io.FileNotFoundException;
  * Hidden files are identified by names that start with a dot (e.g., ".hidden.txt").
  * Color output is enabled  by default, but can be disabled using flags.
  * 
- * Usage Example:
- * 
- * Arguments Format: [-h] [-nc] path
- * 
- * Flags:
- * - -h   : Show hidden files (defaults to false).
- * - -nc  : Do not use color (color is enabled by default).
+ * The command-line flags are listed, with their defaults, in the documentation of App.
  * 
  * Path:
  * - The absolute or relative path to the directory whose contents will be printed.
@@ -39,19 +36,62 @@ import java.io.FileNotFoundException;
  * 3. ['/path/to/directory']
  *    → Use color, don't show hidden files.
  * 
+ * 4. ['-p', '8', '/path/to/directory']
+ *    → Use color, don't show hidden files, walk the tree with 8 worker threads.
+ * 
+ * 5. ['-L', '2', '/path/to/directory']
+ *    → Only print the root's children and grandchildren.
+ * 
+ * 6. ['-I', 'node_modules', '-I', '*.class', '/path/to/directory']
+ *    → Skip node_modules directories and .class files entirely.
+ * 
+ * 7. ['-diff', '/path/to/staging', '/path/to/production']
+ *    → Print what production adds, removes or changes compared to staging.
+ * 
+ * Patterns are globs (*, ?, [abc], {a,b}) matched against names, or regular
+ * expressions when prefixed with "re:". See NameFilter.
+ * 
  * Exceptions:
  * - Throws IllegalArgumentException if:
  *     - Unknown flags are provided.
  *     - The path argument is missing.
+ *     - A flag that takes a value is missing it or the value is invalid.
  * 
  * - Throws FileNotFoundException if:
  *     - The specified directory does not exist.
- *     - The path points to a file instead of a directory.
+ *     - The path points to a file instead of a directory, or to a directory with -replay.
+ *     - The -diff directory does not exist or is a file.
  */
 public class TruffulaOptions  {
+  /**
+   * Default number of characters of output gathered before it is written.
+   */
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
   private final File root;
   private final boolean showHidden;
   private final boolean useColor;
+  private int maxDepth = 0;
+  private int maxEntries = 0;
+  private final List<String> includePatterns = new ArrayList<>();
+  private final List<String> excludePatterns = new ArrayList<>();
+  private boolean useGitIgnore = false;
+  private File snapshotFile = null;
+  private File indexFile = null;
+  private boolean replayIndex = false;
+  private File diffBase = null;
+  private boolean aggregate = false;
+  private int largestCount = 0;
+  private OutputFormat outputFormat = OutputFormat.TEXT;
+  private boolean stats = false;
+  private int spillThreshold = 0;
+  private SymlinkPolicy symlinkPolicy = SymlinkPolicy.FOLLOW;
+  private int parallelism = 1;
+  private boolean streaming = false;
+  private int bufferSize = DEFAULT_BUFFER_SIZE;
+  private boolean autoFlush = false;
+  private int prefetch = 0;
+  private int watchInterval = 0;
 
   /**
    * Returns the root directory from which the directory tree will be printed.
@@ -71,9 +111,475 @@ public class TruffulaOptions  {
     return showHidden;
   }
 
+  /**
+   * Returns the maximum number of levels below the root that are printed. Directories
+   * at the last level are printed but not listed.
+   * 
+   * A value of 0 means there is no limit.
+   *
+   * @return the maximum depth, or 0 for no limit
+   */
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  /**
+   * Sets the maximum number of levels below the root that are printed.
+   *
+   * @param maxDepth the maximum depth, or 0 for no limit
+   * @throws IllegalArgumentException if maxDepth is negative
+   */
+  public void setMaxDepth(int maxDepth) {
+    if (maxDepth < 0) {
+      throw new IllegalArgumentException("Max depth must not be negative: " + maxDepth);
+    }
+    this.maxDepth = maxDepth;
+  }
+
+  /**
+   * Returns the maximum number of entries printed per directory. The entries that come
+   * first in sort order are printed, followed by a line counting the rest.
+   * 
+   * A value of 0 prints every entry.
+   *
+   * @return the maximum number of entries per directory
+   */
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  /**
+   * Sets the maximum number of entries printed per directory.
+   *
+   * @param maxEntries the maximum number of entries per directory, or 0 for no limit
+   * @throws IllegalArgumentException if maxEntries is negative
+   */
+  public void setMaxEntries(int maxEntries) {
+    if (maxEntries < 0) {
+      throw new IllegalArgumentException("Max entries must not be negative: " + maxEntries);
+    }
+    this.maxEntries = maxEntries;
+  }
+
+  /**
+   * Returns the patterns that files must match to be printed. When empty, all files are printed.
+   *
+   * @return an unmodifiable view of the include patterns
+   */
+  public List<String> getIncludePatterns() {
+    return Collections.unmodifiableList(includePatterns);
+  }
+
+  /**
+   * Adds a pattern that files must match to be printed. Directories are not affected.
+   *
+   * @param pattern a glob, or a regular expression prefixed with "re:"
+   * @throws IllegalArgumentException if the pattern is not valid
+   */
+  public void addIncludePattern(String pattern) {
+    NameFilter.checkPattern(pattern);
+    includePatterns.add(pattern);
+  }
+
+  /**
+   * Returns the patterns for files and directories that are left out of the tree.
+   *
+   * @return an unmodifiable view of the exclude patterns
+   */
+  public List<String> getExcludePatterns() {
+    return Collections.unmodifiableList(excludePatterns);
+  }
+
+  /**
+   * Adds a pattern for files and directories to leave out. Excluded directories are not listed.
+   *
+   * @param pattern a glob, or a regular expression prefixed with "re:"
+   * @throws IllegalArgumentException if the pattern is not valid
+   */
+  public void addExcludePattern(String pattern) {
+    NameFilter.checkPattern(pattern);
+    excludePatterns.add(pattern);
+  }
+
+  /**
+   * Indicates whether files and directories ignored by .gitignore files, and .git
+   * directories, are left out of the tree.
+   *
+   * @return true if .gitignore files are respected; false otherwise
+   */
+  public boolean isUseGitIgnore() {
+    return useGitIgnore;
+  }
+
+  /**
+   * Sets whether files and directories ignored by .gitignore files are left out of the tree.
+   *
+   * @param useGitIgnore true to respect .gitignore files; false otherwise
+   */
+  public void setUseGitIgnore(boolean useGitIgnore) {
+    this.useGitIgnore = useGitIgnore;
+  }
+
+  /**
+   * Returns the snapshot file that unchanged directory listings are replayed from, and
+   * that the listings of each run are saved to. See TreeSnapshot.
+   *
+   * @return the snapshot file, or null if no snapshot is used
+   */
+  public File getSnapshotFile() {
+    return snapshotFile;
+  }
+
+  /**
+   * Sets the snapshot file that unchanged directory listings are replayed from.
+   *
+   * @param snapshotFile the snapshot file, or null to list every directory
+   */
+  public void setSnapshotFile(File snapshotFile) {
+    this.snapshotFile = snapshotFile;
+  }
+
+  /**
+   * Returns the file the printed tree is saved to as a TreeIndex.
+   *
+   * @return the index file, or null if the tree is not saved
+   */
+  public File getIndexFile() {
+    return indexFile;
+  }
+
+  /**
+   * Sets the file the printed tree is saved to as a TreeIndex.
+   *
+   * @param indexFile the index file, or null to not save the tree
+   */
+  public void setIndexFile(File indexFile) {
+    this.indexFile = indexFile;
+  }
+
+  /**
+   * Indicates whether the root is a TreeIndex file to print, rather than a directory.
+   *
+   * @return true if a saved tree index is printed; false otherwise
+   */
+  public boolean isReplayIndex() {
+    return replayIndex;
+  }
+
+  /**
+   * Sets whether the root is a TreeIndex file to print, rather than a directory.
+   *
+   * @param replayIndex true to print a saved tree index; false otherwise
+   */
+  public void setReplayIndex(boolean replayIndex) {
+    this.replayIndex = replayIndex;
+  }
+
+  /**
+   * Returns the directory the root is compared with in diff mode. See TreeDiffer.
+   *
+   * @return the base directory, or null if the tree is printed rather than compared
+   */
+  public File getDiffBase() {
+    return diffBase;
+  }
+
+  /**
+   * Sets the directory the root is compared with in diff mode.
+   *
+   * @param diffBase the base directory, or null to print the tree
+   */
+  public void setDiffBase(File diffBase) {
+    this.diffBase = diffBase;
+  }
+
+  /**
+   * Indicates whether each directory line shows the number of files and total size
+   * below the directory.
+   *
+   * @return true if sizes and counts are added up; false otherwise
+   */
+  public boolean isAggregate() {
+    return aggregate;
+  }
+
+  /**
+   * Sets whether each directory line shows the number of files and total size below it.
+   *
+   * @param aggregate true to add up sizes and counts; false otherwise
+   */
+  public void setAggregate(boolean aggregate) {
+    this.aggregate = aggregate;
+  }
+
+  /**
+   * Returns the number of largest directories listed after the tree when aggregating.
+   * 
+   * A value of 0 lists none.
+   *
+   * @return the number of largest directories to list
+   */
+  public int getLargestCount() {
+    return largestCount;
+  }
+
+  /**
+   * Sets the number of largest directories listed after the tree when aggregating.
+   *
+   * @param largestCount the number of largest directories to list, or 0 for none
+   * @throws IllegalArgumentException if largestCount is negative
+   */
+  public void setLargestCount(int largestCount) {
+    if (largestCount < 0) {
+      throw new IllegalArgumentException("Largest count must not be negative: " + largestCount);
+    }
+    this.largestCount = largestCount;
+  }
+
+  /**
+   * Returns the format the tree is printed in.
+   *
+   * @return the output format, TEXT by default
+   */
+  public OutputFormat getOutputFormat() {
+    return outputFormat;
+  }
+
+  /**
+   * Sets the format the tree is printed in.
+   *
+   * @param outputFormat the output format
+   * @throws IllegalArgumentException if outputFormat is null
+   */
+  public void setOutputFormat(OutputFormat outputFormat) {
+    if (outputFormat == null) {
+      throw new IllegalArgumentException("Output format must not be null");
+    }
+    this.outputFormat = outputFormat;
+  }
+
+  /**
+   * Indicates whether the walk is measured, and a summary of its counts and timings is
+   * printed after the tree.
+   *
+   * @return true if walk statistics are collected; false otherwise
+   */
+  public boolean isStats() {
+    return stats;
+  }
+
+  /**
+   * Sets whether the walk is measured, and a summary of its counts and timings is printed
+   * after the tree.
+   *
+   * @param stats true to collect walk statistics; false otherwise
+   */
+  public void setStats(boolean stats) {
+    this.stats = stats;
+  }
+
+  /**
+   * Returns the number of entries above which a directory's listing is sorted on disk,
+   * in sorted runs of this many names, instead of in memory. Only the single-threaded
+   * walk without aggregation sorts on disk.
+   * 
+   * A value of 0 always sorts in memory.
+   *
+   * @return the spill threshold
+   */
+  public int getSpillThreshold() {
+    return spillThreshold;
+  }
+
+  /**
+   * Sets the number of entries above which a directory's listing is sorted on disk.
+   *
+   * @param spillThreshold the spill threshold, or 0 to always sort in memory
+   * @throws IllegalArgumentException if spillThreshold is negative
+   */
+  public void setSpillThreshold(int spillThreshold) {
+    if (spillThreshold < 0) {
+      throw new IllegalArgumentException("Spill threshold must not be negative: " + spillThreshold);
+    }
+    this.spillThreshold = spillThreshold;
+  }
+
+  /**
+   * Returns how symbolic links to directories are treated. Links are printed with their
+   * targets, except at the depth limit, where directories are not checked for being links.
+   * 
+   * With FOLLOW, a link is listed like a directory, except that each linked directory
+   * is listed at most once per walk, and a link to the directory it is in, or to one
+   * above it, is never listed. With NOFOLLOW, links are never listed.
+   *
+   * @return the symlink policy, FOLLOW by default
+   */
+  public SymlinkPolicy getSymlinkPolicy() {
+    return symlinkPolicy;
+  }
+
+  /**
+   * Sets how symbolic links to directories are treated.
+   *
+   * @param symlinkPolicy the symlink policy
+   * @throws IllegalArgumentException if symlinkPolicy is null
+   */
+  public void setSymlinkPolicy(SymlinkPolicy symlinkPolicy) {
+    if (symlinkPolicy == null) {
+      throw new IllegalArgumentException("Symlink policy must not be null");
+    }
+    this.symlinkPolicy = symlinkPolicy;
+  }
+
+  /**
+   * Returns the number of worker threads used to walk the directory tree.
+   * 
+   * A value of 1 walks the tree on the calling thread.
+   *
+   * @return the number of worker threads
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Sets the number of worker threads used to walk the directory tree.
+   *
+   * @param parallelism the number of worker threads, at least 1
+   * @throws IllegalArgumentException if parallelism is less than 1
+   */
+  public void setParallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+    }
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Indicates whether lines should be streamed into a reusable buffer and written in large
+   * chunks, instead of building a String for every line. The printed output is the same.
+   *
+   * @return true if output should be streamed; false otherwise
+   */
+  public boolean isStreaming() {
+    return streaming;
+  }
+
+  /**
+   * Sets whether lines should be streamed into a reusable buffer.
+   *
+   * @param streaming true to stream output; false otherwise
+   */
+  public void setStreaming(boolean streaming) {
+    this.streaming = streaming;
+  }
+
+  /**
+   * Returns the number of characters of output gathered before it is written.
+   * 
+   * A value of 0 writes every line directly.
+   *
+   * @return the output buffer size in characters
+   */
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * Sets the number of characters of output gathered before it is written.
+   *
+   * @param bufferSize the output buffer size in characters, or 0 to write every line directly
+   * @throws IllegalArgumentException if bufferSize is negative
+   */
+  public void setBufferSize(int bufferSize) {
+    if (bufferSize < 0) {
+      throw new IllegalArgumentException("Buffer size must not be negative: " + bufferSize);
+    }
+    this.bufferSize = bufferSize;
+  }
+
+  /**
+   * Indicates whether output should be flushed after every line, so that it appears
+   * immediately when used interactively.
+   *
+   * @return true if output is flushed after every line; false otherwise
+   */
+  public boolean isAutoFlush() {
+    return autoFlush;
+  }
+
+  /**
+   * Sets whether output should be flushed after every line.
+   *
+   * @param autoFlush true to flush after every line; false otherwise
+   */
+  public void setAutoFlush(boolean autoFlush) {
+    this.autoFlush = autoFlush;
+  }
+
+  /**
+   * Returns the number of directories that are listed ahead of printing, on virtual
+   * threads, during a single-threaded walk.
+   * 
+   * A value of 0 lists every directory only when it is printed.
+   *
+   * @return the prefetch lookahead in directories
+   */
+  public int getPrefetch() {
+    return prefetch;
+  }
+
+  /**
+   * Sets the number of directories that are listed ahead of printing.
+   *
+   * @param prefetch the prefetch lookahead in directories, or 0 to turn prefetching off
+   * @throws IllegalArgumentException if prefetch is negative
+   */
+  public void setPrefetch(int prefetch) {
+    if (prefetch < 0) {
+      throw new IllegalArgumentException("Prefetch must not be negative: " + prefetch);
+    }
+    this.prefetch = prefetch;
+  }
+
+  /**
+   * Returns the number of milliseconds between polls when the tree is watched for
+   * changes. See TreeWatcher.
+   * 
+   * A value of 0 prints the tree once.
+   *
+   * @return the watch interval in milliseconds, or 0 if the tree is not watched
+   */
+  public int getWatchInterval() {
+    return watchInterval;
+  }
+
+  /**
+   * Sets the number of milliseconds between polls when the tree is watched for changes.
+   *
+   * @param watchInterval the watch interval in milliseconds, or 0 to print the tree once
+   * @throws IllegalArgumentException if watchInterval is negative
+   */
+  public void setWatchInterval(int watchInterval) {
+    if (watchInterval < 0) {
+      throw new IllegalArgumentException("Watch interval must not be negative: " + watchInterval);
+    }
+    this.watchInterval = watchInterval;
+  }
+
   @Override
   public String toString() {
-    return "TruffulaOptions [root=" + root + ", showHidden=" + showHidden + ", useColor=" + useColor + "]";
+    return "TruffulaOptions [root=" + root + ", showHidden=" + showHidden + ", useColor=" + useColor
+        + ", maxDepth=" + maxDepth + ", maxEntries=" + maxEntries
+        + ", includePatterns=" + includePatterns + ", excludePatterns=" + excludePatterns
+        + ", useGitIgnore=" + useGitIgnore + ", snapshotFile=" + snapshotFile
+        + ", indexFile=" + indexFile + ", replayIndex=" + replayIndex + ", diffBase=" + diffBase
+        + ", aggregate=" + aggregate + ", largestCount=" + largestCount
+        + ", outputFormat=" + outputFormat + ", stats=" + stats
+        + ", spillThreshold=" + spillThreshold + ", symlinkPolicy=" + symlinkPolicy
+        + ", parallelism=" + parallelism + ", streaming=" + streaming + ", bufferSize=" + bufferSize
+        + ", autoFlush=" + autoFlush + ", prefetch=" + prefetch
+        + ", watchInterval=" + watchInterval + "]";
   }
 
   /**
@@ -90,13 +596,10 @@ public class TruffulaOptions  {
   /**
    * Constructs a TruffulaOptions object based on command-line arguments.
    * 
-   * Supported Flags:
-   * - -h   : Show hidden files (defaults to false).
-   * - -nc  : Do not use color (uses color by default).
+   * The supported flags are listed, with their defaults, in the documentation of App.
+   * The last argument must be the path to the directory, or to a tree index file with -replay.
    * 
-   * The last argument must be the path to the directory.
-   * 
-   * @param args command-line arguments in the format [-h] [-nc] path
+   * @param args command-line arguments: flags, then the path
    * @throws IllegalArgumentException if unknown arguments are provided or the path is missing
    * @throws FileNotFoundException if the directory cannot be found or if the path points to a file
    */
@@ -107,6 +610,27 @@ public class TruffulaOptions  {
     // Parses flags, checks folder, sets display options...... in the code 
     boolean show = false;
     boolean color = true;
+    int depth = 0;
+    int entries = 0;
+    List<String> includes = new ArrayList<>();
+    List<String> excludes = new ArrayList<>();
+    boolean gitIgnore = false;
+    File snapshot = null;
+    File index = null;
+    boolean replay = false;
+    File base = null;
+    boolean sizes = false;
+    int largest = 0;
+    OutputFormat format = OutputFormat.TEXT;
+    boolean measure = false;
+    int spill = 0;
+    SymlinkPolicy links = SymlinkPolicy.FOLLOW;
+    int workers = 1;
+    boolean stream = false;
+    int buffer = DEFAULT_BUFFER_SIZE;
+    boolean flush = false;
+    int lookahead = 0;
+    int watch = 0;
     if (args.length == 0) {
       throw new IllegalArgumentException("Missing folder path.");
     }
@@ -114,9 +638,6 @@ public class TruffulaOptions  {
     String folderpath = args[args.length - 1];
 
     File folder = new File(folderpath);
-    if (!folder.exists() || !folder.isDirectory()) {
-      throw new FileNotFoundException("The folder doesn't exist: " + folderpath);
-    }
   
     for (int i = 0; i < args.length - 1; i++) {
       String option = args[i];
@@ -124,14 +645,182 @@ public class TruffulaOptions  {
         show = true;
       } else if (option.equals("-nc")){
         color = false;
+      } else if (option.equals("-L")) {
+        depth = parseInt(args, ++i, 1);
+      } else if (option.equals("-max")) {
+        entries = parseInt(args, ++i, 1);
+      } else if (option.equals("-I")) {
+        excludes.add(parsePattern(args, ++i));
+      } else if (option.equals("-P")) {
+        includes.add(parsePattern(args, ++i));
+      } else if (option.equals("-gi")) {
+        gitIgnore = true;
+      } else if (option.equals("-cache")) {
+        snapshot = new File(parseValue(args, ++i));
+      } else if (option.equals("-index")) {
+        index = new File(parseValue(args, ++i));
+      } else if (option.equals("-replay")) {
+        replay = true;
+      } else if (option.equals("-diff")) {
+        base = new File(parseValue(args, ++i));
+      } else if (option.equals("-du")) {
+        sizes = true;
+      } else if (option.equals("-top")) {
+        largest = parseInt(args, ++i, 1);
+        sizes = true;
+      } else if (option.equals("-fmt")) {
+        format = parseFormat(args, ++i);
+      } else if (option.equals("-stats")) {
+        measure = true;
+      } else if (option.equals("-spill")) {
+        spill = parseInt(args, ++i, 1);
+      } else if (option.equals("-links")) {
+        links = parsePolicy(args, ++i);
+      } else if (option.equals("-s")) {
+        stream = true;
+      } else if (option.equals("-f")) {
+        flush = true;
+      } else if (option.equals("-b")) {
+        buffer = parseInt(args, ++i, 0);
+      } else if (option.equals("-p")) {
+        workers = parseInt(args, ++i, 1);
+      } else if (option.equals("-pf")) {
+        lookahead = parseInt(args, ++i, 0);
+      } else if (option.equals("-w")) {
+        watch = parseInt(args, ++i, 1);
       } else {
         throw new IllegalArgumentException("Unknown option: " + args[i]);
       }
     }
+
+    if (replay) {
+      if (!folder.isFile()) {
+        throw new FileNotFoundException("The tree index doesn't exist: " + folderpath);
+      }
+    } else if (!folder.exists() || !folder.isDirectory()) {
+      throw new FileNotFoundException("The folder doesn't exist: " + folderpath);
+    }
+    if (base != null && !base.isDirectory()) {
+      throw new FileNotFoundException("The folder doesn't exist: " + base.getPath());
+    }
   
     this.root = folder;
     this.showHidden = show;
     this.useColor = color;
+    this.maxDepth = depth;
+    this.maxEntries = entries;
+    this.includePatterns.addAll(includes);
+    this.excludePatterns.addAll(excludes);
+    this.useGitIgnore = gitIgnore;
+    this.snapshotFile = snapshot;
+    this.indexFile = index;
+    this.replayIndex = replay;
+    this.diffBase = base;
+    this.aggregate = sizes;
+    this.largestCount = largest;
+    this.outputFormat = format;
+    this.stats = measure;
+    this.spillThreshold = spill;
+    this.symlinkPolicy = links;
+    this.parallelism = workers;
+    this.streaming = stream;
+    this.bufferSize = buffer;
+    this.autoFlush = flush;
+    this.prefetch = lookahead;
+    this.watchInterval = watch;
+  }
+
+  /**
+   * Reads the value of a flag.
+   * 
+   * The value must come before the path, which is always the final argument.
+   *
+   * @param args  the command-line arguments
+   * @param index the index of the value
+   * @return the value
+   * @throws IllegalArgumentException if the value is missing
+   */
+  private static String parseValue(String[] args, int index) {
+    if (index >= args.length - 1) {
+      throw new IllegalArgumentException("Missing value for option: " + args[index - 1]);
+    }
+    return args[index];
+  }
+
+  /**
+   * Reads the value of a flag as a name pattern.
+   *
+   * @param args  the command-line arguments
+   * @param index the index of the pattern
+   * @return the pattern
+   * @throws IllegalArgumentException if the pattern is missing or not valid
+   */
+  private static String parsePattern(String[] args, int index) {
+    parseValue(args, index);
+    try {
+      NameFilter.checkPattern(args[index]);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid value for option " + args[index - 1] + ": " + args[index], e);
+    }
+    return args[index];
+  }
+
+  /**
+   * Reads the value of a flag as an output format.
+   *
+   * @param args  the command-line arguments
+   * @param index the index of the format name
+   * @return the format
+   * @throws IllegalArgumentException if the format is missing or unknown
+   */
+  private static OutputFormat parseFormat(String[] args, int index) {
+    String name = parseValue(args, index);
+    try {
+      return OutputFormat.parse(name);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid value for option " + args[index - 1] + ": " + args[index], e);
+    }
+  }
+
+  /**
+   * Reads the value of a flag as a symlink policy.
+   *
+   * @param args  the command-line arguments
+   * @param index the index of the policy name
+   * @return the policy
+   * @throws IllegalArgumentException if the policy is missing or unknown
+   */
+  private static SymlinkPolicy parsePolicy(String[] args, int index) {
+    String name = parseValue(args, index);
+    try {
+      return SymlinkPolicy.parse(name);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid value for option " + args[index - 1] + ": " + args[index], e);
+    }
+  }
+
+  /**
+   * Parses the value of a flag as an integer.
+   * 
+   * The value must come before the path, which is always the final argument.
+   *
+   * @param args  the command-line arguments
+   * @param index the index of the value to parse
+   * @param min   the smallest allowed value
+   * @return the parsed value
+   * @throws IllegalArgumentException if the value is missing, not a number, or less than min
+   */
+  private static int parseInt(String[] args, int index, int min) {
+    String option = args[index - 1];
+    try {
+      int value = Integer.parseInt(parseValue(args, index));
+      if (value >= min) {
+        return value;
+      }
+    } catch (NumberFormatException e) {
+      // Fall through to the error below
+    }
+    throw new IllegalArgumentException("Invalid value for option " + option + ": " + args[index]);
   }
   
   
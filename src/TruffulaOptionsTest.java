@@ -5,6 +5,8 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -131,6 +133,219 @@ void testWithFlagThatHasExtraSpace(@TempDir File tempDir) throws FileNotFoundExc
     new TruffulaOptions(args);
   });
 }
-  
+
+  @Test
+  void testWithParallelismFlag(@TempDir File tempDir) throws FileNotFoundException {
+    File directory = new File(tempDir, "subfolder");
+    directory.mkdir();
+    String[] args = {"-p", "8", "-nc", directory.getAbsolutePath()};
+
+    TruffulaOptions options = new TruffulaOptions(args);
+
+    assertEquals(8, options.getParallelism());
+    assertFalse(options.isUseColor());
+  }
+
+  @Test
+  void testParallelismDefaultsToOne(@TempDir File tempDir) throws FileNotFoundException {
+    TruffulaOptions options = new TruffulaOptions(new String[] {tempDir.getAbsolutePath()});
+
+    assertEquals(1, options.getParallelism());
+  }
+
+  @Test
+  void testParallelismFlagMissingValue(@TempDir File tempDir) {
+    String[] args = {"-p", tempDir.getAbsolutePath()};
+
+    IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(args));
+
+    assertEquals("Missing value for option: -p", exception.getMessage());
+  }
+
+  @Test
+  void testParallelismFlagInvalidValue(@TempDir File tempDir) {
+    String[] args = {"-p", "zero", tempDir.getAbsolutePath()};
+
+    IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(args));
+
+    assertEquals("Invalid value for option -p: zero", exception.getMessage());
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[] {"-p", "0", tempDir.getAbsolutePath()}));
+  }
+
+  @Test
+  void testWithStreamingFlag(@TempDir File tempDir) throws FileNotFoundException {
+    TruffulaOptions options = new TruffulaOptions(new String[] {"-s", tempDir.getAbsolutePath()});
+
+    assertTrue(options.isStreaming());
+    assertFalse(new TruffulaOptions(new String[] {tempDir.getAbsolutePath()}).isStreaming());
+  }
+
+  @Test
+  void testWithBufferAndAutoFlushFlags(@TempDir File tempDir) throws FileNotFoundException {
+    TruffulaOptions options = new TruffulaOptions(new String[] {"-b", "0", "-f", tempDir.getAbsolutePath()});
+
+    assertEquals(0, options.getBufferSize());
+    assertTrue(options.isAutoFlush());
+
+    TruffulaOptions defaults = new TruffulaOptions(new String[] {tempDir.getAbsolutePath()});
+    assertEquals(TruffulaOptions.DEFAULT_BUFFER_SIZE, defaults.getBufferSize());
+    assertFalse(defaults.isAutoFlush());
+  }
+
+  @Test
+  void testBufferFlagNegativeValue(@TempDir File tempDir) {
+    String[] args = {"-b", "-1", tempDir.getAbsolutePath()};
+
+    IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(args));
+
+    assertEquals("Invalid value for option -b: -1", exception.getMessage());
+  }
+
+  @Test
+  void testWithPrefetchFlag(@TempDir File tempDir) throws FileNotFoundException {
+    TruffulaOptions options = new TruffulaOptions(new String[] {"-pf", "16", tempDir.getAbsolutePath()});
+
+    assertEquals(16, options.getPrefetch());
+    assertEquals(0, new TruffulaOptions(new String[] {tempDir.getAbsolutePath()}).getPrefetch());
+  }
+
+  @Test
+  void testWithMaxDepthFlag(@TempDir File tempDir) throws FileNotFoundException {
+    TruffulaOptions options = new TruffulaOptions(new String[] {"-L", "2", tempDir.getAbsolutePath()});
+
+    assertEquals(2, options.getMaxDepth());
+    assertEquals(0, new TruffulaOptions(new String[] {tempDir.getAbsolutePath()}).getMaxDepth());
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[] {"-L", "0", tempDir.getAbsolutePath()}));
+  }
+
+  @Test
+  void testWithPatternFlags(@TempDir File tempDir) throws FileNotFoundException {
+    String[] args = {"-I", "node_modules", "-P", "*.java", "-I", "*.class", tempDir.getAbsolutePath()};
+
+    TruffulaOptions options = new TruffulaOptions(args);
+
+    assertEquals(List.of("node_modules", "*.class"), options.getExcludePatterns());
+    assertEquals(List.of("*.java"), options.getIncludePatterns());
+  }
+
+  @Test
+  void testPatternFlagInvalidValue(@TempDir File tempDir) {
+    String[] args = {"-I", "[oops", tempDir.getAbsolutePath()};
+
+    IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(args));
+
+    assertEquals("Invalid value for option -I: [oops", exception.getMessage());
+  }
+
+  @Test
+  void testWithGitIgnoreFlag(@TempDir File tempDir) throws FileNotFoundException {
+    assertTrue(new TruffulaOptions(new String[] {"-gi", tempDir.getAbsolutePath()}).isUseGitIgnore());
+    assertFalse(new TruffulaOptions(new String[] {tempDir.getAbsolutePath()}).isUseGitIgnore());
+  }
+
+  @Test
+  void testWithSnapshotFlag(@TempDir File tempDir) throws FileNotFoundException {
+    TruffulaOptions options = new TruffulaOptions(new String[] {"-cache", "tree.snapshot", tempDir.getAbsolutePath()});
+
+    assertEquals(new File("tree.snapshot"), options.getSnapshotFile());
+    assertEquals(null, new TruffulaOptions(new String[] {tempDir.getAbsolutePath()}).getSnapshotFile());
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[] {"-cache", tempDir.getAbsolutePath()}));
+  }
+
+  @Test
+  void testWithIndexFlags(@TempDir File tempDir) throws IOException {
+    File index = new File(tempDir, "tree.index");
+    TruffulaOptions save = new TruffulaOptions(new String[] {"-index", index.getPath(), tempDir.getAbsolutePath()});
+    assertEquals(index, save.getIndexFile());
+    assertFalse(save.isReplayIndex());
+
+    // With -replay the path must be an index file rather than a directory
+    assertThrows(FileNotFoundException.class, () -> new TruffulaOptions(new String[] {"-replay", tempDir.getAbsolutePath()}));
+    assertTrue(index.createNewFile());
+    TruffulaOptions replay = new TruffulaOptions(new String[] {"-replay", index.getPath()});
+    assertTrue(replay.isReplayIndex());
+    assertEquals(index, replay.getRoot());
+  }
+
+  @Test
+  void testWithWatchFlag(@TempDir File tempDir) throws FileNotFoundException {
+    TruffulaOptions options = new TruffulaOptions(new String[] {"-w", "500", tempDir.getAbsolutePath()});
+
+    assertEquals(500, options.getWatchInterval());
+    assertEquals(0, new TruffulaOptions(new String[] {tempDir.getAbsolutePath()}).getWatchInterval());
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[] {"-w", "0", tempDir.getAbsolutePath()}));
+    assertThrows(IllegalArgumentException.class, () -> options.setWatchInterval(-1));
+  }
+
+  @Test
+  void testWithDiffFlag(@TempDir File tempDir) throws FileNotFoundException {
+    File base = new File(tempDir, "base");
+    assertTrue(base.mkdir());
+    TruffulaOptions options = new TruffulaOptions(new String[] {"-diff", base.getPath(), tempDir.getAbsolutePath()});
+
+    assertEquals(base, options.getDiffBase());
+    assertThrows(FileNotFoundException.class,
+        () -> new TruffulaOptions(new String[] {"-diff", new File(tempDir, "missing").getPath(), tempDir.getAbsolutePath()}));
+  }
+
+  @Test
+  void testWithAggregateFlags(@TempDir File tempDir) throws FileNotFoundException {
+    TruffulaOptions sizes = new TruffulaOptions(new String[] {"-du", tempDir.getAbsolutePath()});
+    assertTrue(sizes.isAggregate());
+    assertEquals(0, sizes.getLargestCount());
+
+    TruffulaOptions largest = new TruffulaOptions(new String[] {"-top", "5", tempDir.getAbsolutePath()});
+    assertTrue(largest.isAggregate());
+    assertEquals(5, largest.getLargestCount());
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[] {"-top", "0", tempDir.getAbsolutePath()}));
+  }
+
+  @Test
+  void testWithFormatFlag(@TempDir File tempDir) throws FileNotFoundException {
+    assertEquals(OutputFormat.TEXT, new TruffulaOptions(new String[] {tempDir.getAbsolutePath()}).getOutputFormat());
+    assertEquals(OutputFormat.NDJSON,
+        new TruffulaOptions(new String[] {"-fmt", "NDJSON", tempDir.getAbsolutePath()}).getOutputFormat());
+
+    IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+        () -> new TruffulaOptions(new String[] {"-fmt", "xml", tempDir.getAbsolutePath()}));
+    assertEquals("Invalid value for option -fmt: xml", exception.getMessage());
+  }
+
+  @Test
+  void testWithStatsFlag(@TempDir File tempDir) throws FileNotFoundException {
+    assertFalse(new TruffulaOptions(new String[] {tempDir.getAbsolutePath()}).isStats());
+    assertTrue(new TruffulaOptions(new String[] {"-stats", "-nc", tempDir.getAbsolutePath()}).isStats());
+  }
+
+  @Test
+  void testWithMaxEntriesFlag(@TempDir File tempDir) throws FileNotFoundException {
+    assertEquals(0, new TruffulaOptions(new String[] {tempDir.getAbsolutePath()}).getMaxEntries());
+    assertEquals(25, new TruffulaOptions(new String[] {"-max", "25", tempDir.getAbsolutePath()}).getMaxEntries());
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[] {"-max", "0", tempDir.getAbsolutePath()}));
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[] {"-max", tempDir.getAbsolutePath()}));
+
+    TruffulaOptions options = new TruffulaOptions(tempDir, false, false);
+    assertThrows(IllegalArgumentException.class, () -> options.setMaxEntries(-1));
+  }
+
+  @Test
+  void testWithSpillFlag(@TempDir File tempDir) throws FileNotFoundException {
+    assertEquals(0, new TruffulaOptions(new String[] {tempDir.getAbsolutePath()}).getSpillThreshold());
+    assertEquals(100000, new TruffulaOptions(new String[] {"-spill", "100000", tempDir.getAbsolutePath()}).getSpillThreshold());
+    assertThrows(IllegalArgumentException.class, () -> new TruffulaOptions(new String[] {"-spill", "0", tempDir.getAbsolutePath()}));
+  }
+
+  @Test
+  void testWithLinksFlag(@TempDir File tempDir) throws FileNotFoundException {
+    assertEquals(SymlinkPolicy.FOLLOW, new TruffulaOptions(new String[] {tempDir.getAbsolutePath()}).getSymlinkPolicy());
+    assertEquals(SymlinkPolicy.NOFOLLOW,
+        new TruffulaOptions(new String[] {"-links", "nofollow", tempDir.getAbsolutePath()}).getSymlinkPolicy());
+
+    IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+        () -> new TruffulaOptions(new String[] {"-links", "always", tempDir.getAbsolutePath()}));
+    assertEquals("Invalid value for option -links: always", exception.getMessage());
+
+    TruffulaOptions options = new TruffulaOptions(tempDir, false, false);
+    assertThrows(IllegalArgumentException.class, () -> options.setSymlinkPolicy(null));
+  }
 }
- 
\ No newline at end of file
@@ -1,11 +1,44 @@
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.io.File;
 
 /**
  * TruffulaPrinter is responsible for printing a directory tree structure
  * with optional colored output. It supports sorting files and directories
  * in a case-insensitive manner and cycling through colors for visual clarity.
+ * 
+ * The tree is walked by a TreeWalker, which reports every entry to a TreeVisitor.
+ * The printer only picks the visitors: a TextRenderer for the colored text, or an
+ * NdjsonWriter for newline-delimited JSON, plus a TreeIndex.Recorder when the tree
+ * is saved and a summary of the largest directories when one is asked for.
+ * 
+ * The walker does the listing: in parallel when the options ask for more than one
+ * worker thread, with prefetching on virtual threads, and with the number of files
+ * and total bytes below every directory when aggregation is enabled.
+ * 
+ * Include and exclude patterns, and .gitignore rules when enabled, are applied by
+ * the DirectoryScanner, so ignored directories are pruned before they are listed.
+ * 
+ * With a snapshot file, directory listings are replayed from the snapshot saved by
+ * the previous run for every directory that has not changed since, and the
+ * snapshot is updated once the tree has been printed.
+ * 
+ * A saved TreeIndex, or a tree held in memory as a CompactTree, can be printed
+ * again, with the same output, without reading the directories it came from.
+ * 
+ * With a depth limit, directories at the limit are printed but never listed,
+ * so nothing below the limit is read from the file system.
+ * 
+ * Output is batched by the ColorPrinter according to the options and flushed
+ * when printTree() finishes.
+ * 
+ * With statistics enabled, the printer's scanner and walker record their work in a
+ * WalkStats, which is registered over JMX, where it stays readable, and summarized
+ * after the tree.
  */
 public class TruffulaPrinter {
   
@@ -24,6 +57,22 @@ public class TruffulaPrinter {
    */
   private ColorPrinter out;
 
+  /**
+   * Reads each directory's children along with their type and hidden status.
+   */
+  private DirectoryScanner scanner;
+
+  /**
+   * Whether the scanner was given to the constructor, in which case no snapshot is used.
+   */
+  private final boolean givenScanner;
+
+  /**
+   * The counts and timings of the walk, or null when they are not collected.
+   */
+  private final WalkStats stats;
+
+
   /**
    * Default color sequence used when no custom colors are provided.
    */
@@ -73,7 +122,79 @@ public class TruffulaPrinter {
   public TruffulaPrinter(TruffulaOptions options, PrintStream outStream, List<ConsoleColor> colorSequence) {
     this.options = options;
     this.colorSequence = colorSequence;
-    out = new ColorPrinter(outStream);
+    stats = options.isStats() ? new WalkStats() : null;
+    out = newPrinter(options, outStream, stats);
+    scanner = newScanner(null);
+    givenScanner = false;
+  }
+
+  /**
+   * Constructs a TruffulaPrinter that reads directory listings from the given scanner,
+   * using the default color sequence. The options' snapshot file is not used, because
+   * the scanner decides where listings come from, and statistics are only collected
+   * when the scanner records them.
+   *
+   * @param options the configuration options for printing the tree
+   * @param outStream the output stream to print to
+   * @param scanner the scanner to list directories with
+   */
+  public TruffulaPrinter(TruffulaOptions options, PrintStream outStream, DirectoryScanner scanner) {
+    this.options = options;
+    this.colorSequence = DEFAULT_COLOR_SEQUENCE;
+    stats = options.isStats() ? scanner.getStats() : null;
+    out = newPrinter(options, outStream, stats);
+    this.scanner = scanner;
+    givenScanner = true;
+  }
+
+  /**
+   * Creates the ColorPrinter for an output stream. Streamed lines are encoded like the
+   * stream's text, which for System.out is the console's encoding. With stats, the
+   * output goes through a stream that counts the bytes written.
+   */
+  private static ColorPrinter newPrinter(TruffulaOptions options, PrintStream outStream, WalkStats stats) {
+    String consoleEncoding = System.getProperty("stdout.encoding");
+    String encoding = outStream == System.out && consoleEncoding != null ? consoleEncoding : null;
+    ColorPrinter printer;
+    if (stats != null) {
+      if (encoding == null) {
+        encoding = System.getProperty("file.encoding", "UTF-8");
+      }
+      try {
+        printer = new ColorPrinter(stats.countBytes(outStream), ConsoleColor.WHITE, options.getBufferSize(), encoding);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Unsupported output encoding: " + encoding, e);
+      }
+    } else {
+      printer = new ColorPrinter(outStream, ConsoleColor.WHITE, options.getBufferSize());
+      if (encoding != null) {
+        printer.setEncoding(encoding);
+      }
+    }
+    printer.setAutoFlush(options.isAutoFlush());
+    return printer;
+  }
+
+  /**
+   * Returns the counts and timings of the last walk.
+   *
+   * @return the stats, or null if they are not collected
+   */
+  public WalkStats getStats() {
+    return stats;
+  }
+
+  /**
+   * Creates a DirectoryScanner that applies the options' hidden file, pattern and
+   * .gitignore settings.
+   *
+   * @param snapshot the snapshot to list directories through, or null for none
+   * @return the new scanner
+   */
+  private DirectoryScanner newScanner(TreeSnapshot snapshot) {
+    return new DirectoryScanner(options.isShowHidden(),
+        new NameFilter(options.getIncludePatterns(), options.getExcludePatterns()), options.isUseGitIgnore(), snapshot,
+        stats);
   }
 
   /**
@@ -115,55 +236,201 @@ public class TruffulaPrinter {
     // DO NOT USE SYSTEM.OUT.PRINTLN
     // USE out.println instead (will use your ColorPrinter)
 
+    // Whatever is still buffered is printed, also when the walk fails
+    try {
+      print();
+    } finally {
+      out.flush();
+    }
+  }
+
+  /**
+   * Prints the tree, or the tree index being replayed, without the final flush.
+   */
+  private void print() {
     File root = options.getRoot();
 
+    if(options.isReplayIndex()){
+      printIndex(root);
+      return;
+    }
+
     if(root == null || !root.exists() || !root.isDirectory()){
       out.println("Directory Not FOUND");
       return;
     }
 
-    out.println(colorSequence.get(0) + (root.getName().toString() + "/"));
+    TreeSnapshot snapshot = null;
+    if (options.getSnapshotFile() != null && !givenScanner) {
+      snapshot = TreeSnapshot.load(options.getSnapshotFile(), root);
+      scanner = newScanner(snapshot);
+    }
+
+    TreeVisitor visitor = newRenderer();
+    TreeIndex.Recorder recorder = null;
+    if (options.getIndexFile() != null) {
+      recorder = new TreeIndex.Recorder();
+      visitor = visitor.andThen(recorder);
+    }
+    LargestDirectories largest = null;
+    if (options.isAggregate() && options.getLargestCount() > 0) {
+      largest = new LargestDirectories(options.getLargestCount());
+      visitor = visitor.andThen(largest);
+    }
+    if (stats != null) {
+      stats.register();
+      stats.start();
+      visitor = visitor.andThen(stats);
+    }
+
+    new TreeWalker(options, scanner).walk(root, visitor);
 
-    printTree(root, 0);
+    // The summaries are text, so they are left out of JSON output, whose records carry the sizes
+    if (largest != null && options.getOutputFormat() == OutputFormat.TEXT) {
+      largest.print(out);
+    }
+    out.flush();
+
+    if (stats != null) {
+      stats.stop();
+      if (options.getOutputFormat() == OutputFormat.TEXT) {
+        stats.print(out);
+        out.flush();
+      }
+    }
+
+    if (recorder != null) {
+      try {
+        recorder.write(options.getIndexFile());
+      } catch (IOException e) {
+        throw new UncheckedIOException("Could not save tree index to " + options.getIndexFile(), e);
+      }
+    }
+
+    if (snapshot != null) {
+      scanner = newScanner(null);
+      try {
+        snapshot.save(options.getSnapshotFile());
+      } catch (IOException e) {
+        throw new UncheckedIOException("Could not save snapshot to " + options.getSnapshotFile(), e);
+      }
+    }
 
     // out.println("printTree was called!");
     // out.println("My options are: " + options);
   }
 
+  /**
+   * Prints the contents of a directory and of everything below it.
+   *
+   * @param dir the directory whose contents should be printed
+   * @param depth the depth of dir below the root, where the root is 0
+   */
   public void printTree(File dir, int depth) {
-    if(!dir.isDirectory()) return;
+    try {
+      new TreeWalker(options, scanner).walkContents(new DirectoryEntry(dir, dir.getName(), true, false), depth, newRenderer());
+    } finally {
+      out.flush();
+    }
+  }
 
-    File[] files = dir.listFiles();
-    
-    if(files == null) return;
+  /**
+   * Creates the visitor that prints entries in the options' output format.
+   */
+  private TreeVisitor newRenderer() {
+    if (options.getOutputFormat() == OutputFormat.NDJSON) {
+      return new NdjsonWriter(out);
+    }
+    return new TextRenderer(out, colorSequence, options.isUseColor(), options.isStreaming());
+  }
 
-    AlphabeticalFileSorter.sort(files);
+  /**
+   * Prints a tree saved as a TreeIndex. Hidden files and the depth limit are applied
+   * as they would be to the directories themselves.
+   *
+   * @param file the index file
+   */
+  private void printIndex(File file) {
+    TreeIndex index;
+    try {
+      index = TreeIndex.read(file);
+    } catch (IOException e) {
+      out.println("Tree Index Not READABLE");
+      return;
+    }
 
-    for(File file: files){
-      if(!options.isShowHidden() && file.isHidden()){
-        continue;
-      }
+    new TreeWalker(options, scanner).walk(index, newRenderer());
+    out.flush();
+  }
 
-      String fixIssues = ("   ".repeat(depth + 1) + file.getName());
-      String fixIssuesDir = ("   ".repeat(depth + 1) + file.getName()+ "/");
-
-      if(options.isUseColor()){
-        ConsoleColor color = colorSequence.get((depth+1) % colorSequence.size());
-        if(file.isDirectory()){
-          out.println(color.toString() + fixIssuesDir + ConsoleColor.RESET);
-          printTree(file, depth+1);
-        }else if(options.isUseColor()){
-          out.println(color.toString() + fixIssues + ConsoleColor.RESET);
-        }
-      }else {
-        if(file.isDirectory()){
-          out.println(fixIssuesDir + ConsoleColor.RESET);
-          printTree(file, depth+1);
-        }else{
-          out.println(fixIssues + ConsoleColor.RESET);
-        }
-      }  
+  /**
+   * Prints a tree held in memory as a CompactTree, with the same output as the
+   * directories it was recorded from. Hidden files, the depth limit and the cap on
+   * entries per directory are applied as they would be to the directories themselves.
+   *
+   * @param tree the tree to print
+   */
+  public void printTree(CompactTree tree) {
+    try {
+      new TreeWalker(options, scanner).walk(tree, newRenderer());
+    } finally {
+      out.flush();
     }
   }
 
-}
\ No newline at end of file
+  /**
+   * Keeps the largest directories below the root, by total size, for the summary
+   * printed after the tree.
+   */
+  private static final class LargestDirectories implements TreeVisitor {
+    /**
+     * Orders directories by size, then by path so that the order is always the same.
+     */
+    private static final Comparator<Sized> BY_SIZE = Comparator.<Sized>comparingLong(sized -> sized.size)
+        .thenComparing(sized -> sized.path, Comparator.reverseOrder());
+
+    private final BoundedHeap<Sized> heap;
+    private final List<String> paths = new ArrayList<>();
+
+    LargestDirectories(int count) {
+      heap = new BoundedHeap<>(count, BY_SIZE);
+    }
+
+    @Override
+    public void enterDirectory(DirectoryEntry dir, int depth) {
+      paths.subList(depth, paths.size()).clear();
+      String path = depth <= 1 ? dir.getName() : paths.get(depth - 1) + File.separator + dir.getName();
+      paths.add(path);
+      if (depth > 0 && dir.getSize() >= 0) {
+        heap.offer(new Sized(path, dir.getSize()));
+      }
+    }
+
+    @Override
+    public void file(DirectoryEntry file, int depth) {
+      // Only directories are ranked
+    }
+
+    @Override
+    public void exitDirectory(DirectoryEntry dir, int depth) {
+      paths.subList(depth, paths.size()).clear();
+    }
+
+    void print(ColorPrinter out) {
+      out.println("Largest directories:" + ConsoleColor.RESET);
+      for (Sized sized : heap.toList()) {
+        out.println("   " + TextRenderer.formatSize(sized.size) + "  " + sized.path + "/" + ConsoleColor.RESET);
+      }
+    }
+
+    private static final class Sized {
+      private final String path;
+      private final long size;
+
+      Sized(String path, long size) {
+        this.path = path;
+        this.size = size;
+      }
+    }
+  }
+}
@@ -1,8 +1,10 @@
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.nio.file.Files;
@@ -47,7 +49,7 @@ public class TruffulaPrinterTest {
      * @throws IOException if an I/O error occurs during file creation or attribute setting
      * @throws IllegalArgumentException if the filename does not start with a dot (.)
      */
-    private static File createHiddenFile(File parentFolder, String filename) throws IOException {
+    static File createHiddenFile(File parentFolder, String filename) throws IOException {
         if(!filename.startsWith(".")) {
             throw new IllegalArgumentException("Hidden files/folders must start with a '.'");
         }
@@ -135,16 +137,16 @@ public class TruffulaPrinterTest {
         ConsoleColor yellow = ConsoleColor.YELLOW;
 
         StringBuilder expected = new StringBuilder();
-        expected.append(white).append(white).append("myFolder/").append(nl).append(reset);
-        expected.append(white).append(purple).append("   Apple.txt").append(reset).append(nl).append(reset);
-        expected.append(white).append(purple).append("   banana.txt").append(reset).append(nl).append(reset);
-        expected.append(white).append(purple).append("   Documents/").append(reset).append(nl).append(reset);
-        expected.append(white).append(yellow).append("      images/").append(reset).append(nl).append(reset);
-        expected.append(white).append(white).append("         cat.png").append(reset).append(nl).append(reset);
-        expected.append(white).append(white).append("         Dog.png").append(reset).append(nl).append(reset);
-        expected.append(white).append(yellow).append("      notes.txt").append(reset).append(nl).append(reset);
-        expected.append(white).append(yellow).append("      README.md").append(reset).append(nl).append(reset);
-        expected.append(white).append(purple).append("   zebra.txt").append(reset).append(nl).append(reset);
+        expected.append(white).append("myFolder/").append(reset).append(nl);
+        expected.append(purple).append("   Apple.txt").append(reset).append(nl);
+        expected.append(purple).append("   banana.txt").append(reset).append(nl);
+        expected.append(purple).append("   Documents/").append(reset).append(nl);
+        expected.append(yellow).append("      images/").append(reset).append(nl);
+        expected.append(white).append("         cat.png").append(reset).append(nl);
+        expected.append(white).append("         Dog.png").append(reset).append(nl);
+        expected.append(yellow).append("      notes.txt").append(reset).append(nl);
+        expected.append(yellow).append("      README.md").append(reset).append(nl);
+        expected.append(purple).append("   zebra.txt").append(reset).append(nl);
         // expected.append(nl);
 
         // Assert that the output matches the expected output exactly
@@ -197,17 +199,16 @@ public class TruffulaPrinterTest {
         String nl = System.lineSeparator();
 
         StringBuilder expected = new StringBuilder();
-        expected.append(ConsoleColor.WHITE).append(ConsoleColor.WHITE).append("myFolder/").append(nl);
-        expected.append(ConsoleColor.RESET).append(ConsoleColor.WHITE).append("   Apple.txt").append(ConsoleColor.RESET).append(nl);
-        expected.append(ConsoleColor.RESET).append(ConsoleColor.WHITE).append("   banana.txt").append(ConsoleColor.RESET).append(nl);
-        expected.append(ConsoleColor.RESET).append(ConsoleColor.WHITE).append("   Documents/").append(ConsoleColor.RESET).append(nl);
-        expected.append(ConsoleColor.RESET).append(ConsoleColor.WHITE).append("      images/").append(ConsoleColor.RESET).append(nl);
-        expected.append(ConsoleColor.RESET).append(ConsoleColor.WHITE).append("         cat.png").append(ConsoleColor.RESET).append(nl);
-        expected.append(ConsoleColor.RESET).append(ConsoleColor.WHITE).append("         Dog.png").append(ConsoleColor.RESET).append(nl);
-        expected.append(ConsoleColor.RESET).append(ConsoleColor.WHITE).append("      notes.txt").append(ConsoleColor.RESET).append(nl);
-        expected.append(ConsoleColor.RESET).append(ConsoleColor.WHITE).append("      README.md").append(ConsoleColor.RESET).append(nl);
-        expected.append(ConsoleColor.RESET).append(ConsoleColor.WHITE).append("   zebra.txt").append(ConsoleColor.RESET).append(nl);
-        expected.append(ConsoleColor.RESET);
+        expected.append(ConsoleColor.WHITE).append("myFolder/").append(ConsoleColor.RESET).append(nl);
+        expected.append(ConsoleColor.WHITE).append("   Apple.txt").append(ConsoleColor.RESET).append(nl);
+        expected.append(ConsoleColor.WHITE).append("   banana.txt").append(ConsoleColor.RESET).append(nl);
+        expected.append(ConsoleColor.WHITE).append("   Documents/").append(ConsoleColor.RESET).append(nl);
+        expected.append(ConsoleColor.WHITE).append("      images/").append(ConsoleColor.RESET).append(nl);
+        expected.append(ConsoleColor.WHITE).append("         cat.png").append(ConsoleColor.RESET).append(nl);
+        expected.append(ConsoleColor.WHITE).append("         Dog.png").append(ConsoleColor.RESET).append(nl);
+        expected.append(ConsoleColor.WHITE).append("      notes.txt").append(ConsoleColor.RESET).append(nl);
+        expected.append(ConsoleColor.WHITE).append("      README.md").append(ConsoleColor.RESET).append(nl);
+        expected.append(ConsoleColor.WHITE).append("   zebra.txt").append(ConsoleColor.RESET).append(nl);
 
         assertEquals(expected.toString(), output.toString());
     }
@@ -238,10 +239,9 @@ public void testPrintTree_ShowsHiddenFiles_WhenEnabled(@TempDir File tempDir) th
 
     String nl = System.lineSeparator();
     StringBuilder expected = new StringBuilder();
-    expected.append(ConsoleColor.WHITE).append(ConsoleColor.WHITE).append("myFolder/").append(nl);
-    expected.append(ConsoleColor.RESET).append(ConsoleColor.WHITE).append("   .hidden.txt").append(ConsoleColor.RESET).append(nl);
-    expected.append(ConsoleColor.RESET).append(ConsoleColor.WHITE).append("   Apple.txt").append(ConsoleColor.RESET).append(nl);
-    expected.append(ConsoleColor.RESET);
+    expected.append(ConsoleColor.WHITE).append("myFolder/").append(ConsoleColor.RESET).append(nl);
+    expected.append(ConsoleColor.WHITE).append("   .hidden.txt").append(ConsoleColor.RESET).append(nl);
+    expected.append(ConsoleColor.WHITE).append("   Apple.txt").append(ConsoleColor.RESET).append(nl);
 
     assertEquals(expected.toString(), output.toString());
 }
@@ -266,10 +266,9 @@ public void testPrintTree_NestedDirectory(@TempDir File tempDir) throws IOExcept
 
     String nl = System.lineSeparator();
     StringBuilder expected = new StringBuilder();
-    expected.append(ConsoleColor.WHITE).append(ConsoleColor.WHITE).append("root/").append(nl);
-    expected.append(ConsoleColor.RESET).append(ConsoleColor.WHITE).append("   subdir/").append(ConsoleColor.RESET).append(nl);
-    expected.append(ConsoleColor.RESET).append(ConsoleColor.WHITE).append("      file.txt").append(ConsoleColor.RESET).append(nl);
-    expected.append(ConsoleColor.RESET);
+    expected.append(ConsoleColor.WHITE).append("root/").append(ConsoleColor.RESET).append(nl);
+    expected.append(ConsoleColor.WHITE).append("   subdir/").append(ConsoleColor.RESET).append(nl);
+    expected.append(ConsoleColor.WHITE).append("      file.txt").append(ConsoleColor.RESET).append(nl);
 
     assertEquals(expected.toString(), output.toString());
 }
@@ -289,8 +288,7 @@ public void testPrintTree_EmptyFolder(@TempDir File tempDir) {
 
     String nl = System.lineSeparator();
     StringBuilder expected = new StringBuilder();
-    expected.append(ConsoleColor.WHITE).append(ConsoleColor.WHITE).append("emptyFolder/").append(nl);
-    expected.append(ConsoleColor.RESET);
+    expected.append(ConsoleColor.WHITE).append("emptyFolder/").append(ConsoleColor.RESET).append(nl);
 
     assertEquals(expected.toString(), output.toString());
 }
@@ -309,8 +307,7 @@ public void testPrintTree_HiddenFolderSkipped_WhenHiddenFalse(@TempDir File temp
 
     String nl = System.lineSeparator();
     StringBuilder expected = new StringBuilder();
-    expected.append(ConsoleColor.WHITE).append(ConsoleColor.WHITE).append("parent/").append(nl);
-    expected.append(ConsoleColor.RESET);
+    expected.append(ConsoleColor.WHITE).append("parent/").append(ConsoleColor.RESET).append(nl);
 
     assertEquals(expected.toString(), output.toString());
 }
@@ -331,16 +328,659 @@ public void testPrintTree_FileNamesWithSpacesAndSymbols(@TempDir File tempDir) t
 
     String nl = System.lineSeparator();
     StringBuilder expected = new StringBuilder();
-    expected.append(ConsoleColor.WHITE).append(ConsoleColor.WHITE).append("specials/").append(nl);
-    expected.append(ConsoleColor.RESET).append(ConsoleColor.WHITE).append("   @doName$.csv").append(ConsoleColor.RESET).append(nl);
-    expected.append(ConsoleColor.RESET).append(ConsoleColor.WHITE).append("   hello everyone.txt").append(ConsoleColor.RESET).append(nl);
-    expected.append(ConsoleColor.RESET);
+    expected.append(ConsoleColor.WHITE).append("specials/").append(ConsoleColor.RESET).append(nl);
+    expected.append(ConsoleColor.WHITE).append("   @doName$.csv").append(ConsoleColor.RESET).append(nl);
+    expected.append(ConsoleColor.WHITE).append("   hello everyone.txt").append(ConsoleColor.RESET).append(nl);
 
     assertEquals(expected.toString(), output.toString());
 }
 
+    /**
+     * Builds a small tree with mixed case names, nested directories and a hidden file.
+     */
+    private static File createMixedTree(File tempDir) throws IOException {
+        File root = new File(tempDir, "mixed");
+        assertTrue(root.mkdir());
+        createHiddenFile(root, ".hidden.txt");
+        for (int i = 0; i < 4; i++) {
+            File dir = new File(root, (i % 2 == 0 ? "Dir" : "dir") + i);
+            assertTrue(dir.mkdir());
+            new File(dir, "b" + i + ".txt").createNewFile();
+            new File(dir, "A" + i + ".txt").createNewFile();
+            File nested = new File(dir, "nested");
+            assertTrue(nested.mkdir());
+            new File(nested, "leaf.txt").createNewFile();
+        }
+        new File(root, "zebra.txt").createNewFile();
+        new File(root, "Apple.txt").createNewFile();
+        return root;
+    }
+
+    private static String render(TruffulaOptions options) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new TruffulaPrinter(options, new PrintStream(output)).printTree();
+        return output.toString();
+    }
+
+    @Test
+    public void testPrintTree_ParallelMatchesSequential(@TempDir File tempDir) throws IOException {
+        File root = createMixedTree(tempDir);
 
+        for (boolean useColor : new boolean[] {true, false}) {
+            TruffulaOptions sequential = new TruffulaOptions(root, false, useColor);
+            TruffulaOptions parallel = new TruffulaOptions(root, false, useColor);
+            parallel.setParallelism(4);
 
+            assertEquals(render(sequential), render(parallel));
+        }
+    }
+
+    @Test
+    public void testPrintTree_ParallelShowsHiddenFiles(@TempDir File tempDir) throws IOException {
+        File root = createMixedTree(tempDir);
+
+        TruffulaOptions sequential = new TruffulaOptions(root, true, true);
+        TruffulaOptions parallel = new TruffulaOptions(root, true, true);
+        parallel.setParallelism(3);
+
+        String output = render(parallel);
+        assertTrue(output.contains(".hidden.txt"));
+        assertEquals(render(sequential), output);
+    }
+
+    @Test
+    public void testPrintTree_StreamingMatchesDefault(@TempDir File tempDir) throws IOException {
+        File root = createMixedTree(tempDir);
 
+        for (boolean useColor : new boolean[] {true, false}) {
+            TruffulaOptions options = new TruffulaOptions(root, false, useColor);
+            TruffulaOptions streaming = new TruffulaOptions(root, false, useColor);
+            streaming.setStreaming(true);
 
+            assertEquals(render(options), render(streaming));
+
+            streaming.setParallelism(2);
+            assertEquals(render(options), render(streaming));
+        }
+    }
+
+    @Test
+    public void testPrintTree_BufferSizesMatch(@TempDir File tempDir) throws IOException {
+        File root = createMixedTree(tempDir);
+        String expected = render(new TruffulaOptions(root, false, true));
+
+        for (int bufferSize : new int[] {0, 1, 100}) {
+            TruffulaOptions options = new TruffulaOptions(root, false, true);
+            options.setBufferSize(bufferSize);
+            assertEquals(expected, render(options));
+
+            options.setAutoFlush(true);
+            options.setStreaming(true);
+            assertEquals(expected, render(options));
+        }
+    }
+
+    @Test
+    public void testPrintTree_PrefetchMatchesDefault(@TempDir File tempDir) throws IOException {
+        File root = createMixedTree(tempDir);
+        String expected = render(new TruffulaOptions(root, false, true));
+
+        for (int prefetch : new int[] {1, 2, 64}) {
+            TruffulaOptions options = new TruffulaOptions(root, false, true);
+            options.setPrefetch(prefetch);
+            assertEquals(expected, render(options));
+        }
+    }
+
+    @Test
+    public void testPrintTree_MaxDepth(@TempDir File tempDir) throws IOException {
+        // root/
+        //    a/
+        //       b/
+        //          deep.txt
+        //       mid.txt
+        //    top.txt
+        File root = new File(tempDir, "root");
+        File a = new File(root, "a");
+        File b = new File(a, "b");
+        assertTrue(b.mkdirs());
+        new File(b, "deep.txt").createNewFile();
+        new File(a, "mid.txt").createNewFile();
+        new File(root, "top.txt").createNewFile();
+
+        String nl = System.lineSeparator();
+        ConsoleColor reset = ConsoleColor.RESET;
+        ConsoleColor white = ConsoleColor.WHITE;
+
+        for (int parallelism : new int[] {1, 2}) {
+            TruffulaOptions options = new TruffulaOptions(root, false, false);
+            options.setMaxDepth(2);
+            options.setParallelism(parallelism);
+            options.setPrefetch(parallelism == 1 ? 4 : 0);
+
+            StringBuilder expected = new StringBuilder();
+            expected.append(white).append("root/").append(reset).append(nl);
+            expected.append(white).append("   a/").append(reset).append(nl);
+            expected.append(white).append("      b/").append(reset).append(nl);
+            expected.append(white).append("      mid.txt").append(reset).append(nl);
+            expected.append(white).append("   top.txt").append(reset).append(nl);
+
+            assertEquals(expected.toString(), render(options));
+        }
+    }
+
+    @Test
+    public void testPrintTree_IncludeAndExcludePatterns(@TempDir File tempDir) throws IOException {
+        // root/
+        //    App.java
+        //    node_modules/
+        //       lib.java
+        //    notes.txt
+        //    src/
+        //       Main.java
+        //       Main.class
+        File root = new File(tempDir, "root");
+        File nodeModules = new File(root, "node_modules");
+        File src = new File(root, "src");
+        assertTrue(nodeModules.mkdirs());
+        assertTrue(src.mkdirs());
+        new File(root, "App.java").createNewFile();
+        new File(root, "notes.txt").createNewFile();
+        new File(nodeModules, "lib.java").createNewFile();
+        new File(src, "Main.java").createNewFile();
+        new File(src, "Main.class").createNewFile();
+
+        TruffulaOptions options = new TruffulaOptions(root, false, false);
+        options.addExcludePattern("node_modules");
+        options.addIncludePattern("*.java");
+
+        String nl = System.lineSeparator();
+        ConsoleColor reset = ConsoleColor.RESET;
+        ConsoleColor white = ConsoleColor.WHITE;
+        StringBuilder expected = new StringBuilder();
+        expected.append(white).append("root/").append(reset).append(nl);
+        expected.append(white).append("   App.java").append(reset).append(nl);
+        expected.append(white).append("   src/").append(reset).append(nl);
+        expected.append(white).append("      Main.java").append(reset).append(nl);
+
+        assertEquals(expected.toString(), render(options));
+
+        options.setParallelism(2);
+        assertEquals(expected.toString(), render(options));
+    }
+
+    private static void writeFile(File file, String contents) throws IOException {
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(contents);
+        }
+    }
+
+    @Test
+    public void testPrintTree_RespectsGitIgnore(@TempDir File tempDir) throws IOException {
+        // repo/
+        //    .git/
+        //    .gitignore       (target/, *.log)
+        //    app.log
+        //    src/
+        //       .gitignore    (!keep.log, /generated)
+        //       generated/
+        //       keep.log
+        //       Main.java
+        //    target/
+        File repo = new File(tempDir, "repo");
+        File src = new File(repo, "src");
+        assertTrue(new File(repo, ".git").mkdirs());
+        assertTrue(new File(repo, "target").mkdirs());
+        assertTrue(new File(src, "generated").mkdirs());
+        writeFile(new File(repo, ".gitignore"), "target/\n*.log\n");
+        writeFile(new File(src, ".gitignore"), "!keep.log\n/generated\n");
+        new File(repo, "app.log").createNewFile();
+        new File(src, "keep.log").createNewFile();
+        new File(src, "Main.java").createNewFile();
+
+        TruffulaOptions options = new TruffulaOptions(repo, true, false);
+        options.setUseGitIgnore(true);
+
+        String nl = System.lineSeparator();
+        ConsoleColor reset = ConsoleColor.RESET;
+        ConsoleColor white = ConsoleColor.WHITE;
+        StringBuilder expected = new StringBuilder();
+        expected.append(white).append("repo/").append(reset).append(nl);
+        expected.append(white).append("   .gitignore").append(reset).append(nl);
+        expected.append(white).append("   src/").append(reset).append(nl);
+        expected.append(white).append("      .gitignore").append(reset).append(nl);
+        expected.append(white).append("      keep.log").append(reset).append(nl);
+        expected.append(white).append("      Main.java").append(reset).append(nl);
+
+        assertEquals(expected.toString(), render(options));
+
+        options.setParallelism(2);
+        assertEquals(expected.toString(), render(options));
+
+        options.setParallelism(1);
+        options.setPrefetch(2);
+        assertEquals(expected.toString(), render(options));
+    }
+
+    @Test
+    public void testPrintTree_SnapshotReplayMatchesWalk(@TempDir File tempDir) throws IOException {
+        File root = createMixedTree(tempDir);
+        File snapshot = new File(tempDir, "tree.snapshot");
+        String expected = render(new TruffulaOptions(root, false, true));
+
+        TruffulaOptions options = new TruffulaOptions(root, false, true);
+        options.setSnapshotFile(snapshot);
+
+        // The first run writes the snapshot, later runs replay it
+        assertEquals(expected, render(options));
+        assertTrue(snapshot.isFile());
+        assertEquals(expected, render(options));
+
+        options.setParallelism(3);
+        assertEquals(expected, render(options));
+
+        // Options apply on replay, because listings are stored unfiltered
+        TruffulaOptions showHidden = new TruffulaOptions(root, true, true);
+        showHidden.setSnapshotFile(snapshot);
+        assertEquals(render(new TruffulaOptions(root, true, true)), render(showHidden));
+    }
+
+    @Test
+    public void testPrintTree_ReplayIndexMatchesWalk(@TempDir File tempDir) throws IOException {
+        File root = createMixedTree(tempDir);
+        File index = new File(tempDir, "tree.index");
+
+        for (int workers : new int[] {1, 3}) {
+            TruffulaOptions save = new TruffulaOptions(root, true, true);
+            save.setIndexFile(index);
+            save.setParallelism(workers);
+            String expected = render(save);
+
+            TruffulaOptions replay = new TruffulaOptions(index, true, true);
+            replay.setReplayIndex(true);
+            assertEquals(expected, render(replay));
+        }
+
+        // Hidden files and the depth limit also apply to a replayed index
+        TruffulaOptions replay = new TruffulaOptions(index, false, false);
+        replay.setReplayIndex(true);
+        replay.setMaxDepth(1);
+        replay.setStreaming(true);
+        TruffulaOptions walk = new TruffulaOptions(root, false, false);
+        walk.setMaxDepth(1);
+        assertEquals(render(walk), render(replay));
+    }
+
+    @Test
+    public void testPrintTree_AggregatesSizesAndCounts(@TempDir File tempDir) throws IOException {
+        // sizes/
+        //    a.txt          (10 bytes)
+        //    big/
+        //       deep/
+        //          b.bin    (2048 bytes)
+        //    small/
+        //       c.txt       (1 byte)
+        File root = new File(tempDir, "sizes");
+        assertTrue(new File(root, "big/deep").mkdirs());
+        assertTrue(new File(root, "small").mkdir());
+        writeFile(new File(root, "a.txt"), "0123456789");
+        writeFile(new File(root, "big/deep/b.bin"), "x".repeat(2048));
+        writeFile(new File(root, "small/c.txt"), "x");
+
+        String nl = System.lineSeparator();
+        String reset = ConsoleColor.RESET.toString();
+        String white = ConsoleColor.WHITE.toString();
+
+        for (int workers : new int[] {1, 4}) {
+            TruffulaOptions options = new TruffulaOptions(root, false, false);
+            options.setMaxDepth(2);
+            options.setLargestCount(2);
+            options.setAggregate(true);
+            options.setParallelism(workers);
+
+            // Totals include b.bin even though -L 2 does not print it
+            String expected = white + "sizes/ [3 files, 2.0 KiB]" + reset + nl
+                + white + "   a.txt" + reset + nl
+                + white + "   big/ [1 file, 2.0 KiB]" + reset + nl
+                + white + "      deep/ [1 file, 2.0 KiB]" + reset + nl
+                + white + "   small/ [1 file, 1 B]" + reset + nl
+                + white + "      c.txt" + reset + nl
+                + white + "Largest directories:" + reset + nl + reset
+                + white + "   2.0 KiB  big/" + reset + nl + reset
+                + white + "   2.0 KiB  big" + File.separator + "deep/" + reset + nl + reset;
+            assertEquals(expected, render(options));
+        }
+    }
+
+    @Test
+    public void testFormatSize() {
+        assertEquals("0 B", TextRenderer.formatSize(0));
+        assertEquals("1023 B", TextRenderer.formatSize(1023));
+        assertEquals("1.5 KiB", TextRenderer.formatSize(1536));
+        assertEquals("3.0 MiB", TextRenderer.formatSize(3L * 1024 * 1024));
+    }
+
+    @Test
+    public void testPrintTree_NdjsonOutput(@TempDir File tempDir) throws IOException {
+        // json/
+        //    .hidden
+        //    b.txt      (3 bytes)
+        //    Sub/
+        //       a.txt   (5 bytes)
+        File root = new File(tempDir, "json");
+        assertTrue(new File(root, "Sub").mkdirs());
+        createHiddenFile(root, ".hidden");
+        writeFile(new File(root, "b.txt"), "abc");
+        writeFile(new File(root, "Sub/a.txt"), "12345");
+
+        String nl = System.lineSeparator();
+        String expected = "{\"path\":\"\",\"name\":\"json\",\"depth\":0,\"type\":\"directory\"}" + nl
+            + "{\"path\":\"b.txt\",\"name\":\"b.txt\",\"depth\":1,\"type\":\"file\"}" + nl
+            + "{\"path\":\"Sub\",\"name\":\"Sub\",\"depth\":1,\"type\":\"directory\"}" + nl
+            + "{\"path\":\"Sub/a.txt\",\"name\":\"a.txt\",\"depth\":2,\"type\":\"file\"}" + nl;
+
+        for (int workers : new int[] {1, 3}) {
+            TruffulaOptions options = new TruffulaOptions(root, false, true);
+            options.setOutputFormat(OutputFormat.NDJSON);
+            options.setParallelism(workers);
+            assertEquals(expected, render(options));
+        }
+
+        // With -du, files carry their size and directories their totals
+        TruffulaOptions sizes = new TruffulaOptions(root, false, false);
+        sizes.setOutputFormat(OutputFormat.NDJSON);
+        sizes.setLargestCount(1);
+        sizes.setAggregate(true);
+        String expectedSizes = "{\"path\":\"\",\"name\":\"json\",\"depth\":0,\"type\":\"directory\",\"size\":8,\"files\":2}" + nl
+            + "{\"path\":\"b.txt\",\"name\":\"b.txt\",\"depth\":1,\"type\":\"file\",\"size\":3}" + nl
+            + "{\"path\":\"Sub\",\"name\":\"Sub\",\"depth\":1,\"type\":\"directory\",\"size\":5,\"files\":1}" + nl
+            + "{\"path\":\"Sub/a.txt\",\"name\":\"a.txt\",\"depth\":2,\"type\":\"file\",\"size\":5}" + nl;
+        assertEquals(expectedSizes, render(sizes));
+    }
+
+    @Test
+    public void testPrintTree_StatsSummaryFollowsTree(@TempDir File tempDir) throws IOException {
+        // stats/
+        //    a.txt
+        //    Sub/
+        //       b.txt
+        File root = new File(tempDir, "stats");
+        assertTrue(new File(root, "Sub").mkdirs());
+        writeFile(new File(root, "a.txt"), "abc");
+        writeFile(new File(root, "Sub/b.txt"), "de");
+
+        for (int workers : new int[] {1, 3}) {
+            TruffulaOptions plain = new TruffulaOptions(root, false, true);
+            plain.setParallelism(workers);
+            String tree = render(plain);
+
+            TruffulaOptions options = new TruffulaOptions(root, false, true);
+            options.setParallelism(workers);
+            options.setStats(true);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            TruffulaPrinter printer = new TruffulaPrinter(options, new PrintStream(output));
+            printer.printTree();
+
+            String printed = output.toString();
+            assertTrue(printed.startsWith(tree + ConsoleColor.WHITE + "Walk statistics:"), printed);
+            WalkStats stats = printer.getStats();
+            assertEquals(4, stats.getEntries());
+            assertEquals(2, stats.getListings());
+            assertEquals(3, stats.getStatCalls());
+            // The root, and Sub/ before it is listed
+            assertEquals(2, stats.getPathLookups());
+            assertEquals(2, stats.getSorts());
+            assertTrue(printed.contains("   bytes written: " + tree.getBytes().length + " B"), printed);
+            assertEquals(output.size(), stats.getBytesWritten());
+            assertTrue(stats.getElapsedNanos() > 0);
+        }
+
+        // Adding up sizes reads the size of every file too
+        TruffulaOptions sizes = new TruffulaOptions(root, false, false);
+        sizes.setAggregate(true);
+        sizes.setStats(true);
+        TruffulaPrinter printer = new TruffulaPrinter(sizes, new PrintStream(new ByteArrayOutputStream()));
+        printer.printTree();
+        assertEquals(5, printer.getStats().getStatCalls());
+
+        // A cold snapshot run lists and sorts like a plain one, and a replay only stats the directories
+        File snapshot = new File(tempDir, "stats.snapshot");
+        long aged = System.currentTimeMillis() - 60_000;
+        assertTrue(root.setLastModified(aged) && new File(root, "Sub").setLastModified(aged));
+        long[][] expected = {{5, 2}, {2, 0}};
+        for (long[] counts : expected) {
+            TruffulaOptions cached = new TruffulaOptions(root, false, false);
+            cached.setSnapshotFile(snapshot);
+            cached.setStats(true);
+            printer = new TruffulaPrinter(cached, new PrintStream(new ByteArrayOutputStream()));
+            printer.printTree();
+            assertEquals(counts[0], printer.getStats().getStatCalls());
+            assertEquals(counts[1], printer.getStats().getSorts());
+        }
+
+        // Directories at the depth limit are printed without being checked for links
+        TruffulaOptions limited = new TruffulaOptions(root, false, false);
+        limited.setMaxDepth(1);
+        limited.setStats(true);
+        printer = new TruffulaPrinter(limited, new PrintStream(new ByteArrayOutputStream()));
+        printer.printTree();
+        assertEquals(1, printer.getStats().getPathLookups());
+    }
+
+    @Test
+    public void testPrintTree_MaxEntriesPrintsCount(@TempDir File tempDir) throws IOException {
+        // cap/
+        //    a.txt
+        //    B/
+        //       c.txt
+        //       d.txt
+        //       e.txt
+        //    f.txt
+        File root = new File(tempDir, "cap");
+        assertTrue(new File(root, "B").mkdirs());
+        for (String name : new String[] {"f.txt", "a.txt", "B/e.txt", "B/c.txt", "B/d.txt"}) {
+            new File(root, name).createNewFile();
+        }
+
+        String nl = System.lineSeparator();
+        String reset = ConsoleColor.RESET.toString();
+        String white = ConsoleColor.WHITE.toString();
+        String expected = white + "cap/" + reset + nl
+            + white + "   a.txt" + reset + nl
+            + white + "   B/" + reset + nl
+            + white + "      c.txt" + reset + nl
+            + white + "      d.txt" + reset + nl
+            + white + "      ... and 1 more" + reset + nl
+            + white + "   ... and 1 more" + reset + nl;
+
+        for (int workers : new int[] {1, 2}) {
+            TruffulaOptions options = new TruffulaOptions(root, false, false);
+            options.setMaxEntries(2);
+            options.setParallelism(workers);
+            assertEquals(expected, render(options));
+        }
+    }
+
+    @Test
+    public void testPrintTree_SpillMatchesInMemorySort(@TempDir File tempDir) throws IOException {
+        // wide/
+        //    .gitignore    (*.log)
+        //    .hidden
+        //    F00.txt .. f39.txt, in mixed case
+        //    skip.log
+        //    mixed/
+        //       (the mixed tree)
+        File root = new File(tempDir, "wide");
+        assertTrue(root.mkdir());
+        writeFile(new File(root, ".gitignore"), "*.log\n");
+        createHiddenFile(root, ".hidden");
+        new File(root, "skip.log").createNewFile();
+        for (int i = 0; i < 40; i++) {
+            new File(root, (i % 2 == 0 ? "F" : "f") + String.format("%02d", 39 - i) + ".txt").createNewFile();
+        }
+        createMixedTree(root);
+
+        for (int maxEntries : new int[] {0, 25}) {
+            TruffulaOptions inMemory = new TruffulaOptions(root, true, true);
+            inMemory.setUseGitIgnore(true);
+            inMemory.setMaxEntries(maxEntries);
+            String expected = render(inMemory);
+
+            for (int spill : new int[] {1, 6, 1000}) {
+                TruffulaOptions options = new TruffulaOptions(root, true, true);
+                options.setUseGitIgnore(true);
+                options.setMaxEntries(maxEntries);
+                options.setSpillThreshold(spill);
+                options.setPrefetch(2);
+                assertEquals(expected, render(options), "spill " + spill + ", max " + maxEntries);
+            }
+        }
+    }
+
+    @Test
+    public void testPrintTree_CompactTreeMatchesWalk(@TempDir File tempDir) throws IOException {
+        File root = createMixedTree(tempDir);
+        TruffulaOptions all = new TruffulaOptions(root, true, true);
+        CompactTree.Builder builder = new CompactTree.Builder();
+        new TreeWalker(all, new DirectoryScanner(true)).walk(root, builder);
+        CompactTree tree = builder.build();
+
+        for (boolean showHidden : new boolean[] {false, true}) {
+            for (boolean streaming : new boolean[] {false, true}) {
+                TruffulaOptions options = new TruffulaOptions(root, showHidden, true);
+                options.setStreaming(streaming);
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                new TruffulaPrinter(options, new PrintStream(output)).printTree(tree);
+                assertEquals(render(new TruffulaOptions(root, showHidden, true)), output.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testPrintTree_SymlinkCyclesEnd(@TempDir File tempDir) throws IOException {
+        // links/
+        //    a/
+        //       loop -> links
+        //       toB -> links/b
+        //    b/
+        //       c.txt
+        //       toA -> links/a
+        File root = new File(tempDir, "links");
+        assertTrue(new File(root, "a").mkdirs());
+        assertTrue(new File(root, "b").mkdirs());
+        writeFile(new File(root, "b/c.txt"), "c");
+        try {
+            Files.createSymbolicLink(root.toPath().resolve("a/loop"), root.toPath());
+            Files.createSymbolicLink(root.toPath().resolve("a/toB"), Paths.get("../b"));
+            Files.createSymbolicLink(root.toPath().resolve("b/toA"), root.toPath().resolve("a"));
+        } catch (UnsupportedOperationException | IOException e) {
+            Assumptions.assumeTrue(false, "Symbolic links are not supported: " + e);
+        }
+        String rootPath = root.getCanonicalPath();
+        String nl = System.lineSeparator();
+        String reset = ConsoleColor.RESET.toString();
+        String white = ConsoleColor.WHITE.toString();
+
+        // Each link target is listed once: a/ again below toB/toA, but not below b/toA
+        String follow = white + "links/" + reset + nl
+            + white + "   a/" + reset + nl
+            + white + "      loop/ -> " + rootPath + reset + nl
+            + white + "      toB/ -> " + rootPath + File.separator + "b" + reset + nl
+            + white + "         c.txt" + reset + nl
+            + white + "         toA/ -> " + rootPath + File.separator + "a" + reset + nl
+            + white + "            loop/ -> " + rootPath + reset + nl
+            + white + "            toB/ -> " + rootPath + File.separator + "b" + reset + nl
+            + white + "   b/" + reset + nl
+            + white + "      c.txt" + reset + nl
+            + white + "      toA/ -> " + rootPath + File.separator + "a" + reset + nl;
+        for (int prefetch : new int[] {0, 2}) {
+            TruffulaOptions options = new TruffulaOptions(root, false, false);
+            options.setPrefetch(prefetch);
+            assertEquals(follow, render(options));
+        }
+
+        // Without following, parallel walks print the same tree
+        String noFollow = white + "links/" + reset + nl
+            + white + "   a/" + reset + nl
+            + white + "      loop/ -> " + rootPath + reset + nl
+            + white + "      toB/ -> " + rootPath + File.separator + "b" + reset + nl
+            + white + "   b/" + reset + nl
+            + white + "      c.txt" + reset + nl
+            + white + "      toA/ -> " + rootPath + File.separator + "a" + reset + nl;
+        for (int workers : new int[] {1, 3}) {
+            TruffulaOptions options = new TruffulaOptions(root, false, false);
+            options.setSymlinkPolicy(SymlinkPolicy.NOFOLLOW);
+            options.setParallelism(workers);
+            assertEquals(noFollow, render(options));
+        }
+    }
+
+    @Test
+    public void testPrintTree_SharedLinkTargetIsListedAsInSequentialWalk(@TempDir File tempDir) throws IOException {
+        // shared/
+        //    a/
+        //       linkx -> shared/x
+        //    B/
+        //       linkx2 -> shared/x
+        //    x/
+        //       f.txt
+        //       up -> shared/a
+        File root = new File(tempDir, "shared");
+        assertTrue(new File(root, "a").mkdirs());
+        assertTrue(new File(root, "B").mkdirs());
+        assertTrue(new File(root, "x").mkdirs());
+        writeFile(new File(root, "x/f.txt"), "f");
+        try {
+            Files.createSymbolicLink(root.toPath().resolve("a/linkx"), Paths.get("../x"));
+            Files.createSymbolicLink(root.toPath().resolve("B/linkx2"), Paths.get("../x"));
+            Files.createSymbolicLink(root.toPath().resolve("x/up"), Paths.get("../a"));
+        } catch (UnsupportedOperationException | IOException e) {
+            Assumptions.assumeTrue(false, "Symbolic links are not supported: " + e);
+        }
+
+        String sequential = render(new TruffulaOptions(root, false, false));
+        String rootPath = root.getCanonicalPath();
+        String white = ConsoleColor.WHITE.toString();
+        assertTrue(sequential.contains(white + "      linkx/ -> " + rootPath + File.separator + "x"
+            + ConsoleColor.RESET + System.lineSeparator() + white + "         f.txt"), sequential);
+
+        // The first link in print order owns the target, however the listing threads are timed
+        for (int run = 0; run < 10; run++) {
+            for (int workers : new int[] {2, 4}) {
+                for (boolean streaming : new boolean[] {false, true}) {
+                    TruffulaOptions options = new TruffulaOptions(root, false, false);
+                    options.setParallelism(workers);
+                    options.setStreaming(streaming);
+                    assertEquals(sequential, render(options));
+                }
+            }
+        }
+
+        TruffulaOptions sizes = new TruffulaOptions(root, false, false);
+        sizes.setAggregate(true);
+        String aggregated = render(sizes);
+        for (int run = 0; run < 10; run++) {
+            TruffulaOptions options = new TruffulaOptions(root, false, false);
+            options.setAggregate(true);
+            options.setParallelism(4);
+            assertEquals(aggregated, render(options));
+        }
+    }
+
+    @Test
+    public void testPrintTree_MissingRootIsReported(@TempDir File tempDir) {
+        TruffulaOptions options = new TruffulaOptions(new File(tempDir, "missing"), false, false);
+        String nl = System.lineSeparator();
+        assertEquals(ConsoleColor.WHITE + "Directory Not FOUND" + nl + ConsoleColor.RESET, render(options));
+    }
+
+    @Test
+    public void testPrintTree_UnreadableIndexIsReported(@TempDir File tempDir) throws IOException {
+        File index = new File(tempDir, "tree.index");
+        writeFile(index, "not an index");
+        TruffulaOptions options = new TruffulaOptions(index, false, false);
+        options.setReplayIndex(true);
+        String nl = System.lineSeparator();
+        assertEquals(ConsoleColor.WHITE + "Tree Index Not READABLE" + nl + ConsoleColor.RESET, render(options));
+    }
 }
@@ -0,0 +1,94 @@
+/**
+ * The management interface of WalkStats, through which the counts and timings of a
+ * walk can be read over JMX while it runs.
+ *
+ * Times are in nanoseconds. Percentiles are the upper bounds of power-of-two
+ * buckets, so they may be up to twice the actual value.
+ */
+public interface WalkStatsMBean {
+  /**
+   * Returns the number of files and directories reported by the walk.
+   *
+   * @return the number of entries
+   */
+  long getEntries();
+
+  /**
+   * Returns the number of entries reported per second since the walk started.
+   *
+   * @return the entries per second, or 0 before the walk has started
+   */
+  double getEntriesPerSecond();
+
+  /**
+   * Returns the time since the walk started, or the duration of a finished walk.
+   *
+   * @return the elapsed time in nanoseconds
+   */
+  long getElapsedNanos();
+
+  /**
+   * Returns the number of directories listed.
+   *
+   * @return the number of listings
+   */
+  long getListings();
+
+  /**
+   * Returns the number of directories that could not be listed.
+   *
+   * @return the number of failed listings
+   */
+  long getFailedListings();
+
+  /**
+   * Returns the total time spent listing directories, over all threads.
+   *
+   * @return the listing time in nanoseconds
+   */
+  long getListingNanos();
+
+  /**
+   * Returns the 99th percentile of the time taken by one listing.
+   *
+   * @return the listing time in nanoseconds
+   */
+  long getListingP99Nanos();
+
+  /**
+   * Returns the number of calls that read the metadata of a single file from the file
+   * system, to find out whether it is a directory or what its size is.
+   *
+   * @return the number of stat calls
+   */
+  long getStatCalls();
+
+  /**
+   * Returns the number of canonical path lookups, each of which resolves every symbolic
+   * link on a path, made to find out whether directories are symbolic links.
+   *
+   * @return the number of path lookups
+   */
+  long getPathLookups();
+
+  /**
+   * Returns the number of listings sorted.
+   *
+   * @return the number of sorts
+   */
+  long getSorts();
+
+  /**
+   * Returns the total time spent sorting listings, over all threads.
+   *
+   * @return the sorting time in nanoseconds
+   */
+  long getSortNanos();
+
+  /**
+   * Returns the number of bytes of output written.
+   *
+   * @return the number of bytes written
+   */
+  long getBytesWritten();
+}
@@ -0,0 +1,94 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WalkStatsTest {
+
+  @Test
+  void testHistogramPercentilesAreBucketBounds() {
+    WalkStats.Histogram histogram = new WalkStats.Histogram();
+    assertEquals(0, histogram.getPercentileNanos(0.5));
+
+    // 98 fast times below 128 ns, and two slow ones below 2^20 ns
+    for (int i = 0; i < 98; i++) {
+      histogram.record(100);
+    }
+    histogram.record(1_000_000);
+    histogram.record(600_000);
+
+    assertEquals(100, histogram.getCount());
+    assertEquals(98 * 100 + 1_600_000, histogram.getTotalNanos());
+    assertEquals(1_000_000, histogram.getMaxNanos());
+    assertEquals(128, histogram.getPercentileNanos(0.5));
+    assertEquals(128, histogram.getPercentileNanos(0.98));
+    assertEquals(1L << 20, histogram.getPercentileNanos(0.99));
+
+    histogram.record(0);
+    histogram.record(Long.MAX_VALUE);
+    assertEquals(Long.MAX_VALUE, histogram.getPercentileNanos(1.0));
+  }
+
+  @Test
+  void testCountsStatCallsListingsAndBytes() throws IOException {
+    WalkStats stats = new WalkStats();
+    stats.recordListing(1_500, false);
+    stats.recordListing(2_500, true);
+    stats.recordStatCalls(7);
+    stats.recordPathLookups(2);
+    stats.recordSort(300);
+    stats.file(new DirectoryEntry("a.txt", false, false), 1);
+    stats.enterDirectory(new DirectoryEntry("b", true, false), 1);
+    stats.exitDirectory(new DirectoryEntry("b", true, false), 1);
+
+    ByteArrayOutputStream target = new ByteArrayOutputStream();
+    OutputStream counted = stats.countBytes(target);
+    counted.write('x');
+    counted.write(new byte[10], 2, 5);
+
+    assertEquals(2, stats.getListings());
+    assertEquals(1, stats.getFailedListings());
+    assertEquals(4_000, stats.getListingNanos());
+    assertEquals(7, stats.getStatCalls());
+    assertEquals(2, stats.getPathLookups());
+    assertEquals(1, stats.getSorts());
+    assertEquals(300, stats.getSortNanos());
+    assertEquals(2, stats.getEntries());
+    assertEquals(6, stats.getBytesWritten());
+    assertEquals(6, target.size());
+    assertEquals(0, stats.getElapsedNanos());
+  }
+
+  @Test
+  void testRegisteredStatsCanBeRead() throws JMException {
+    WalkStats stats = new WalkStats();
+    stats.recordStatCalls(3);
+    stats.register();
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(WalkStats.OBJECT_NAME);
+    assertEquals(3L, server.getAttribute(name, "StatCalls"));
+
+    // Registering again replaces the earlier stats
+    WalkStats next = new WalkStats();
+    next.register();
+    assertEquals(0L, server.getAttribute(name, "StatCalls"));
+    assertTrue(server.isRegistered(name));
+  }
+
+  @Test
+  void testFormatNanos() {
+    assertEquals("850 ns", WalkStats.formatNanos(850));
+    assertEquals("2.5 us", WalkStats.formatNanos(2_500));
+    assertEquals("2.9 ms", WalkStats.formatNanos(2_900_000));
+    assertEquals("1.25 s", WalkStats.formatNanos(1_250_000_000));
+  }
+}